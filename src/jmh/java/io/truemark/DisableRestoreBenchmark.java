@@ -0,0 +1,89 @@
+package io.truemark;
+
+import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.http.WriteReport;
+import io.truemark.stub.NewRelicStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full maintenance window cycles the client exists for, against an account served
+ * by the local stub: reading the states, disabling everything and restoring the states. The
+ * sample time mode reports the p50 and p99 of a cycle besides its throughput.
+ *
+ * <p>The account size, the latency of the stub and its error rate are parameters. Accounts of the
+ * size of a large customer can be run with {@code -Djmh.args="-p monitors=50000"}.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DisableRestoreBenchmark {
+
+  @Param({"20"})
+  private int policies;
+  @Param({"5"})
+  private int conditionsPerType;
+  @Param({"1000"})
+  private int monitors;
+  @Param({"0", "20"})
+  private long latencyMillis;
+  @Param({"0", "0.01"})
+  private double errorRate;
+  private NewRelicStub stub;
+  private NewRelicClient client;
+  private final List<String> policyNames = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    stub = new NewRelicStub(policies, conditionsPerType, monitors);
+    stub.setLatency(latencyMillis, latencyMillis / 4);
+    stub.setWriteErrorRate(errorRate);
+    client = stub.client();
+    client.setPooled(true);
+    client.setPageSize(NewRelicClient.MAX_LIMIT);
+    for (int i = 1; i <= policies; i++) {
+      policyNames.add(NewRelicStub.getPolicyName(i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    stub.close();
+  }
+
+  @Benchmark
+  public Map<String, WriteReport> disableRestoreConditions() throws NewRelicNotFoundException {
+    Map<String, Map<String, Boolean>> states = client.getAlertConditionStats(policyNames);
+    client.disableAlertConditions(policyNames);
+    return client.restoreAlertConditionStates(states);
+  }
+
+  @Benchmark
+  public WriteReport disableRestoreSynthetics() throws NewRelicNotFoundException {
+    Map<String, Boolean> states = client.getSyntheticStates();
+    client.disableSynthetics(states.keySet());
+    return client.restoreSyntheticStates(states);
+  }
+}
@@ -0,0 +1,85 @@
+package io.truemark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.truemark.data.Synthetic;
+import io.truemark.data.Synthetics;
+import io.truemark.stub.NewRelicStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures listing the Synthetic states of an account served by an in-process stub, from the
+ * HTTP exchanges down to parsing the pages. The monitor pages are also parsed on their own to
+ * separate the cost of parsing from that of the requests.
+ *
+ * @author Abhijeet Kale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyntheticStatesBenchmark {
+
+  @Param({"100", "1000"})
+  private int monitors;
+  @Param({"1", "4"})
+  private int pageParallelism;
+  private NewRelicStub stub;
+  private NewRelicClient client;
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private byte[] page;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    stub = new NewRelicStub(monitors);
+    client = stub.client();
+    client.setPooled(true);
+    client.setPageSize(NewRelicClient.MAX_LIMIT);
+    client.setPageParallelism(pageParallelism);
+    Synthetics synthetics = new Synthetics();
+    List<Synthetic> pageMonitors = new ArrayList<>();
+    for (int i = 0; i < NewRelicClient.MAX_LIMIT; i++) {
+      pageMonitors.add(NewRelicStub.monitor(i));
+    }
+    synthetics.setMonitors(pageMonitors);
+    synthetics.setCount(monitors);
+    page = stub.getObjectMapper().writeValueAsBytes(synthetics);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    stub.close();
+  }
+
+  @Benchmark
+  public Map<String, Boolean> getSyntheticStates() throws IOException {
+    return client.getSyntheticStates();
+  }
+
+  @Benchmark
+  public SyntheticStatesParser.Page parsePage() throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(page)) {
+      return SyntheticStatesParser.INSTANCE.parse(parser);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package io.truemark.http;
+
+import io.truemark.data.Condition;
+import io.truemark.data.ConditionType;
+import io.truemark.data.PolicyAlertCondition;
+import io.truemark.data.PolicyAlertConditions;
+import io.truemark.data.Synthetic;
+import io.truemark.data.Synthetics;
+import io.truemark.stub.NewRelicStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the listings and writing the updates the client exchanges with New Relic.
+ * The payloads are pages of monitors and of NRQL conditions as returned by the API.
+ *
+ * @author Abhijeet Kale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonRestClientBenchmark {
+
+  @Param({"20", "100"})
+  private int pageSize;
+  private JacksonRestClient client;
+  private String synthetics;
+  private byte[] syntheticsBytes;
+  private String conditions;
+  private byte[] conditionsBytes;
+  private PolicyAlertCondition condition;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  @Setup
+  public void setUp() throws IOException {
+    client = new URLConnectionRestClient("http://127.0.0.1", "admin-key");
+    List<Synthetic> monitors = new ArrayList<>();
+    List<Condition> nrqlConditions = new ArrayList<>();
+    for (int i = 0; i < pageSize; i++) {
+      monitors.add(NewRelicStub.monitor(i));
+      nrqlConditions.add(NewRelicStub.nrqlCondition(i));
+    }
+    Synthetics page = new Synthetics();
+    page.setMonitors(monitors);
+    page.setCount(10 * pageSize);
+    PolicyAlertConditions conditionsPage = new PolicyAlertConditions();
+    conditionsPage.setNrqlConditions(nrqlConditions);
+    synthetics = client.writeValue(page);
+    syntheticsBytes = synthetics.getBytes("UTF-8");
+    conditions = client.writeValue(conditionsPage);
+    conditionsBytes = conditions.getBytes("UTF-8");
+    condition = ConditionType.NRQL.wrap(NewRelicStub.nrqlCondition(42));
+  }
+
+  @Benchmark
+  public Synthetics readSyntheticsString() throws IOException {
+    return client.readValue(synthetics, Synthetics.class);
+  }
+
+  @Benchmark
+  public Synthetics readSyntheticsStream() throws IOException {
+    return client.readValue(new ByteArrayInputStream(syntheticsBytes), Synthetics.class);
+  }
+
+  @Benchmark
+  public Synthetics updateSynthetics() throws IOException {
+    return client.readValue(synthetics, new Synthetics());
+  }
+
+  @Benchmark
+  public PolicyAlertConditions readConditionsString() throws IOException {
+    return client.readValue(conditions, PolicyAlertConditions.class);
+  }
+
+  @Benchmark
+  public PolicyAlertConditions readConditionsStream() throws IOException {
+    return client.readValue(new ByteArrayInputStream(conditionsBytes),
+        PolicyAlertConditions.class);
+  }
+
+  @Benchmark
+  public PolicyAlertConditions updateConditions() throws IOException {
+    return client.readValue(new ByteArrayInputStream(conditionsBytes),
+        new PolicyAlertConditions());
+  }
+
+  @Benchmark
+  public String writeCondition() throws IOException {
+    return client.writeValue(condition);
+  }
+
+  @Benchmark
+  public byte[] writeConditionBytes() throws IOException {
+    return client.writeValueAsBytes(condition);
+  }
+
+  @Benchmark
+  public int writeConditionStream() throws IOException {
+    out.reset();
+    client.writeValue(out, condition);
+    return out.size();
+  }
+}
@@ -0,0 +1,69 @@
+package io.truemark.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building query strings from beans and from individual parameters.
+ *
+ * @author Abhijeet Kale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryStringBuilderBenchmark {
+
+  private final PolicyFilter filter = new PolicyFilter();
+
+  /**
+   * A bean with the properties of a policy listing request.
+   */
+  public static class PolicyFilter {
+    public String getName() {
+      return "Production Alerts & Paging (EU)";
+    }
+
+    public Boolean getExactMatch() {
+      return true;
+    }
+
+    public Integer getOffset() {
+      return 100;
+    }
+
+    public Integer getLimit() {
+      return 100;
+    }
+
+    public String getCursor() {
+      return null;
+    }
+  }
+
+  @Benchmark
+  public String addBean() {
+    return new QueryStringBuilder().add(filter).toQueryString();
+  }
+
+  @Benchmark
+  public String addParameters() {
+    return new QueryStringBuilder()
+        .add("filter%5Bname%5D", "Production Alerts & Paging (EU)")
+        .add("filter%5Bexact_match%5D", true)
+        .add("offset", 100)
+        .add("limit", 100)
+        .toQueryString();
+  }
+}
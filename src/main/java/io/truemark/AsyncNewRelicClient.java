@@ -0,0 +1,442 @@
+package io.truemark;
+
+import io.truemark.data.Condition;
+import io.truemark.data.ConditionType;
+import io.truemark.data.Policies;
+import io.truemark.data.Policy;
+import io.truemark.data.PolicyAlertConditions;
+import io.truemark.data.Synthetic;
+import io.truemark.data.Synthetics;
+import io.truemark.exception.NewRelicException;
+import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.http.AdaptivePageSize;
+import io.truemark.http.AsyncCapableRestClient;
+import io.truemark.http.AsyncRestClient;
+import io.truemark.http.BulkWriter;
+import io.truemark.http.ExecutorAsyncRestClient;
+import io.truemark.http.JfrEvents;
+import io.truemark.http.LinkPagingStrategy;
+import io.truemark.http.Paginator;
+import io.truemark.http.RestResponse;
+import io.truemark.http.RestClient;
+import io.truemark.http.WriteReport;
+import io.truemark.http.WriteResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Non-blocking facade over {@link NewRelicClient}. Every operation returns immediately and its
+ * requests are chained on {@link AsyncRestClient} futures. Endpoint clients implementing
+ * {@link AsyncCapableRestClient} are used through their native non-blocking view, blocking
+ * clients are adapted onto the executor of the underlying {@link NewRelicClient}.
+ *
+ * <p>Failures are reported the same way as by the blocking client: a missing policy or an empty
+ * account completes the future exceptionally with a {@link NewRelicNotFoundException}, while the
+ * bulk updates complete with a {@link WriteReport} holding the outcome of every item. The updates
+ * are sent up to the write parallelism of the client, each next one being started as one in
+ * flight completes.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j
+public class AsyncNewRelicClient {
+
+  private final NewRelicClient client;
+
+  AsyncNewRelicClient(NewRelicClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Get the alert conditions status for a policy.
+   *
+   * @param policyName the policy which user is interested in
+   * @return a future completed with the condition's name as key and state as value
+   */
+  public CompletableFuture<Map<String, Boolean>> getAlertConditionStats(String policyName) {
+    JfrEvents recorded = JfrEvents.operation("getAlertConditionStats", policyName);
+    return getPolicyByName(policyName)
+        .thenCompose(policy -> getAllConditions(policyName, policy))
+        .thenApply(NewRelicClient::getStats)
+        .whenComplete((stats, x) -> {
+          if (x != null) {
+            NewRelicClient.failed(recorded, x);
+          } else {
+            NewRelicClient.commit(recorded, stats.size());
+          }
+        });
+  }
+
+  /**
+   * Disables the alert conditions under a policy, skipping those already disabled.
+   *
+   * @param policyName accepts the policy name
+   * @return a future completed with the outcome of the update of every condition, along with a
+   *     {@link WriteResult.Status#FAILED} result for each condition type which could not be
+   *     listed
+   */
+  public CompletableFuture<WriteReport> disableAlertConditions(String policyName) {
+    JfrEvents recorded = JfrEvents.operation("disableAlertConditions", policyName);
+    return getPolicyByName(policyName)
+        .thenCompose(policy -> getAllConditions(policyName, policy))
+        .thenCompose(allConditions -> {
+          List<BulkWriter.AsyncTask> tasks = new ArrayList<>();
+          List<WriteResult> unsent = new ArrayList<>();
+          NewRelicClient.addDisableUpdates(policyName, allConditions,
+              (type, condition, enabled) -> tasks.add(conditionTask(type, condition, enabled)),
+              unsent);
+          return write(tasks, unsent, " on the policy " + policyName);
+        })
+        .whenComplete((report, x) -> {
+          if (x != null) {
+            NewRelicClient.failed(recorded, x);
+          } else {
+            NewRelicClient.commit(recorded, report);
+          }
+        });
+  }
+
+  /**
+   * Restores the alert conditions as per the Map sent. Only the conditions whose state differs
+   * from the requested one are updated.
+   *
+   * @param policyName the name of policy user interested in
+   * @param states     map containing the restoring states for conditions
+   * @return a future completed with the outcome of every condition, as reported by
+   *     {@link NewRelicClient#restoreAlertConditionStates(String, Map)}
+   */
+  public CompletableFuture<WriteReport> restoreAlertConditionStates(String policyName,
+                                                                    Map<String, Boolean> states) {
+    JfrEvents recorded = JfrEvents.operation("restoreAlertConditionStates", policyName);
+    CompletableFuture<WriteReport> restored;
+    if (states == null || states.isEmpty()) {
+      restored = getPolicyByName(policyName).thenApply(policy -> WriteReport.empty());
+    } else {
+      restored = getPolicyByName(policyName)
+          .thenCompose(policy -> getAllConditions(policyName, policy))
+          .thenCompose(allConditions -> {
+            List<BulkWriter.AsyncTask> tasks = new ArrayList<>();
+            List<WriteResult> unsent = new ArrayList<>();
+            NewRelicClient.addRestoreUpdates(policyName, allConditions, states,
+                (type, condition, enabled) -> tasks.add(conditionTask(type, condition, enabled)),
+                unsent);
+            return write(tasks, unsent, " on the policy " + policyName);
+          });
+    }
+    return restored.whenComplete((report, x) -> {
+      if (x != null) {
+        NewRelicClient.failed(recorded, x);
+      } else {
+        NewRelicClient.commit(recorded, report);
+      }
+    });
+  }
+
+  /**
+   * Gets the information on the Synthetic states in New Relic account.
+   *
+   * @return a future completed with the Synthetic states keyed by name, or exceptionally with a
+   *     {@link NewRelicNotFoundException} if there are none or a page cannot be fetched
+   */
+  public CompletableFuture<Map<String, Boolean>> getSyntheticStates() {
+    JfrEvents recorded = JfrEvents.operation("getSyntheticStates", NewRelicClient.SYNTHETICS);
+    AsyncRestClient restClient = async(client.restClientSynthetic);
+    return listSynthetics(
+        uri -> restClient.getResponse(uri, SyntheticStatesParser.INSTANCE),
+        SyntheticStatesParser.Page::getCount, SyntheticStatesParser.Page::getStates)
+        .handle((states, x) -> {
+          if (x != null) {
+            log.error("Error occurred fetching synthetics from New Relic. " + x.getMessage(), x);
+            throw new CompletionException(new NewRelicNotFoundException(
+                "Unable to list the Synthetics.", getIOException(x)));
+          }
+          Map<String, Boolean> retStats = new HashMap<>();
+          for (Map.Entry<String, Boolean> state : states) {
+            if (state.getKey() != null && state.getValue() != null) {
+              retStats.put(state.getKey(), state.getValue());
+            }
+          }
+          if (retStats.isEmpty()) {
+            throw new CompletionException(new NewRelicNotFoundException("No Synthetics found ."));
+          }
+          return retStats;
+        })
+        .whenComplete((stats, x) -> {
+          if (x != null) {
+            NewRelicClient.failed(recorded, x);
+          } else {
+            NewRelicClient.commit(recorded, stats.size());
+          }
+        });
+  }
+
+  /**
+   * Disables the Synthetic.
+   *
+   * @param syntheticName name of the synthetic to be disabled
+   * @return a future completed once the synthetic is updated, or exceptionally with a
+   *     {@link NewRelicNotFoundException} if it is not found or a {@link NewRelicException} if it
+   *     cannot be updated
+   */
+  public CompletableFuture<Void> disableSynthetic(String syntheticName) {
+    JfrEvents recorded = JfrEvents.operation("disableSynthetic", syntheticName);
+    return getSyntheticIndex().thenCompose(index -> {
+      Synthetic synthetic = index.get(syntheticName);
+      if (synthetic == null && index.getError() != null) {
+        throw new CompletionException(new NewRelicNotFoundException(
+            "Unable to list the Synthetics.", index.getError()));
+      } else if (synthetic == null) {
+        throw new CompletionException(new NewRelicNotFoundException(
+            "No Synthetic by name : " + syntheticName + " found."));
+      }
+      return updateSynthetic(synthetic, NewRelicClient.DISABLED);
+    }).whenComplete((updated, x) -> {
+      if (x != null) {
+        NewRelicClient.failed(recorded, x);
+      } else {
+        NewRelicClient.commit(recorded, 1);
+      }
+    });
+  }
+
+  /**
+   * Disables the Synthetics with the given names, listing the monitors only once. Monitors which
+   * are already disabled are skipped.
+   *
+   * @param syntheticNames names of the synthetics to be disabled
+   * @return a future completed with the outcome of every name, failed for a name which is not
+   *     found when the monitors could not all be listed
+   */
+  public CompletableFuture<WriteReport> disableSynthetics(Collection<String> syntheticNames) {
+    JfrEvents recorded = JfrEvents.operation("disableSynthetics", NewRelicClient.SYNTHETICS);
+    CompletableFuture<WriteReport> disabled;
+    if (syntheticNames == null || syntheticNames.isEmpty()) {
+      disabled = CompletableFuture.completedFuture(WriteReport.empty());
+    } else {
+      disabled = getSyntheticIndex().thenCompose(index -> {
+        List<BulkWriter.AsyncTask> tasks = new ArrayList<>();
+        List<WriteResult> unsent = new ArrayList<>();
+        for (String syntheticName : syntheticNames) {
+          addSyntheticTask(tasks, unsent, index, syntheticName, NewRelicClient.DISABLED);
+        }
+        return write(tasks, unsent, " on New Relic");
+      });
+    }
+    return disabled.whenComplete((report, x) -> {
+      if (x != null) {
+        NewRelicClient.failed(recorded, x);
+      } else {
+        NewRelicClient.commit(recorded, report);
+      }
+    });
+  }
+
+  /**
+   * Restores the synthetics as per the map sent. Only the monitors whose status differs from the
+   * requested one are updated.
+   *
+   * @param states information containing the state needed per synthetic
+   * @return a future completed with the outcome of every name, skipped if the monitor was
+   *     already in its state and failed if its state is null or it is not found when the
+   *     monitors could not all be listed
+   */
+  public CompletableFuture<WriteReport> restoreSyntheticStates(Map<String, Boolean> states) {
+    JfrEvents recorded = JfrEvents.operation("restoreSyntheticStates", NewRelicClient.SYNTHETICS);
+    CompletableFuture<WriteReport> restored;
+    if (states == null || states.isEmpty()) {
+      restored = CompletableFuture.completedFuture(WriteReport.empty());
+    } else {
+      restored = getSyntheticIndex().thenCompose(index -> {
+        List<BulkWriter.AsyncTask> tasks = new ArrayList<>();
+        List<WriteResult> unsent = new ArrayList<>();
+        for (Map.Entry<String, Boolean> state : states.entrySet()) {
+          if (state.getValue() == null) {
+            unsent.add(NewRelicClient.noState(state.getKey()));
+          } else {
+            addSyntheticTask(tasks, unsent, index, state.getKey(), state.getValue()
+                ? NewRelicClient.ENABLED : NewRelicClient.DISABLED);
+          }
+        }
+        return write(tasks, unsent, " on New Relic");
+      });
+    }
+    return restored.whenComplete((report, x) -> {
+      if (x != null) {
+        NewRelicClient.failed(recorded, x);
+      } else {
+        NewRelicClient.commit(recorded, report);
+      }
+    });
+  }
+
+  private AsyncRestClient async(RestClient restClient) {
+    return restClient instanceof AsyncCapableRestClient
+        ? ((AsyncCapableRestClient) restClient).async()
+        : new ExecutorAsyncRestClient(restClient, client.getExecutor());
+  }
+
+  private CompletableFuture<Policy> getPolicyByName(String policyName) {
+    AsyncRestClient restClient = async(client.restClientPolicy);
+    return client.getPolicyRegistry().getAsync(policyName,
+        uri -> restClient.getResponse(uri, Policies.class))
+        .handle((policy, x) -> {
+          if (x != null) {
+            log.error("Error occurred fetching policies from New Relic. " + x.getMessage(), x);
+            throw new CompletionException(new NewRelicNotFoundException("No policies found."));
+          }
+          if (policy == null) {
+            throw new CompletionException(new NewRelicNotFoundException(
+                "No policy by name: " + policyName + " found."));
+          }
+          return policy;
+        });
+  }
+
+  private CompletableFuture<Map<ConditionType, List<Condition>>> getAllConditions(
+      String policyName, Policy policy) {
+    Map<ConditionType, CompletableFuture<List<Condition>>> futures =
+        new EnumMap<>(ConditionType.class);
+    for (ConditionType type : ConditionType.values()) {
+      AsyncRestClient restClient = async(client.getRestClient(type));
+      futures.put(type, Paginator.collectAsync(
+          new LinkPagingStrategy<>(client.getConditionsUri(type, policy.getId())),
+          uri -> restClient.getResponse(uri, PolicyAlertConditions.class), type::getConditions)
+          .exceptionally(x -> {
+            log.error("Error occurred fetching " + type.getLabel() + " conditions on the policy  "
+                + policyName + ". " + x.getMessage(), x);
+            return null;
+          }));
+    }
+    return allOf(new ArrayList<>(futures.values())).thenApply(v -> {
+      Map<ConditionType, List<Condition>> conditions = new EnumMap<>(ConditionType.class);
+      for (Map.Entry<ConditionType, CompletableFuture<List<Condition>>> entry
+          : futures.entrySet()) {
+        conditions.put(entry.getKey(), entry.getValue().join());
+      }
+      return conditions;
+    });
+  }
+
+  /**
+   * Sends the updates with at most the write parallelism of the client in flight.
+   *
+   * @param tasks   the updates to send
+   * @param unsent  the results of the items for which no update is sent
+   * @param context where the items are, for the log
+   * @return a future completed with the report of the updates
+   */
+  private CompletableFuture<WriteReport> write(List<BulkWriter.AsyncTask> tasks,
+                                               List<WriteResult> unsent, String context) {
+    long start = System.nanoTime();
+    return BulkWriter.executeAsync(tasks, client.getWriteParallelism())
+        .thenApply(results -> NewRelicClient.report(results, unsent, context,
+            System.nanoTime() - start));
+  }
+
+  private BulkWriter.AsyncTask conditionTask(ConditionType type, Condition condition,
+                                             Boolean enabled) {
+    return new BulkWriter.AsyncTask(NewRelicClient.getConditionLabel(type), condition.getName(),
+        () -> {
+          condition.setEnabled(enabled);
+          return async(client.getRestClient(type))
+              .update(client.getConditionUri(type, condition.getId()), type.wrap(condition));
+        });
+  }
+
+  private void addSyntheticTask(List<BulkWriter.AsyncTask> tasks, List<WriteResult> unsent,
+                                NewRelicClient.SyntheticIndex index, String syntheticName,
+                                String status) {
+    Synthetic synthetic = index.getUpdate(syntheticName, status, unsent);
+    if (synthetic != null) {
+      tasks.add(new BulkWriter.AsyncTask(NewRelicClient.SYNTHETIC, synthetic.getName(), () -> {
+        synthetic.setStatus(status);
+        return async(client.restClientSynthetic)
+            .update(client.getSyntheticUri(synthetic), synthetic);
+      }));
+    }
+  }
+
+  private CompletableFuture<Void> updateSynthetic(Synthetic synthetic, String status) {
+    synthetic.setStatus(status);
+    return async(client.restClientSynthetic).update(client.getSyntheticUri(synthetic), synthetic)
+        .handle((result, x) -> {
+          if (x != null) {
+            log.error("Error occurred updating synthetic " + synthetic.getName() + " on New Relic. "
+                + x.getMessage(), x);
+            IOException e = getIOException(x);
+            throw new CompletionException(e instanceof NewRelicException ? e
+                : new NewRelicException("Unable to update the Synthetic " + synthetic.getName()
+                    + ".", e));
+          }
+          return null;
+        });
+  }
+
+  private CompletableFuture<NewRelicClient.SyntheticIndex> getSyntheticIndex() {
+    return getSynthetics().handle((synthetics, x) -> {
+      NewRelicClient.SyntheticIndex index = new NewRelicClient.SyntheticIndex();
+      if (x != null) {
+        log.error("Error occurred fetching synthetics from New Relic. " + x.getMessage(), x);
+        index.failed(getIOException(x));
+      } else {
+        for (Synthetic synthetic : synthetics) {
+          index.add(synthetic);
+        }
+      }
+      return index;
+    });
+  }
+
+  private static IOException getIOException(Throwable x) {
+    Throwable cause = x instanceof CompletionException && x.getCause() != null
+        ? x.getCause() : x;
+    if (cause instanceof UncheckedIOException) {
+      return ((UncheckedIOException) cause).getCause();
+    }
+    return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+  }
+
+  private CompletableFuture<List<Synthetic>> getSynthetics() {
+    AsyncRestClient restClient = async(client.restClientSynthetic);
+    return listSynthetics(uri -> restClient.getResponse(uri, Synthetics.class),
+        Synthetics::getCount, Synthetics::getMonitors);
+  }
+
+  /**
+   * Lists the monitors. The first page carries the monitor count, so no separate count request
+   * is needed, and the remaining pages are requested with the page size and page parallelism of
+   * the client.
+   *
+   * @param fetcher fetches a page of the listing
+   * @param count   extracts the monitor count from a page
+   * @param items   extracts the items from a page
+   * @param <P>     the type of a page
+   * @param <T>     the type of the items
+   * @return a future completed with the items, exceptionally if a page cannot be fetched
+   */
+  private <P, T> CompletableFuture<List<T>> listSynthetics(
+      Function<String, CompletableFuture<RestResponse<P>>> fetcher, Function<P, Integer> count,
+      Function<P, List<T>> items) {
+    AdaptivePageSize adaptive = client.getAdaptivePageSize();
+    if (adaptive != null) {
+      fetcher = adaptive.measureAsync(fetcher);
+    }
+    return Paginator.collectAsync(client.getSyntheticsPaging(count), fetcher, items,
+        client.getPageParallelism());
+  }
+
+  private static CompletableFuture<Void> allOf(List<CompletableFuture<?>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+  }
+}
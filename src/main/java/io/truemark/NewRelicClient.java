@@ -1,22 +1,59 @@
 package io.truemark;
 
 import io.truemark.data.Condition;
+import io.truemark.data.ConditionType;
 import io.truemark.data.Policies;
 import io.truemark.data.Policy;
-import io.truemark.data.PolicyAlertCondition;
 import io.truemark.data.PolicyAlertConditions;
 import io.truemark.data.Synthetic;
 import io.truemark.data.Synthetics;
+import io.truemark.exception.NewRelicException;
 import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.http.AdaptivePageSize;
+import io.truemark.http.BulkWriter;
+import io.truemark.http.DaemonThreadFactory;
+import io.truemark.http.Hedging;
+import io.truemark.http.JfrEvents;
+import io.truemark.http.JacksonRestClient;
+import io.truemark.http.LinkPagingStrategy;
+import io.truemark.http.MetricsListener;
+import io.truemark.http.OffsetPagingStrategy;
+import io.truemark.http.PageFetcher;
+import io.truemark.http.Paginator;
+import io.truemark.http.RateLimiter;
+import io.truemark.http.ResponseCache;
 import io.truemark.http.RestClient;
+import io.truemark.http.RestClientFactory;
+import io.truemark.http.SingleFlight;
 import io.truemark.http.URLConnectionRestClient;
+import io.truemark.http.WireLogger;
+import io.truemark.http.WriteReport;
+import io.truemark.http.WriteResult;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Client to handle New Relic requests.
@@ -26,10 +63,15 @@ import java.util.Map;
 @Slf4j
 public class NewRelicClient implements Serializable {
 
-  private static final int OFFSET = 0;
-  private static final int LIMIT = 20;
+  static final int OFFSET = 0;
+  static final int LIMIT = 20;
+  static final int MAX_LIMIT = 100;
   public static final String DISABLED = "DISABLED";
   public static final String ENABLED = "ENABLED";
+  static final String SYNTHETIC = "synthetic";
+  private static final String POLICY = "policy";
+  private static final String CONDITION = "condition";
+  static final String SYNTHETICS = "synthetics";
   private final String policyUrl;
   private final String syntheticConditionUrl;
   private final String alertConditionsUrl;
@@ -44,6 +86,17 @@ public class NewRelicClient implements Serializable {
   protected RestClient restClientNrql;
   protected RestClient restClientAlertExternalServices;
   protected RestClient restClientPlugins;
+  private transient volatile Executor executor;
+  // the pool created when no executor is set, resized along with the parallelism settings
+  private transient ThreadPoolExecutor defaultExecutor;
+  private volatile int pageParallelism = 1;
+  private volatile int writeParallelism = BulkWriter.DEFAULT_PARALLELISM;
+  private volatile int pageSize = LIMIT;
+  private volatile AdaptivePageSize adaptivePageSize;
+  private volatile long policyCacheTtlMillis = PolicyRegistry.DEFAULT_TTL_MILLIS;
+  private transient volatile PolicyRegistry policyRegistry;
+  private final RateLimiter restRateLimiter;
+  private final RateLimiter adminRateLimiter;
 
   /**
    * Creates a new instance of the client using the given url.
@@ -62,6 +115,30 @@ public class NewRelicClient implements Serializable {
   public NewRelicClient(String syntheticConditionUrl, String alertConditionsUrl, String policyUrl,
                         String syntheticUrl, String nrqlUrl, String alertExternalServicesUrl,
                         String pluginsUrl, String restApiKey, String adminApiKey) {
+    this(syntheticConditionUrl, alertConditionsUrl, policyUrl, syntheticUrl, nrqlUrl,
+        alertExternalServicesUrl, pluginsUrl, restApiKey, adminApiKey,
+        RestClientFactory.urlConnection());
+  }
+
+  /**
+   * Creates a new instance of the client using the given url and transport.
+   *
+   * @param syntheticConditionUrl     the URL to use for accessing Synthetic conditions Rest Api
+   * @param alertConditionsUrl        the URL to use for accessing Alert conditions Rest Api
+   * @param policyUrl                 the URL to use for Policy Rest Api
+   * @param syntheticUrl              the URL to use for accessing the Monitors Rest Api
+   * @param nrqlUrl                   the URL to use for accessing the NRQL Rest Api
+   * @param alertExternalServicesUrl  the URL to use for accessing Alerts of External Services
+   *                                  Rest Api
+   * @param pluginsUrl                the URL to use for accessing Plugins Rest Api
+   * @param restApiKey                the rest api key for New Relic account
+   * @param adminApiKey               the admin api key for New Relic account
+   * @param restClientFactory         creates the client used for each endpoint
+   */
+  public NewRelicClient(String syntheticConditionUrl, String alertConditionsUrl, String policyUrl,
+                        String syntheticUrl, String nrqlUrl, String alertExternalServicesUrl,
+                        String pluginsUrl, String restApiKey, String adminApiKey,
+                        RestClientFactory restClientFactory) {
     this.policyUrl = policyUrl;
     this.syntheticConditionUrl = syntheticConditionUrl;
     this.alertConditionsUrl = alertConditionsUrl;
@@ -69,720 +146,1324 @@ public class NewRelicClient implements Serializable {
     this.nrqlUrl = nrqlUrl;
     this.alertExternalServicesUrl = alertExternalServicesUrl;
     this.pluginsUrl = pluginsUrl;
-    restClientSynthetic = new URLConnectionRestClient(syntheticUrl, adminApiKey);
-    restClientAlerts = new URLConnectionRestClient(alertConditionsUrl, adminApiKey);
-    restClientPolicy = new URLConnectionRestClient(policyUrl, restApiKey);
-    restClientSyntheticCondition = new URLConnectionRestClient(syntheticConditionUrl, adminApiKey);
-    restClientNrql = new URLConnectionRestClient(nrqlUrl, adminApiKey);
-    restClientAlertExternalServices = new URLConnectionRestClient(alertExternalServicesUrl,
+    restClientSynthetic = restClientFactory.create(syntheticUrl, adminApiKey);
+    restClientAlerts = restClientFactory.create(alertConditionsUrl, adminApiKey);
+    restClientPolicy = restClientFactory.create(policyUrl, restApiKey);
+    restClientSyntheticCondition = restClientFactory.create(syntheticConditionUrl, adminApiKey);
+    restClientNrql = restClientFactory.create(nrqlUrl, adminApiKey);
+    restClientAlertExternalServices = restClientFactory.create(alertExternalServicesUrl,
         adminApiKey);
-    restClientPlugins = new URLConnectionRestClient(pluginsUrl, adminApiKey);
+    restClientPlugins = restClientFactory.create(pluginsUrl, adminApiKey);
+    // New Relic applies its rate limits per key, so the clients using one key share a limiter
+    restRateLimiter = new RateLimiter();
+    adminRateLimiter = adminApiKey != null && adminApiKey.equals(restApiKey)
+        ? restRateLimiter : new RateLimiter();
+    setRateLimiter(restClientPolicy, restRateLimiter);
+    for (RestClient restClient : getRestClients()) {
+      if (restClient != restClientPolicy) {
+        setRateLimiter(restClient, adminRateLimiter);
+      }
+    }
+  }
+
+  private static void setRateLimiter(RestClient restClient, RateLimiter rateLimiter) {
+    if (restClient instanceof JacksonRestClient) {
+      ((JacksonRestClient) restClient).setRateLimiter(rateLimiter);
+    }
   }
 
   /**
-   * Get the alert conditions status for a policy.
+   * Sets the executor used to issue independent requests concurrently. If none is set, a pool of
+   * daemon threads is created on first use. It holds as many threads as the larger of the number
+   * of condition types, the write parallelism and the page parallelism, further tasks waiting in
+   * its queue, and releases the threads idle for a minute. Tasks submitted to the executor block
+   * on network I/O, so a bounded executor should allow for at least one thread per condition
+   * type.
    *
-   * @param policyName the policy which user is interested in
-   * @return Map containing the condition's name as key and state as value
-   * @throws NewRelicNotFoundException thrown in case of an error
+   * @param executor the executor to use
    */
-  public Map<String, Boolean> getAlertConditionStats(String policyName) throws
-      NewRelicNotFoundException {
-    // first get all the policies
-    Policies policies = getPolicies();
-    if (policies == null) {
-      throw new NewRelicNotFoundException("No policies found.");
-    }
-    Integer policyId = null;
-    Map<String, Boolean> retStats;
-    // if there are policy list found, iterate to find out the policy in which user is interested
-    if (policies != null && policies.getPolicies() != null && policies.getPolicies().length > 0) {
-      for (Policy policy : policies.getPolicies()) {
-        if (policy.getName().equals(policyName)) {
-          log.debug("Found the policy with Name : " + policyName);
-          policyId = policy.getId();
+  public synchronized void setExecutor(Executor executor) {
+    this.executor = executor;
+    defaultExecutor = null;
+  }
+
+  /**
+   * Returns the executor used to issue independent requests concurrently.
+   *
+   * @return the executor
+   */
+  public Executor getExecutor() {
+    Executor ret = executor;
+    if (ret == null) {
+      synchronized (this) {
+        ret = executor;
+        if (ret == null) {
+          int size = getDefaultPoolSize();
+          defaultExecutor = new ThreadPoolExecutor(size, size, 1, TimeUnit.MINUTES,
+              new LinkedBlockingQueue<>(), new DaemonThreadFactory("newrelic-client"));
+          defaultExecutor.allowCoreThreadTimeOut(true);
+          ret = defaultExecutor;
+          executor = ret;
         }
       }
-      if (policyId == null) {
-        throw new NewRelicNotFoundException(policyName + " policy not found.");
-      } else {
-        retStats = new HashMap<>();
-        getAlertConditions(policyName, policyId, retStats);
-        getSyntheticConditions(policyName, policyId, retStats);
-        getNrqlConditions(policyName, policyId, retStats);
-        getExternalServicesConditions(policyName, policyId, retStats);
-        getPluginsConditions(policyName, policyId, retStats);
+    }
+    return ret;
+  }
+
+  /**
+   * Enables or disables connection reuse on all endpoint clients which support it.
+   *
+   * @param pooled true to keep connections alive between requests
+   * @see URLConnectionRestClient#setPooled(boolean)
+   */
+  public void setPooled(boolean pooled) {
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof URLConnectionRestClient) {
+        ((URLConnectionRestClient) restClient).setPooled(pooled);
       }
-    } else {
-      throw new NewRelicNotFoundException("No policies found.");
     }
-    return retStats;
   }
 
   /**
-   * Disables the alert conditions under a policy.
+   * Enables hedging of GET requests on all endpoint clients which support it. A read which has
+   * not completed within the given percentile of the recent latency of its endpoint is sent a
+   * second time on the executor, the first response is used and the other request is aborted.
    *
-   * @param policyName accepts the policy name
-   * @throws NewRelicNotFoundException thrown in case of an error.
+   * @param percentile the latency percentile after which a read is hedged, such as 0.95, or 0 to
+   *                   disable hedging
+   * @param budget     the maximum ratio of hedged to total reads, such as 0.05
+   * @see Hedging
    */
-  public void disableAlertConditions(String policyName) throws NewRelicNotFoundException {
-    Policy policy = getPolicyByName(policyName);
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getPolicyAlertConditions(policyName, policy);
-      disableAlertsConditions(policyName, policyAlertConditions);
-      policyAlertConditions = getSyntheticConditions(policyName, policy);
-      disableSyntheticConditions(policyName, policyAlertConditions);
-      policyAlertConditions = getNrqlConditions(policyName, policy);
-      disableNrqlConditions(policyName, policyAlertConditions);
-      policyAlertConditions = getExternalServiceConditions(policyName, policy);
-      disableExternalServiceConditions(policyName, policyAlertConditions);
-      policyAlertConditions = getPluginsConditions(policyName, policy);
-      disablePluginsConditions(policyName, policyAlertConditions);
-    } else {
-      throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
+  public void setHedging(double percentile, double budget) {
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof URLConnectionRestClient) {
+        ((URLConnectionRestClient) restClient).setHedging(percentile > 0
+            ? new Hedging(percentile, budget, command -> getExecutor().execute(command)) : null);
+      }
     }
   }
 
   /**
-   * This method restores the alert conditions as per the Map sent.
+   * Sets how long the policy resolved for a policy name is remembered. Policies are looked up by
+   * name with a single filtered request, the result of which is reused for the given time.
    *
-   * @param policyName the name of policy user interested in
-   * @param states map containing the restoring states for conditions
-   * @throws NewRelicNotFoundException thrown in case of error
+   * @param ttlMillis the time to live, 0 to look the policy up on every call
    */
-  public void restoreAlertConditionStates(String policyName, Map<String, Boolean> states) throws
-      NewRelicNotFoundException {
-    Policy policy;
-    try {
-      policy = getPolicyByName(policyName);
-    } catch (NewRelicNotFoundException e) {
-      log.error("Error occurred fetching policy by name: " + policyName + ". ", e);
-      throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
+  public void setPolicyCacheTtl(long ttlMillis) {
+    synchronized (this) {
+      policyCacheTtlMillis = ttlMillis;
+      policyRegistry = null;
     }
-    if (policy != null) {
-      if (states != null && !states.isEmpty()) {
-        restoreAlertConditions(policyName, states, policy);
-        restoreSyntheticConditions(policyName, states, policy);
-        restoreNrqlConditions(policyName, states, policy);
-        restoreExternalServicesConditions(policyName, states, policy);
-        restorePluginConditions(policyName, states, policy);
+  }
+
+  /**
+   * Enables caching of GET responses on all endpoint clients which support it. Each endpoint
+   * client gets its own cache. Within the time to live a listing is served from memory, after it
+   * the listing is revalidated with a conditional request where New Relic supports it. Updates
+   * sent through this client invalidate the affected listings.
+   *
+   * @param ttlMillis the time a response is served without contacting New Relic
+   * @param maxBytes  the maximum size of the cached responses per endpoint, or 0 to disable
+   *                  caching
+   * @see ResponseCache
+   */
+  public void setResponseCache(long ttlMillis, long maxBytes) {
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof URLConnectionRestClient) {
+        ((URLConnectionRestClient) restClient).setResponseCache(maxBytes > 0
+            ? new ResponseCache(ttlMillis, maxBytes) : null);
       }
-    } else {
-      throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
     }
   }
 
   /**
-   * Gets the information on the Synthetic states in New Relic account.
+   * Limits the rate of requests sent with each API key. Requests rejected by New Relic with a 429
+   * response are retried after the delay it asks for, whether a rate is set or not, and the rate
+   * is reduced until requests are accepted again.
    *
-   * @return A map containing the Synthetic state
-   * @throws NewRelicNotFoundException thrown in case of error
+   * @param requestsPerSecond the maximum number of requests per second and API key
+   * @param burst             the number of requests which may be sent at once after being idle
+   * @see RateLimiter
    */
-  public Map<String, Boolean> getSyntheticStates() throws NewRelicNotFoundException {
-    // get the count of monitors
-    // figure out how many calls to make to collect the synthetic data
-    Integer syntheticCount = getSyntheticCount();
-    Map<String, Boolean> retStats;
-    if (syntheticCount == null || syntheticCount == 0) {
-      throw new NewRelicNotFoundException("No Synthetics found .");
-    } else {
-      retStats = new HashMap<>();
-      int offset = OFFSET;
-      int limit = LIMIT;
-      // first get all Synthetics/Monitors
-      Synthetics synthetics;
-      for (int i = offset; i < syntheticCount; i += LIMIT) {
-        try {
-          synthetics = restClientSynthetic.get(syntheticUrl + "?offset=" + i + "&limit="
-              + limit, Synthetics.class);
-          if (synthetics != null && synthetics.getMonitors() != null && !synthetics.getMonitors()
-              .isEmpty()) {
-            List<Synthetic> monitors = synthetics.getMonitors();
-            for (Synthetic synthetic : monitors) {
-              if (synthetic != null && synthetic.getName() != null && synthetic.getStatus()
-                  != null) {
-                retStats.put(synthetic.getName(), !synthetic.getStatus()
-                    .equalsIgnoreCase("DISABLED"));
-              }
-            }
-          }
-        } catch (IOException e) {
-          log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
-        }
+  public void setRateLimit(double requestsPerSecond, int burst) {
+    restRateLimiter.setRate(requestsPerSecond, burst);
+    adminRateLimiter.setRate(requestsPerSecond, burst);
+  }
+
+  /**
+   * Sets how often a request rejected with a 429 response is sent again before failing with a
+   * {@link io.truemark.exception.NewRelicRateLimitException}.
+   *
+   * @param maxRetries the number of retries, 0 to fail on the first 429 response
+   */
+  public void setRateLimitRetries(int maxRetries) {
+    restRateLimiter.setMaxRetries(maxRetries);
+    adminRateLimiter.setMaxRetries(maxRetries);
+  }
+
+  /**
+   * Configures the wire logging of all endpoint clients. Requests are only logged when the
+   * {@value WireLogger#LOGGER} logger is set to debug level.
+   *
+   * @param maxBytes   the maximum number of bytes of a request or response body to log
+   * @param sampleRate log one in every sampleRate requests, 1 to log every request
+   * @see WireLogger
+   */
+  public void setWireLogging(int maxBytes, int sampleRate) {
+    WireLogger wireLogger = new WireLogger(maxBytes, sampleRate);
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof JacksonRestClient) {
+        ((JacksonRestClient) restClient).setWireLogger(wireLogger);
       }
-      return retStats;
     }
   }
 
   /**
-   * Disables the Synthetic.
+   * Sets the listener told about every request sent by the endpoint clients which support it,
+   * for instance an {@link io.truemark.http.EndpointMetrics} to keep latency histograms per
+   * endpoint.
    *
-   * @param syntheticName name of the synthetic to be disabled
-   * @throws NewRelicNotFoundException thrown in case of error
+   * @param metricsListener the listener or null to collect no metrics
+   * @see URLConnectionRestClient#setMetricsListener(MetricsListener)
    */
-  public void disableSynthetic(String syntheticName) throws NewRelicNotFoundException {
-    Synthetic synthetic = getSyntheticByName(syntheticName);
-    if (synthetic != null) {
-      updateSynthetic(synthetic, DISABLED);
-    } else {
-      throw new NewRelicNotFoundException("No Synthetic by name : " + syntheticName + " found.");
+  public void setMetricsListener(MetricsListener metricsListener) {
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof URLConnectionRestClient) {
+        ((URLConnectionRestClient) restClient).setMetricsListener(metricsListener);
+      }
     }
   }
 
   /**
-   * This method restores the synthetics as per the map sent.
+   * Enables coalescing of GET requests on all endpoint clients which support it. Reads of the
+   * same URL made while an identical read is in flight, such as several threads listing the
+   * policies at once, wait for its response instead of sending another request. Each caller still
+   * gets its own copy of the objects read.
    *
-   * @param states information containing the state needed per synthetic
+   * @param coalescing true to coalesce identical concurrent reads
+   * @see URLConnectionRestClient#setSingleFlight(SingleFlight)
    */
-  public void restoreSyntheticStates(Map<String, Boolean> states) {
-    if (states != null && !states.isEmpty()) {
-      for (String syntheticName : states.keySet()) {
-        Boolean state = states.get(syntheticName);
-        Synthetic synthetic = getSyntheticByName(syntheticName);
-        if (synthetic != null) {
-          String status = state == true ? ENABLED : DISABLED;
-          updateSynthetic(synthetic, status);
-        } else {
-          log.error("Unable to find synthetic by name " + syntheticName);
-        }
+  public void setRequestCoalescing(boolean coalescing) {
+    SingleFlight singleFlight = coalescing ? new SingleFlight() : null;
+    for (RestClient restClient : getRestClients()) {
+      if (restClient instanceof URLConnectionRestClient) {
+        ((URLConnectionRestClient) restClient).setSingleFlight(singleFlight);
       }
     }
   }
 
-  private void updateSynthetic(Synthetic synthetic, String status) {
-    // update the synthetic status
-    synthetic.setStatus(status);
-    try {
-      restClientSynthetic.update(syntheticUrl + "/" + synthetic.getId(), synthetic);
-    } catch (IOException e) {
-      log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
-    }
+  private int getDefaultPoolSize() {
+    return Math.max(ConditionType.values().length, Math.max(writeParallelism, pageParallelism));
   }
 
-  private Synthetic getSyntheticByName(String syntheticName) {
-    Integer syntheticCount = getSyntheticCount();
-    Synthetic retSynthetic = null;
-    if (syntheticCount != null && syntheticCount > 0) {
-      int offset = OFFSET;
-      int limit = LIMIT;
-      // first get all Synthetics/Monitors
-      Synthetics synthetics;
-      for (int i = offset; i < syntheticCount; i += LIMIT) {
-        try {
-          synthetics = restClientSynthetic.get(syntheticUrl + "?offset=" + i + "&limit="
-              + limit, Synthetics.class);
-          if (synthetics != null && synthetics.getMonitors() != null && !synthetics.getMonitors()
-              .isEmpty()) {
-            List<Synthetic> monitors = synthetics.getMonitors();
-            for (Synthetic synthetic : monitors) {
-              if (synthetic != null && synthetic.getName() != null && synthetic.getName()
-                  .equalsIgnoreCase(syntheticName)) {
-                retSynthetic = synthetic;
-                break;
-              }
-            }
-          }
-        } catch (IOException e) {
-          log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
-        }
+  /**
+   * Resizes the default pool after a change of the parallelism settings.
+   */
+  private synchronized void resizeDefaultExecutor() {
+    ThreadPoolExecutor pool = defaultExecutor;
+    if (pool != null) {
+      int size = getDefaultPoolSize();
+      // the core size may never exceed the maximum size
+      if (size > pool.getMaximumPoolSize()) {
+        pool.setMaximumPoolSize(size);
+        pool.setCorePoolSize(size);
+      } else {
+        pool.setCorePoolSize(size);
+        pool.setMaximumPoolSize(size);
       }
     }
+  }
 
-    return retSynthetic;
+  /**
+   * Sets the number of monitor pages which may be requested at the same time when listing the
+   * Synthetics. With the default of 1 the pages are requested one after another, the next page
+   * being prefetched while the current one is processed. A higher value fetches the first page to
+   * learn the monitor count and then requests the remaining pages concurrently on the executor.
+   *
+   * @param pageParallelism the maximum number of concurrent page requests, at least 1
+   */
+  public void setPageParallelism(int pageParallelism) {
+    if (pageParallelism < 1) {
+      throw new IllegalArgumentException("pageParallelism must be at least 1");
+    }
+    this.pageParallelism = pageParallelism;
+    resizeDefaultExecutor();
   }
 
-  private Integer getSyntheticCount() {
-    Synthetics synthetics = null;
-    try {
-      synthetics = restClientSynthetic.get("", Synthetics.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
+  /**
+   * Returns the number of monitor pages which may be requested at the same time.
+   *
+   * @return the maximum number of concurrent page requests
+   */
+  public int getPageParallelism() {
+    return pageParallelism;
+  }
+
+  /**
+   * Sets the number of updates which may be sent at the same time by the bulk operations, such as
+   * disabling the conditions of a policy or restoring the Synthetic states. The calling thread
+   * sends updates along with tasks on the executor. With a value of 1 the updates are sent one
+   * after another on the calling thread.
+   *
+   * @param writeParallelism the maximum number of concurrent updates, at least 1
+   */
+  public void setWriteParallelism(int writeParallelism) {
+    if (writeParallelism < 1) {
+      throw new IllegalArgumentException("writeParallelism must be at least 1");
     }
+    this.writeParallelism = writeParallelism;
+    resizeDefaultExecutor();
+  }
 
-    return synthetics != null ? synthetics.getCount() : 0;
+  /**
+   * Returns the number of updates which may be sent at the same time by the bulk operations.
+   *
+   * @return the maximum number of concurrent updates
+   */
+  public int getWriteParallelism() {
+    return writeParallelism;
   }
 
-  private PolicyAlertCondition getAlertCondition(Policy policy, String condition) {
-    PolicyAlertCondition retAlertCondition = null;
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getPolicyAlertConditions(policy.getName(),
-          policy);
-      if (policyAlertConditions != null && policyAlertConditions.getConditions() != null
-          && !policyAlertConditions.getConditions().isEmpty()) {
-        for (Condition alertCondition : policyAlertConditions.getConditions()) {
-          if (alertCondition.getName().equalsIgnoreCase(condition)) {
-            retAlertCondition = new PolicyAlertCondition();
-            retAlertCondition.setCondition(alertCondition);
-            break;
-          }
-        }
-      }
+  /**
+   * Sets the number of monitors requested per page when listing the Synthetics. The Synthetics
+   * API accepts up to 100 monitors per page. Setting a page size turns off an adaptive page size.
+   *
+   * @param pageSize the number of monitors per page, between 1 and 100
+   */
+  public void setPageSize(int pageSize) {
+    if (pageSize < 1 || pageSize > MAX_LIMIT) {
+      throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_LIMIT);
     }
+    this.pageSize = pageSize;
+    this.adaptivePageSize = null;
+  }
 
-    return retAlertCondition;
+  /**
+   * Returns the number of monitors requested per page, which may change over time if the page
+   * size is adaptive.
+   *
+   * @return the number of monitors per page
+   */
+  public int getPageSize() {
+    AdaptivePageSize adaptive = adaptivePageSize;
+    return adaptive != null ? adaptive.getAsInt() : pageSize;
   }
 
-  private PolicyAlertCondition getSyntheticCondition(Policy policy, String condition) {
-    PolicyAlertCondition retAlertCondition = null;
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getSyntheticConditions(policy.getName(),
-          policy);
-      if (policyAlertConditions != null && policyAlertConditions.getSyntheticsConditions() != null
-          && !policyAlertConditions.getSyntheticsConditions().isEmpty()) {
-        for (Condition alertCondition : policyAlertConditions.getSyntheticsConditions()) {
-          if (alertCondition.getName().equalsIgnoreCase(condition)) {
-            retAlertCondition = new PolicyAlertCondition();
-            retAlertCondition.setSyntheticsCondition(alertCondition);
-            break;
-          }
-        }
+  /**
+   * Lets the number of monitors requested per page adapt to the latency of the Synthetics API.
+   * Starting from the current page size, the page size is doubled up to 100 while pages are
+   * returned within the target latency. After a timeout it is halved and the timed out page is
+   * requested again with the smaller size.
+   *
+   * @param targetLatencyMillis the latency below which the page size grows, 0 or less to go back
+   *                            to the fixed page size
+   */
+  public void setAdaptivePageSize(long targetLatencyMillis) {
+    this.adaptivePageSize = targetLatencyMillis > 0
+        ? new AdaptivePageSize(pageSize, 1, MAX_LIMIT, targetLatencyMillis) : null;
+  }
+
+  AdaptivePageSize getAdaptivePageSize() {
+    return adaptivePageSize;
+  }
+
+  /**
+   * Returns a non-blocking view of this client. The returned facade shares the endpoints,
+   * credentials and executor of this client.
+   *
+   * @return the asynchronous facade
+   */
+  public AsyncNewRelicClient async() {
+    return new AsyncNewRelicClient(this);
+  }
+
+  /**
+   * Get the alert conditions status for a policy.
+   *
+   * @param policyName the policy which user is interested in
+   * @return Map containing the condition's name as key and state as value
+   * @throws NewRelicNotFoundException thrown in case of an error
+   */
+  public Map<String, Boolean> getAlertConditionStats(String policyName) throws
+      NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("getAlertConditionStats", policyName);
+    try {
+      Policy policy = getPolicyByName(policyName);
+      if (policy == null) {
+        throw new NewRelicNotFoundException(policyName + " policy not found.");
       }
+      Map<String, Boolean> stats = getStats(getAllConditions(policyName, policy));
+      commit(recorded, stats.size());
+      return stats;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-
-    return retAlertCondition;
   }
 
-  private PolicyAlertCondition getNrqlCondition(Policy policy, String condition) {
-    PolicyAlertCondition retAlertCondition = null;
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getNrqlConditions(policy.getName(), policy);
-      if (policyAlertConditions != null && policyAlertConditions.getNrqlConditions() != null
-          && !policyAlertConditions.getNrqlConditions().isEmpty()) {
-        for (Condition alertCondition : policyAlertConditions.getNrqlConditions()) {
-          if (alertCondition.getName().equalsIgnoreCase(condition)) {
-            retAlertCondition = new PolicyAlertCondition();
-            retAlertCondition.setNrqlCondition(alertCondition);
-            break;
-          }
-        }
+  /**
+   * Get the alert conditions status for several policies. The policies are resolved from a single
+   * listing of the policies and the conditions of all of them are fetched concurrently. Policies
+   * which cannot be found are logged and left out.
+   *
+   * @param policyNames the policies which user is interested in
+   * @return the condition states of every policy found, keyed by policy name
+   * @throws NewRelicNotFoundException thrown if the policies cannot be listed
+   */
+  public Map<String, Map<String, Boolean>> getAlertConditionStats(Collection<String> policyNames)
+      throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("getAlertConditionStats", policies(policyNames));
+    try {
+      Map<String, Map<String, Boolean>> retStats = new LinkedHashMap<>();
+      int conditions = 0;
+      for (Map.Entry<String, Map<ConditionType, List<Condition>>> entry
+          : getAllConditions(getPoliciesByName(policyNames)).entrySet()) {
+        Map<String, Boolean> stats = getStats(entry.getValue());
+        retStats.put(entry.getKey(), stats);
+        conditions += stats.size();
       }
+      commit(recorded, conditions);
+      return retStats;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
+  }
 
-    return retAlertCondition;
+  /**
+   * Commits the event of an operation which read the given number of items, if it is recorded.
+   */
+  static void commit(JfrEvents recorded, int items) {
+    if (recorded != null) {
+      recorded.commit(items, null);
+    }
   }
 
-  private PolicyAlertCondition getExternalServiceCondition(Policy policy, String condition) {
-    PolicyAlertCondition retAlertCondition = null;
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getExternalServiceConditions(policy.getName(),
-          policy);
-      if (policyAlertConditions != null && policyAlertConditions.getExternalServiceConditions()
-          != null && !policyAlertConditions.getExternalServiceConditions().isEmpty()) {
-        for (Condition alertCondition : policyAlertConditions.getExternalServiceConditions()) {
-          if (alertCondition.getName().equalsIgnoreCase(condition)) {
-            retAlertCondition = new PolicyAlertCondition();
-            retAlertCondition.setExternalServiceCondition(alertCondition);
-            break;
-          }
-        }
+  /**
+   * Commits the event of an operation which wrote the items of the given report, if it is
+   * recorded.
+   */
+  static void commit(JfrEvents recorded, WriteReport report) {
+    if (recorded != null) {
+      recorded.commit(report.getResults().size(), report);
+    }
+  }
+
+  /**
+   * Commits the event of an operation which wrote the items of several policies, if it is
+   * recorded.
+   */
+  static void commit(JfrEvents recorded, Map<String, WriteReport> reports) {
+    if (recorded != null) {
+      List<WriteResult> results = new ArrayList<>();
+      for (WriteReport report : reports.values()) {
+        results.addAll(report.getResults());
       }
+      recorded.commit(results.size(), new WriteReport(results, 0));
     }
+  }
 
-    return retAlertCondition;
+  /**
+   * Commits the event of an operation which failed, if it is recorded.
+   */
+  static void failed(JfrEvents recorded, Throwable error) {
+    if (recorded != null) {
+      recorded.failed(error instanceof CompletionException && error.getCause() != null
+          ? error.getCause() : error);
+    }
   }
 
-  private PolicyAlertCondition getPluginCondition(Policy policy, String condition) {
-    PolicyAlertCondition retAlertCondition = null;
-    if (policy != null) {
-      PolicyAlertConditions policyAlertConditions = getPluginsConditions(policy.getName(), policy);
-      if (policyAlertConditions != null && policyAlertConditions.getPluginsConditions() != null
-          && !policyAlertConditions.getPluginsConditions().isEmpty()) {
-        for (Condition alertCondition : policyAlertConditions.getPluginsConditions()) {
-          if (alertCondition.getName().equalsIgnoreCase(condition)) {
-            retAlertCondition = new PolicyAlertCondition();
-            retAlertCondition.setPluginCondition(alertCondition);
-            break;
-          }
+  private static String policies(Collection<String> policyNames) {
+    return policyNames == null ? null
+        : policyNames.size() + (policyNames.size() == 1 ? " policy" : " policies");
+  }
+
+  static Map<String, Boolean> getStats(Map<ConditionType, List<Condition>> allConditions) {
+    Map<String, Boolean> retStats = new HashMap<>();
+    for (Map.Entry<ConditionType, List<Condition>> entry : allConditions.entrySet()) {
+      List<Condition> conditions = entry.getValue();
+      if (conditions != null && !conditions.isEmpty()) {
+        log.debug("Found " + entry.getKey().getLabel() + " conditions on policy");
+        for (Condition alertCondition : conditions) {
+          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
         }
       }
     }
-
-    return retAlertCondition;
+    return retStats;
   }
 
-  private Policies getPolicies() {
-    Policies policies = null;
+  /**
+   * Disables the alert conditions under a policy. Conditions which are already disabled are
+   * skipped. The updates are sent concurrently, up to the write parallelism, and a failed update
+   * does not stop the others.
+   *
+   * @param policyName accepts the policy name
+   * @return the outcome of the update of every condition, along with a
+   *     {@link WriteResult.Status#FAILED} result for each condition type which could not be
+   *     listed
+   * @throws NewRelicNotFoundException thrown in case of an error.
+   */
+  public WriteReport disableAlertConditions(String policyName) throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("disableAlertConditions", policyName);
     try {
-      policies = restClientPolicy.get("", Policies.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching policies from New Relic. " + e.getMessage(), e);
+      Policy policy = getPolicyByName(policyName);
+      if (policy == null) {
+        throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
+      }
+      WriteReport report = disableConditions(Collections.singletonMap(policyName, policy))
+          .get(policyName);
+      commit(recorded, report);
+      return report;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return policies;
   }
 
-  private PolicyAlertConditions getPolicyAlertConditions(String policyName, Policy policy) {
-    PolicyAlertConditions policyAlertConditions = null;
+  /**
+   * Disables the alert conditions under several policies. The policies are resolved from a single
+   * listing of the policies and the conditions of all of them are fetched concurrently. The
+   * updates of all policies are then sent together, up to the write parallelism.
+   *
+   * @param policyNames the names of the policies
+   * @return the outcome of the update of every condition keyed by policy name, the report of a
+   *     policy which cannot be found holds a single {@link WriteResult.Status#NOT_FOUND} result
+   * @throws NewRelicNotFoundException thrown if the policies cannot be listed
+   */
+  public Map<String, WriteReport> disableAlertConditions(Collection<String> policyNames)
+      throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("disableAlertConditions", policies(policyNames));
     try {
-      policyAlertConditions = restClientAlerts.get("?policy_id=" + policy.getId(),
-          PolicyAlertConditions.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      Map<String, WriteReport> reports = addMissingPolicies(policyNames,
+          disableConditions(getPoliciesByName(policyNames)));
+      commit(recorded, reports);
+      return reports;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return policyAlertConditions;
   }
 
-  private PolicyAlertConditions getExternalServiceConditions(String policyName, Policy policy) {
-    PolicyAlertConditions policyAlertConditions = null;
+  /**
+   * This method restores the alert conditions as per the Map sent. The states are compared with
+   * a snapshot of the conditions fetched by this call, and only the conditions whose state
+   * differs are updated. The updates are sent concurrently, up to the write parallelism, and a
+   * failed update does not stop the others. With a response cache the snapshot may be as old as
+   * its time to live, changes made through this client are always seen.
+   *
+   * @param policyName the name of policy user interested in
+   * @param states map containing the restoring states for conditions
+   * @return the outcome of every condition, skipped if it was already in its state, not found if
+   *     no condition has its name and failed if it may be of a type which could not be listed
+   * @throws NewRelicNotFoundException thrown in case of error
+   */
+  public WriteReport restoreAlertConditionStates(String policyName, Map<String, Boolean> states)
+      throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("restoreAlertConditionStates", policyName);
     try {
-      policyAlertConditions = restClientAlertExternalServices.get(alertExternalServicesUrl
-          + ".json?policy_id=" + policy.getId(), PolicyAlertConditions.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      Policy policy;
+      try {
+        policy = getPolicyByName(policyName);
+      } catch (NewRelicNotFoundException e) {
+        log.error("Error occurred fetching policy by name: " + policyName + ". ", e);
+        throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
+      }
+      if (policy == null) {
+        throw new NewRelicNotFoundException("No policy by name: " + policyName + " found.");
+      }
+      WriteReport report = states == null || states.isEmpty() ? WriteReport.empty()
+          : restoreConditions(Collections.singletonMap(policyName, policy),
+              Collections.singletonMap(policyName, states)).get(policyName);
+      commit(recorded, report);
+      return report;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return policyAlertConditions;
   }
 
-  private Policy getPolicyByName(String policyName) throws NewRelicNotFoundException {
-    // first get all the policies
-    Policies policies = getPolicies();
-    if (policies == null) {
-      throw new NewRelicNotFoundException("No policies found.");
-    }
-    Policy retPolicy = null;
-    if (policies != null && policies.getPolicies() != null && policies.getPolicies().length > 0) {
-      for (Policy policy : policies.getPolicies()) {
-        if (policy.getName().equals(policyName)) {
-          log.debug("Found the policy with Name : " + policyName);
-          retPolicy = policy;
-          break;
+  /**
+   * Restores the alert conditions of several policies, as returned by
+   * {@link #getAlertConditionStats(Collection)}. The policies are resolved from a single listing
+   * of the policies and the conditions of all of them are fetched concurrently. Only the
+   * conditions whose state differs are updated, the updates of all policies being sent together
+   * up to the write parallelism.
+   *
+   * @param states the states to restore keyed by policy name and condition name
+   * @return the outcome of every condition keyed by policy name, the report of a policy which
+   *     cannot be found holds a single {@link WriteResult.Status#NOT_FOUND} result
+   * @throws NewRelicNotFoundException thrown if the policies cannot be listed
+   */
+  public Map<String, WriteReport> restoreAlertConditionStates(
+      Map<String, Map<String, Boolean>> states) throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("restoreAlertConditionStates",
+        policies(states != null ? states.keySet() : null));
+    try {
+      Map<String, WriteReport> reports = new LinkedHashMap<>();
+      if (states == null || states.isEmpty()) {
+        commit(recorded, reports);
+        return reports;
+      }
+      List<String> policyNames = new ArrayList<>();
+      for (Map.Entry<String, Map<String, Boolean>> entry : states.entrySet()) {
+        if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+          policyNames.add(entry.getKey());
         }
       }
+      if (!policyNames.isEmpty()) {
+        reports = addMissingPolicies(policyNames,
+            restoreConditions(getPoliciesByName(policyNames), states));
+      }
+      for (String policyName : states.keySet()) {
+        reports.putIfAbsent(policyName, WriteReport.empty());
+      }
+      commit(recorded, reports);
+      return reports;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return retPolicy;
   }
 
-  private void getAlertConditions(String policyName, Integer policyId,
-                                  Map<String, Boolean> retStats) {
-    PolicyAlertConditions policyAlertConditions;
-    // find the statistics on the policy
+  /**
+   * Gets the information on the Synthetic states in New Relic account.
+   *
+   * @return A map containing the Synthetic state
+   * @throws NewRelicNotFoundException thrown if there are no Synthetics or a page of them cannot
+   *     be fetched, rather than returning the states of only some of them
+   */
+  public Map<String, Boolean> getSyntheticStates() throws NewRelicNotFoundException {
+    JfrEvents recorded = JfrEvents.operation("getSyntheticStates", SYNTHETICS);
     try {
-      policyAlertConditions = restClientAlerts.get("?policy_id=" + policyId,
-          PolicyAlertConditions.class);
-      if (policyAlertConditions != null && policyAlertConditions.getConditions() != null
-          && !policyAlertConditions.getConditions().isEmpty()) {
-        log.debug("Found Alert conditions on policy");
-        for (Condition alertCondition : policyAlertConditions.getConditions()) {
-          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
+      Map<String, Boolean> retStats = new HashMap<>();
+      try {
+        // only the name and status are needed, so the pages are parsed without binding monitors
+        for (Map.Entry<String, Boolean> state : listSynthetics(
+            uri -> restClientSynthetic.getResponse(uri, SyntheticStatesParser.INSTANCE),
+            SyntheticStatesParser.Page::getCount, SyntheticStatesParser.Page::getStates)) {
+          if (state.getKey() != null && state.getValue() != null) {
+            retStats.put(state.getKey(), state.getValue());
+          }
         }
+      } catch (UncheckedIOException e) {
+        log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
+        throw new NewRelicNotFoundException("Unable to list the Synthetics.", e.getCause());
       }
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      if (retStats.isEmpty()) {
+        throw new NewRelicNotFoundException("No Synthetics found .");
+      }
+      commit(recorded, retStats.size());
+      return retStats;
+    } catch (NewRelicNotFoundException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
   }
 
-  private PolicyAlertConditions getSyntheticConditions(String policyName, Policy policy) {
-    PolicyAlertConditions policyAlertConditions = null;
+  /**
+   * Disables the Synthetic.
+   *
+   * @param syntheticName name of the synthetic to be disabled
+   * @throws NewRelicNotFoundException thrown if the synthetic is not found
+   * @throws NewRelicException thrown if the synthetic cannot be updated
+   */
+  public void disableSynthetic(String syntheticName) throws NewRelicException {
+    JfrEvents recorded = JfrEvents.operation("disableSynthetic", syntheticName);
     try {
-      policyAlertConditions = restClientSyntheticCondition.get(syntheticConditionUrl
-          + ".json?policy_id=" + policy.getId(), PolicyAlertConditions.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      SyntheticIndex index = getSyntheticIndex();
+      Synthetic synthetic = index.get(syntheticName);
+      if (synthetic != null) {
+        updateSynthetic(synthetic, DISABLED);
+      } else if (index.getError() != null) {
+        throw new NewRelicNotFoundException("Unable to list the Synthetics.", index.getError());
+      } else {
+        throw new NewRelicNotFoundException("No Synthetic by name : " + syntheticName + " found.");
+      }
+      commit(recorded, 1);
+    } catch (NewRelicException | RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return policyAlertConditions;
   }
 
-  private void getSyntheticConditions(String policyName, Integer policyId,
-                                      Map<String, Boolean> retStats) {
-    PolicyAlertConditions policyAlertConditions;
-    // find the statistics on the policy
+  /**
+   * Disables the Synthetics with the given names. The monitors are only listed once regardless of
+   * the number of names passed in, so prefer this method over calling disableSynthetic in a loop.
+   * Monitors which are already disabled are skipped. The updates are sent concurrently, up to the
+   * write parallelism.
+   *
+   * @param syntheticNames names of the synthetics to be disabled
+   * @return the outcome of every name, failed for a name which is not found when the monitors
+   *     could not all be listed
+   */
+  public WriteReport disableSynthetics(Collection<String> syntheticNames) {
+    JfrEvents recorded = JfrEvents.operation("disableSynthetics", SYNTHETICS);
     try {
-      policyAlertConditions = restClientSyntheticCondition.get(syntheticConditionUrl
-              + ".json?policy_id=" + policyId, PolicyAlertConditions.class);
-      if (policyAlertConditions != null && policyAlertConditions.getSyntheticsConditions() != null
-          && !policyAlertConditions.getSyntheticsConditions().isEmpty()) {
-        log.debug("Found Synthetic conditions on policy");
-        for (Condition alertCondition : policyAlertConditions.getSyntheticsConditions()) {
-          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
+      WriteReport report = WriteReport.empty();
+      if (syntheticNames != null && !syntheticNames.isEmpty()) {
+        SyntheticIndex index = getSyntheticIndex();
+        List<BulkWriter.Task> tasks = new ArrayList<>();
+        List<WriteResult> unsent = new ArrayList<>();
+        for (String syntheticName : syntheticNames) {
+          addSyntheticTask(tasks, unsent, index, syntheticName, DISABLED);
         }
+        report = write(tasks, unsent, " on New Relic");
       }
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      commit(recorded, report);
+      return report;
+    } catch (RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
   }
 
-  private PolicyAlertConditions getNrqlConditions(String policyName, Policy policy) {
-    PolicyAlertConditions policyAlertConditions = null;
+  /**
+   * This method restores the synthetics as per the map sent. The states are compared with the
+   * monitors listed by this call, and only the monitors whose status differs are updated. The
+   * updates are sent concurrently, up to the write parallelism.
+   *
+   * @param states information containing the state needed per synthetic
+   * @return the outcome of every name, skipped if the monitor was already in its state and
+   *     failed if its state is null or it is not found when the monitors could not all be listed
+   */
+  public WriteReport restoreSyntheticStates(Map<String, Boolean> states) {
+    JfrEvents recorded = JfrEvents.operation("restoreSyntheticStates", SYNTHETICS);
     try {
-      policyAlertConditions = restClientNrql.get(nrqlUrl + ".json?policy_id="
-          + policy.getId(), PolicyAlertConditions.class);
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      WriteReport report = WriteReport.empty();
+      if (states != null && !states.isEmpty()) {
+        SyntheticIndex index = getSyntheticIndex();
+        List<BulkWriter.Task> tasks = new ArrayList<>();
+        List<WriteResult> unsent = new ArrayList<>();
+        for (Map.Entry<String, Boolean> state : states.entrySet()) {
+          if (state.getValue() == null) {
+            unsent.add(noState(state.getKey()));
+          } else {
+            addSyntheticTask(tasks, unsent, index, state.getKey(),
+                state.getValue() ? ENABLED : DISABLED);
+          }
+        }
+        report = write(tasks, unsent, " on New Relic");
+      }
+      commit(recorded, report);
+      return report;
+    } catch (RuntimeException x) {
+      failed(recorded, x);
+      throw x;
     }
-    return policyAlertConditions;
   }
 
-  private void getNrqlConditions(String policyName, Integer policyId,
-                                 Map<String, Boolean> retStats) {
-    PolicyAlertConditions policyAlertConditions;
-    // find the statistics on the policy
-    try {
-      policyAlertConditions = restClientNrql.get(nrqlUrl + ".json?policy_id=" + policyId,
-          PolicyAlertConditions.class);
-      if (policyAlertConditions != null && policyAlertConditions.getNrqlConditions() != null
-          && !policyAlertConditions.getNrqlConditions().isEmpty()) {
-        log.debug("Found NRQL conditions on policy");
-        for (Condition alertCondition : policyAlertConditions.getNrqlConditions()) {
-          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
-        }
+  /**
+   * Creates the result reporting that a Synthetic has no state to restore, rather than guessing
+   * one.
+   */
+  static WriteResult noState(String syntheticName) {
+    log.error("No state to restore for the synthetic " + syntheticName);
+    return WriteResult.failed(SYNTHETIC, syntheticName, new IllegalArgumentException(
+        "No state to restore for the synthetic " + syntheticName));
+  }
+
+  private void addSyntheticTask(List<BulkWriter.Task> tasks, List<WriteResult> unsent,
+                                SyntheticIndex index, String syntheticName,
+                                String status) {
+    Synthetic synthetic = index.getUpdate(syntheticName, status, unsent);
+    if (synthetic != null) {
+      tasks.add(new BulkWriter.Task(SYNTHETIC, synthetic.getName(), () -> {
+        synthetic.setStatus(status);
+        restClientSynthetic.update(getSyntheticUri(synthetic), synthetic);
+      }));
+    }
+  }
+
+  /**
+   * Sends the updates of a bulk operation and logs those which failed.
+   *
+   * @param tasks   the updates to send
+   * @param unsent  the results of the items for which no update is sent
+   * @param context describes where the items live, for the log messages
+   * @return the report of the operation
+   */
+  private WriteReport write(List<BulkWriter.Task> tasks, List<WriteResult> unsent,
+                            String context) {
+    long start = System.nanoTime();
+    List<WriteResult> results = new BulkWriter(getExecutor(), writeParallelism).execute(tasks);
+    return report(results, unsent, context, System.nanoTime() - start);
+  }
+
+  /**
+   * Sends the updates of several policies as one bulk operation, so that the write parallelism
+   * applies across the policies, and reports the outcome per policy.
+   *
+   * @param tasks  the updates to send keyed by policy name
+   * @param unsent the results of the items for which no update is sent keyed by policy name
+   * @return the report of every policy keyed by policy name
+   */
+  private Map<String, WriteReport> write(Map<String, List<BulkWriter.Task>> tasks,
+                                         Map<String, List<WriteResult>> unsent) {
+    long start = System.nanoTime();
+    List<BulkWriter.Task> all = new ArrayList<>();
+    for (List<BulkWriter.Task> policyTasks : tasks.values()) {
+      all.addAll(policyTasks);
+    }
+    List<WriteResult> results = new BulkWriter(getExecutor(), writeParallelism).execute(all);
+    long elapsed = System.nanoTime() - start;
+    Map<String, WriteReport> reports = new LinkedHashMap<>();
+    int from = 0;
+    for (Map.Entry<String, List<BulkWriter.Task>> entry : tasks.entrySet()) {
+      int to = from + entry.getValue().size();
+      reports.put(entry.getKey(), report(new ArrayList<>(results.subList(from, to)),
+          unsent.get(entry.getKey()), " on the policy " + entry.getKey(), elapsed));
+      from = to;
+    }
+    return reports;
+  }
+
+  static WriteReport report(List<WriteResult> results, List<WriteResult> unsent,
+                            String context, long elapsedNanos) {
+    for (WriteResult result : results) {
+      if (result.getError() != null) {
+        log.error("Error occurred updating " + result.getType() + ": " + result.getName()
+            + context + ". " + result.getError().getMessage(), result.getError());
       }
-    } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
     }
+    results.addAll(unsent);
+    WriteReport report = new WriteReport(results, elapsedNanos);
+    log.debug("Bulk update" + context + ": " + report);
+    return report;
   }
 
-  private void getExternalServicesConditions(String policyName, Integer policyId,
-                                             Map<String, Boolean> retStats) {
-    PolicyAlertConditions policyAlertConditions;
-    // find the statistics on the policy
+  private void updateSynthetic(Synthetic synthetic, String status) throws NewRelicException {
+    // update the synthetic status
+    synthetic.setStatus(status);
     try {
-      policyAlertConditions = restClientAlertExternalServices.get(alertExternalServicesUrl
-              + ".json?policy_id=" + policyId,
-          PolicyAlertConditions.class);
-      if (policyAlertConditions != null && policyAlertConditions.getExternalServiceConditions()
-          != null && !policyAlertConditions.getExternalServiceConditions().isEmpty()) {
-        log.debug("Found External Service conditions on policy");
-        for (Condition alertCondition : policyAlertConditions.getExternalServiceConditions()) {
-          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
-        }
-      }
+      restClientSynthetic.update(getSyntheticUri(synthetic), synthetic);
     } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
+      log.error("Error occurred updating synthetic " + synthetic.getName() + " on New Relic. "
           + e.getMessage(), e);
+      throw e instanceof NewRelicException ? (NewRelicException) e
+          : new NewRelicException("Unable to update the Synthetic " + synthetic.getName() + ".", e);
     }
   }
 
-  private void getPluginsConditions(String policyName, Integer policyId, Map<String,
-      Boolean> retStats) {
-    PolicyAlertConditions policyAlertConditions;
-    // find the statistics on the policy
+  /**
+   * The monitors keyed by name, along with the error which stopped the listing if a page could
+   * not be fetched. Lookups by name are case insensitive.
+   */
+  static class SyntheticIndex {
+    private final Map<String, Synthetic> monitors = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private IOException error;
+
+    void add(Synthetic synthetic) {
+      if (synthetic.getName() != null) {
+        monitors.put(synthetic.getName(), synthetic);
+      }
+    }
+
+    void failed(IOException error) {
+      this.error = error;
+    }
+
+    Synthetic get(String syntheticName) {
+      return monitors.get(syntheticName);
+    }
+
+    IOException getError() {
+      return error;
+    }
+
+    /**
+     * Looks up the monitor to set to a status. The result of a name for which no update is
+     * needed or possible is added to the unsent results instead: skipped if the monitor already
+     * has the status, failed if it is not found and the listing was incomplete, not found
+     * otherwise.
+     *
+     * @param syntheticName the name of the monitor
+     * @param status        the status to set
+     * @param unsent        receives the results of the items for which no update is sent
+     * @return the monitor to update or null
+     */
+    Synthetic getUpdate(String syntheticName, String status, List<WriteResult> unsent) {
+      Synthetic synthetic = monitors.get(syntheticName);
+      if (synthetic != null && status.equalsIgnoreCase(synthetic.getStatus())) {
+        unsent.add(WriteResult.skipped(SYNTHETIC, synthetic.getName()));
+      } else if (synthetic != null) {
+        return synthetic;
+      } else if (error != null) {
+        // the monitor may be on a page which could not be fetched
+        unsent.add(WriteResult.failed(SYNTHETIC, syntheticName, error));
+      } else {
+        log.error("Unable to find synthetic by name " + syntheticName);
+        unsent.add(WriteResult.notFound(SYNTHETIC, syntheticName));
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Lists all monitors in a single pass and indexes them by name. If a page cannot be fetched
+   * the index only holds the monitors listed before it, and a monitor missing from it may exist.
+   *
+   * @return the monitors keyed by name
+   */
+  private SyntheticIndex getSyntheticIndex() {
+    SyntheticIndex index = new SyntheticIndex();
     try {
-      policyAlertConditions = restClientPlugins.get(pluginsUrl + ".json?policy_id=" + policyId,
-          PolicyAlertConditions.class);
-      if (policyAlertConditions != null && policyAlertConditions.getPluginsConditions() != null
-          && !policyAlertConditions.getPluginsConditions().isEmpty()) {
-        log.debug("Found Plugin conditions on policy");
-        for (Condition alertCondition : policyAlertConditions.getPluginsConditions()) {
-          retStats.put(alertCondition.getName(), alertCondition.getEnabled());
-        }
+      for (Synthetic synthetic : getSynthetics()) {
+        index.add(synthetic);
       }
+    } catch (UncheckedIOException e) {
+      log.error("Error occurred fetching synthetics from New Relic. " + e.getMessage(), e);
+      index.failed(e.getCause());
+    }
+    return index;
+  }
+
+  /**
+   * Returns all monitors.
+   *
+   * @return the monitors
+   * @throws UncheckedIOException if a page cannot be fetched
+   */
+  private Iterable<Synthetic> getSynthetics() {
+    return listSynthetics(uri -> restClientSynthetic.getResponse(uri, Synthetics.class),
+        Synthetics::getCount, Synthetics::getMonitors);
+  }
+
+  /**
+   * Lists the monitors using the configured page size. The first page carries the monitor count,
+   * so no separate count request is needed. Depending on the page parallelism the remaining
+   * pages are either requested concurrently or lazily, each following page being prefetched
+   * while the previous one is consumed.
+   *
+   * @param fetcher fetches a page of the listing
+   * @param count   extracts the monitor count from a page
+   * @param items   extracts the items from a page
+   * @param <P>     the type of a page
+   * @param <T>     the type of the items
+   * @return the items of all pages
+   * @throws UncheckedIOException if a page cannot be fetched
+   */
+  private <P, T> Iterable<T> listSynthetics(PageFetcher<P> fetcher, Function<P, Integer> count,
+                                            Function<P, List<T>> items) {
+    AdaptivePageSize adaptive = adaptivePageSize;
+    if (adaptive != null) {
+      fetcher = adaptive.measure(fetcher);
+    }
+    int parallelism = pageParallelism;
+    if (parallelism > 1) {
+      return Paginator.collect(getSyntheticsPaging(count), fetcher, items, getExecutor(),
+          parallelism);
+    }
+    return new Paginator<>(getSyntheticsPaging(count), fetcher, items).prefetch(getExecutor());
+  }
+
+  private Policy getPolicyByName(String policyName) throws NewRelicNotFoundException {
+    try {
+      return getPolicyRegistry().get(policyName,
+          uri -> restClientPolicy.getResponse(uri, Policies.class), getExecutor());
     } catch (IOException e) {
-      log.error("Error occurred fetching conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      log.error("Error occurred fetching policies from New Relic. " + e.getMessage(), e);
+      throw new NewRelicNotFoundException("No policies found.");
     }
   }
 
-  private PolicyAlertConditions getPluginsConditions(String policyName, Policy policy) {
-    PolicyAlertConditions policyAlertConditions = null;
+  /**
+   * Resolves several policy names from a single listing of the policies, logging the names which
+   * cannot be found.
+   *
+   * @param policyNames the policy names
+   * @return the policies found keyed by name, in the order of the names
+   * @throws NewRelicNotFoundException if the policies cannot be listed
+   */
+  private Map<String, Policy> getPoliciesByName(Collection<String> policyNames)
+      throws NewRelicNotFoundException {
+    Map<String, Policy> policies;
     try {
-      policyAlertConditions = restClientPlugins.get(pluginsUrl + ".json?policy_id="
-          + policy.getId(), PolicyAlertConditions.class);
+      policies = getPolicyRegistry().getAll(policyNames,
+          uri -> restClientPolicy.getResponse(uri, Policies.class), getExecutor());
     } catch (IOException e) {
-      log.error("Error occurred fetching plugin conditions on the policy  " + policyName + ". "
-          + e.getMessage(), e);
+      log.error("Error occurred fetching policies from New Relic. " + e.getMessage(), e);
+      throw new NewRelicNotFoundException("No policies found.");
     }
-    return policyAlertConditions;
-  }
-
-  private void disableSyntheticConditions(String policyName,
-                                          PolicyAlertConditions policyAlertConditions) {
-    if (policyAlertConditions != null && policyAlertConditions.getSyntheticsConditions() != null
-        && !policyAlertConditions.getSyntheticsConditions().isEmpty()) {
-      for (Condition alertCondition : policyAlertConditions.getSyntheticsConditions()) {
-        alertCondition.setEnabled(false);
-        try {
-          PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
-          policyAlertCondition.setSyntheticsCondition(alertCondition);
-          restClientSyntheticCondition.update(syntheticConditionUrl + "/" + alertCondition.getId()
-                  + ".json", policyAlertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred updating Synthetic Alert condition: "
-              + alertCondition.getName() + " on the policy  " + policyName + ". " + e.getMessage(),
-              e);
-        }
+    for (String policyName : policyNames) {
+      if (!policies.containsKey(policyName)) {
+        log.error("Unable to find policy by name " + policyName);
       }
     }
+    return policies;
   }
 
-  private void disableNrqlConditions(String policyName,
-                                     PolicyAlertConditions policyAlertConditions) {
-    if (policyAlertConditions != null && policyAlertConditions.getNrqlConditions() != null
-        && !policyAlertConditions.getNrqlConditions().isEmpty()) {
-      for (Condition nrqlCondition : policyAlertConditions.getNrqlConditions()) {
-        nrqlCondition.setEnabled(false);
-        try {
-          PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
-          policyAlertCondition.setNrqlCondition(nrqlCondition);
-          restClientNrql.update(nrqlUrl + "/" + nrqlCondition.getId() + ".json",
-              policyAlertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred updating NRQL Alert condition: " + nrqlCondition.getName()
-              + " on the policy  " + policyName + ". " + e.getMessage(), e);
-        }
-      }
+  /**
+   * Orders the reports of a batch by policy name, adding a report for each policy which was not
+   * found.
+   */
+  private static Map<String, WriteReport> addMissingPolicies(Collection<String> policyNames,
+                                                             Map<String, WriteReport> reports) {
+    Map<String, WriteReport> ret = new LinkedHashMap<>();
+    for (String policyName : policyNames) {
+      WriteReport report = reports.get(policyName);
+      ret.put(policyName, report != null ? report : new WriteReport(
+          Collections.singletonList(WriteResult.notFound(POLICY, policyName)), 0));
     }
+    return ret;
   }
 
-  private void disableExternalServiceConditions(String policyName, PolicyAlertConditions
-      policyAlertConditions) {
-    if (policyAlertConditions != null && policyAlertConditions.getExternalServiceConditions()
-        != null && !policyAlertConditions.getExternalServiceConditions().isEmpty()) {
-      for (Condition externalServiceCondition : policyAlertConditions
-          .getExternalServiceConditions()) {
-        externalServiceCondition.setEnabled(false);
-        try {
-          PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
-          policyAlertCondition.setExternalServiceCondition(externalServiceCondition);
-          restClientAlertExternalServices.update(alertExternalServicesUrl + "/"
-                  + externalServiceCondition.getId() + ".json", policyAlertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred updating External Service Alert condition: "
-              + externalServiceCondition.getName() + " on the policy  " + policyName + ". "
-              + e.getMessage(), e);
+  PolicyRegistry getPolicyRegistry() {
+    PolicyRegistry ret = policyRegistry;
+    if (ret == null) {
+      synchronized (this) {
+        ret = policyRegistry;
+        if (ret == null) {
+          ret = new PolicyRegistry(policyCacheTtlMillis);
+          policyRegistry = ret;
         }
       }
     }
+    return ret;
   }
 
-  private void disablePluginsConditions(String policyName, PolicyAlertConditions
-      policyAlertConditions) {
-    if (policyAlertConditions != null && policyAlertConditions.getPluginsConditions() != null
-        && !policyAlertConditions.getExternalServiceConditions().isEmpty()) {
-      for (Condition pluginCondition : policyAlertConditions.getPluginsConditions()) {
-        pluginCondition.setEnabled(false);
-        try {
-          PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
-          policyAlertCondition.setExternalServiceCondition(pluginCondition);
-          restClientAlertExternalServices.update(alertExternalServicesUrl + "/"
-                  + pluginCondition.getId() + ".json", policyAlertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred updating Plugin condition: "
-              + pluginCondition.getName() + " on the policy  " + policyName + ". "
-              + e.getMessage(), e);
-        }
-      }
+  static List<Policy> getPolicies(Policies policies) {
+    return policies.getPolicies() != null ? Arrays.asList(policies.getPolicies()) : null;
+  }
+
+  private Map<String, WriteReport> disableConditions(Map<String, Policy> policies) {
+    Map<String, List<BulkWriter.Task>> tasks = new LinkedHashMap<>();
+    Map<String, List<WriteResult>> unsent = new LinkedHashMap<>();
+    for (Map.Entry<String, Map<ConditionType, List<Condition>>> policy
+        : getAllConditions(policies).entrySet()) {
+      List<BulkWriter.Task> policyTasks = new ArrayList<>();
+      List<WriteResult> policyUnsent = new ArrayList<>();
+      addDisableUpdates(policy.getKey(), policy.getValue(),
+          (type, condition, enabled) -> policyTasks.add(conditionTask(type, condition, enabled)),
+          policyUnsent);
+      tasks.put(policy.getKey(), policyTasks);
+      unsent.put(policy.getKey(), policyUnsent);
     }
+    return write(tasks, unsent);
   }
 
-  private void disableAlertsConditions(String policyName,
-                                      PolicyAlertConditions policyAlertConditions) {
-    if (policyAlertConditions != null && policyAlertConditions.getConditions() != null
-        && !policyAlertConditions.getConditions().isEmpty()) {
-      for (Condition alertCondition : policyAlertConditions.getConditions()) {
-        alertCondition.setEnabled(false);
-        try {
-          PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
-          policyAlertCondition.setCondition(alertCondition);
-          restClientAlerts.update(alertCondition.getId() + ".json", policyAlertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred updating alert condition: " + alertCondition.getName()
-              + " on the policy  " + policyName + ". " + e.getMessage(), e);
-        }
-      }
+  /**
+   * Restores the condition states of the policies. Every condition type of the policies is
+   * loaded once and indexed by condition name, so that a restore costs one listing per type and
+   * policy regardless of the number of states to restore.
+   *
+   * @param policies the policies keyed by name
+   * @param states   the states to restore keyed by policy name and condition name
+   * @return the report of every policy keyed by policy name
+   */
+  private Map<String, WriteReport> restoreConditions(Map<String, Policy> policies,
+                                                     Map<String, Map<String, Boolean>> states) {
+    Map<String, List<BulkWriter.Task>> tasks = new LinkedHashMap<>();
+    Map<String, List<WriteResult>> unsent = new LinkedHashMap<>();
+    for (Map.Entry<String, Map<ConditionType, List<Condition>>> policy
+        : getAllConditions(policies).entrySet()) {
+      List<BulkWriter.Task> policyTasks = new ArrayList<>();
+      List<WriteResult> policyUnsent = new ArrayList<>();
+      addRestoreUpdates(policy.getKey(), policy.getValue(), states.get(policy.getKey()),
+          (type, condition, enabled) -> policyTasks.add(conditionTask(type, condition, enabled)),
+          policyUnsent);
+      tasks.put(policy.getKey(), policyTasks);
+      unsent.put(policy.getKey(), policyUnsent);
     }
+    return write(tasks, unsent);
   }
 
-  private void restoreSyntheticConditions(String policyName, Map<String, Boolean> states,
-                                          Policy policy) {
-    for (String condition : states.keySet()) {
-      Boolean state = states.get(condition);
-      // update the condition with the state
-      PolicyAlertCondition syntheticCondition = getSyntheticCondition(policy, condition);
-      if (syntheticCondition != null && syntheticCondition.getSyntheticsCondition() != null) {
-        syntheticCondition.getSyntheticsCondition().setEnabled(state);
-        try {
-          restClientSyntheticCondition.update(syntheticConditionUrl + "/"
-              + syntheticCondition.getSyntheticsCondition().getId() + ".json", syntheticCondition);
-        } catch (IOException e) {
-          log.error("Error occurred restoring synthetic state on the policy  " + policyName
-              + " for condition  " + condition + " ." + e.getMessage(), e);
-        }
+  /**
+   * Receives the condition updates worked out by a disable or restore.
+   */
+  @FunctionalInterface
+  interface ConditionUpdates {
+    /**
+     * Adds the update of a condition.
+     *
+     * @param type      the type of the condition
+     * @param condition the condition
+     * @param enabled   the state to set
+     */
+    void add(ConditionType type, Condition condition, Boolean enabled);
+  }
+
+  /**
+   * Works out the updates disabling the conditions of a policy. The conditions already disabled
+   * are skipped and each condition type which could not be listed is reported as failed.
+   *
+   * @param policyName    the name of the policy
+   * @param allConditions the conditions keyed by type, a value is null if its listing failed
+   * @param updates       receives the updates to send
+   * @param unsent        receives the results of the items for which no update is sent
+   */
+  static void addDisableUpdates(String policyName,
+                                Map<ConditionType, List<Condition>> allConditions,
+                                ConditionUpdates updates, List<WriteResult> unsent) {
+    for (Map.Entry<ConditionType, List<Condition>> entry : allConditions.entrySet()) {
+      if (entry.getValue() == null) {
+        unsent.add(listingFailed(policyName, entry.getKey()));
+        continue;
+      }
+      for (Condition condition : entry.getValue()) {
+        addUpdate(entry.getKey(), condition, false, updates, unsent);
       }
     }
   }
 
-  private void restoreNrqlConditions(String policyName, Map<String, Boolean> states,
-                                     Policy policy) {
-    for (String condition : states.keySet()) {
-      Boolean state = states.get(condition);
-      // update the condition with the state
-      PolicyAlertCondition nrqlCondition = getNrqlCondition(policy, condition);
-      if (nrqlCondition != null && nrqlCondition.getNrqlCondition() != null) {
-        nrqlCondition.getNrqlCondition().setEnabled(state);
-        try {
-          restClientNrql.update(nrqlUrl + "/"
-              + nrqlCondition.getNrqlCondition().getId() + ".json", nrqlCondition);
-        } catch (IOException e) {
-          log.error("Error occurred restoring synthetic state on the policy  " + policyName
-              + " for condition  " + condition + " ." + e.getMessage(), e);
+  /**
+   * Works out the updates restoring the condition states of a policy. Every condition type is
+   * indexed by condition name once, so the cost does not grow with the number of states. A state
+   * naming no condition is reported as not found, or as failed if a condition type could not be
+   * listed since the condition may be of that type.
+   *
+   * @param policyName    the name of the policy
+   * @param allConditions the conditions keyed by type, a value is null if its listing failed
+   * @param states        the states to restore keyed by condition name
+   * @param updates       receives the updates to send
+   * @param unsent        receives the results of the items for which no update is sent
+   */
+  static void addRestoreUpdates(String policyName,
+                                Map<ConditionType, List<Condition>> allConditions,
+                                Map<String, Boolean> states, ConditionUpdates updates,
+                                List<WriteResult> unsent) {
+    Set<String> found = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    List<String> unlisted = new ArrayList<>();
+    for (Map.Entry<ConditionType, Map<String, Condition>> entry
+        : indexConditions(allConditions).entrySet()) {
+      if (allConditions.get(entry.getKey()) == null) {
+        unlisted.add(entry.getKey().getLabel());
+      }
+      for (Map.Entry<String, Boolean> state : states.entrySet()) {
+        Condition condition = entry.getValue().get(state.getKey());
+        if (condition != null) {
+          // update the condition with the state
+          addUpdate(entry.getKey(), condition, state.getValue(), updates, unsent);
+          found.add(state.getKey());
         }
       }
     }
+    for (String conditionName : states.keySet()) {
+      if (found.contains(conditionName)) {
+        continue;
+      }
+      if (unlisted.isEmpty()) {
+        log.error("Unable to find condition by name " + conditionName + " on the policy "
+            + policyName);
+        unsent.add(WriteResult.notFound(CONDITION, conditionName));
+      } else {
+        // the condition may be one of the types which could not be listed
+        unsent.add(WriteResult.failed(CONDITION, conditionName, new IOException(
+            "Unable to list the " + String.join(", ", unlisted) + " conditions of the policy "
+                + policyName)));
+      }
+    }
   }
 
-  private void restoreExternalServicesConditions(String policyName, Map<String, Boolean> states,
-                                                 Policy policy) {
-    for (String condition : states.keySet()) {
-      Boolean state = states.get(condition);
-      // update the condition with the state
-      PolicyAlertCondition externalServiceCondition = getExternalServiceCondition(policy,
-          condition);
-      if (externalServiceCondition != null && externalServiceCondition
-          .getExternalServiceCondition() != null) {
-        externalServiceCondition.getExternalServiceCondition().setEnabled(state);
-        try {
-          restClientAlertExternalServices.update(alertExternalServicesUrl + "/"
-              + externalServiceCondition.getExternalServiceCondition().getId() + ".json",
-              externalServiceCondition);
-        } catch (IOException e) {
-          log.error("Error occurred restoring external service condition state on the policy "
-              + policyName + " for condition  " + condition + " ." + e.getMessage(), e);
+  /**
+   * Creates the result reporting that the conditions of a type could not be listed, so none of
+   * them could be updated.
+   */
+  private static WriteResult listingFailed(String policyName, ConditionType type) {
+    return WriteResult.failed(type.getLabel() + " conditions", policyName, new IOException(
+        "Unable to list the " + type.getLabel() + " conditions of the policy " + policyName));
+  }
+
+  /**
+   * Adds the update of a condition to a new state, or a skipped result if the condition is
+   * already in that state.
+   */
+  private static void addUpdate(ConditionType type, Condition condition, Boolean enabled,
+                                ConditionUpdates updates, List<WriteResult> unsent) {
+    if (enabled != null && enabled.equals(condition.getEnabled())) {
+      unsent.add(WriteResult.skipped(getConditionLabel(type), condition.getName()));
+    } else {
+      updates.add(type, condition, enabled);
+    }
+  }
+
+  static String getConditionLabel(ConditionType type) {
+    return type.getLabel() + " condition";
+  }
+
+  private BulkWriter.Task conditionTask(ConditionType type, Condition condition,
+                                        Boolean enabled) {
+    return new BulkWriter.Task(getConditionLabel(type), condition.getName(), () -> {
+      condition.setEnabled(enabled);
+      getRestClient(type).update(getConditionUri(type, condition.getId()), type.wrap(condition));
+    });
+  }
+
+  /**
+   * Indexes each condition type by condition name. Lookups on the returned maps are case
+   * insensitive.
+   *
+   * @param allConditions the conditions keyed by type
+   * @return the conditions keyed by type and name
+   */
+  static Map<ConditionType, Map<String, Condition>> indexConditions(
+      Map<ConditionType, List<Condition>> allConditions) {
+    Map<ConditionType, Map<String, Condition>> snapshot = new EnumMap<>(ConditionType.class);
+    for (Map.Entry<ConditionType, List<Condition>> entry : allConditions.entrySet()) {
+      ConditionType type = entry.getKey();
+      Map<String, Condition> conditions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      if (entry.getValue() != null) {
+        for (Condition condition : entry.getValue()) {
+          if (condition.getName() != null && !conditions.containsKey(condition.getName())) {
+            conditions.put(condition.getName(), condition);
+          }
         }
       }
+      snapshot.put(type, conditions);
     }
+    return snapshot;
   }
 
-  private void restorePluginConditions(String policyName, Map<String, Boolean> states,
-                                       Policy policy) {
-    for (String condition : states.keySet()) {
-      Boolean state = states.get(condition);
-      // update the condition with the state
-      PolicyAlertCondition pluginCondition = getPluginCondition(policy, condition);
-      if (pluginCondition != null && pluginCondition.getExternalServiceCondition() != null) {
-        pluginCondition.getExternalServiceCondition().setEnabled(state);
-        try {
-          restClientAlertExternalServices.update(alertExternalServicesUrl + "/"
-              + pluginCondition.getExternalServiceCondition().getId() + ".json", pluginCondition);
-        } catch (IOException e) {
-          log.error("Error occurred restoring Plugin condition state on the policy  " + policyName
-              + " for condition  " + condition + " ." + e.getMessage(), e);
-        }
+  /**
+   * Fetches every condition type of the policy. The listings are independent of each other and
+   * are requested concurrently on the configured executor, so the call takes roughly as long as
+   * the slowest endpoint.
+   *
+   * @param policyName the name of the policy
+   * @param policy     the policy
+   * @return the conditions keyed by type, a value is null if its listing failed
+   */
+  private Map<ConditionType, List<Condition>> getAllConditions(String policyName,
+                                                               Policy policy) {
+    return getAllConditions(Collections.singletonMap(policyName, policy)).get(policyName);
+  }
+
+  /**
+   * Fetches every condition type of several policies, all listings being submitted at once to
+   * the configured executor. The default pool runs as many of them at a time as it has threads,
+   * the others waiting in its queue.
+   *
+   * @param policies the policies keyed by name
+   * @return the conditions keyed by policy name and type, a value is null if its listing failed
+   */
+  private Map<String, Map<ConditionType, List<Condition>>> getAllConditions(
+      Map<String, Policy> policies) {
+    Map<String, Map<ConditionType, CompletableFuture<List<Condition>>>> futures =
+        new LinkedHashMap<>();
+    for (Map.Entry<String, Policy> policy : policies.entrySet()) {
+      Map<ConditionType, CompletableFuture<List<Condition>>> policyFutures =
+          new EnumMap<>(ConditionType.class);
+      for (ConditionType type : ConditionType.values()) {
+        policyFutures.put(type, CompletableFuture.supplyAsync(
+            () -> getConditions(policy.getKey(), policy.getValue(), type), getExecutor()));
+      }
+      futures.put(policy.getKey(), policyFutures);
+    }
+    Map<String, Map<ConditionType, List<Condition>>> conditions = new LinkedHashMap<>();
+    for (Map.Entry<String, Map<ConditionType, CompletableFuture<List<Condition>>>> policy
+        : futures.entrySet()) {
+      Map<ConditionType, List<Condition>> policyConditions = new EnumMap<>(ConditionType.class);
+      for (Map.Entry<ConditionType, CompletableFuture<List<Condition>>> entry
+          : policy.getValue().entrySet()) {
+        policyConditions.put(entry.getKey(), join(entry.getValue()));
       }
+      conditions.put(policy.getKey(), policyConditions);
     }
+    return conditions;
   }
 
-  private void restoreAlertConditions(String policyName, Map<String, Boolean> states,
-                                      Policy policy) {
-    for (String condition : states.keySet()) {
-      Boolean state = states.get(condition);
-      // update the condition with the state
-      PolicyAlertCondition alertCondition = getAlertCondition(policy, condition);
-      if (alertCondition != null && alertCondition.getCondition() != null) {
-        alertCondition.getCondition().setEnabled(state);
-        try {
-          restClientAlerts.update(alertConditionsUrl + alertCondition.getCondition().getId()
-              + ".json", alertCondition);
-        } catch (IOException e) {
-          log.error("Error occurred restoring state on the policy  " + policyName
-              + " for condition  " + condition + " ." + e.getMessage(), e);
-        }
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException x) {
+      if (x.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) x.getCause();
       }
+      throw x;
+    }
+  }
+
+  /**
+   * Fetches the conditions of one type, following the Link headers through every page.
+   *
+   * @param policyName the name of the policy
+   * @param policy     the policy
+   * @param type       the type of condition
+   * @return the conditions or null if the listing failed
+   */
+  private List<Condition> getConditions(String policyName, Policy policy, ConditionType type) {
+    try {
+      return getConditionPages(type, policy.getId()).stream().collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      log.error("Error occurred fetching " + type.getLabel() + " conditions on the policy  "
+          + policyName + ". " + e.getMessage(), e.getCause());
+    }
+    return null;
+  }
+
+  private Paginator<PolicyAlertConditions, Condition> getConditionPages(ConditionType type,
+                                                                        Integer policyId) {
+    RestClient restClient = getRestClient(type);
+    return new Paginator<PolicyAlertConditions, Condition>(
+        new LinkPagingStrategy<>(getConditionsUri(type, policyId)),
+        uri -> restClient.getResponse(uri, PolicyAlertConditions.class),
+        type::getConditions);
+  }
+
+  RestClient getRestClient(ConditionType type) {
+    switch (type) {
+      case ALERT:
+        return restClientAlerts;
+      case SYNTHETIC:
+        return restClientSyntheticCondition;
+      case NRQL:
+        return restClientNrql;
+      case EXTERNAL_SERVICE:
+        return restClientAlertExternalServices;
+      case PLUGIN:
+        return restClientPlugins;
+      default:
+        throw new IllegalArgumentException("Unsupported condition type " + type);
+    }
+  }
+
+  String getConditionsUri(ConditionType type, Integer policyId) {
+    switch (type) {
+      case ALERT:
+        return "?policy_id=" + policyId;
+      case SYNTHETIC:
+        return syntheticConditionUrl + ".json?policy_id=" + policyId;
+      case NRQL:
+        return nrqlUrl + ".json?policy_id=" + policyId;
+      case EXTERNAL_SERVICE:
+        return alertExternalServicesUrl + ".json?policy_id=" + policyId;
+      case PLUGIN:
+        return pluginsUrl + ".json?policy_id=" + policyId;
+      default:
+        throw new IllegalArgumentException("Unsupported condition type " + type);
+    }
+  }
+
+  String getConditionUri(ConditionType type, Integer conditionId) {
+    switch (type) {
+      case ALERT:
+        return alertConditionsUrl + conditionId + ".json";
+      case SYNTHETIC:
+        return syntheticConditionUrl + "/" + conditionId + ".json";
+      case NRQL:
+        return nrqlUrl + "/" + conditionId + ".json";
+      case EXTERNAL_SERVICE:
+        return alertExternalServicesUrl + "/" + conditionId + ".json";
+      case PLUGIN:
+        return pluginsUrl + "/" + conditionId + ".json";
+      default:
+        throw new IllegalArgumentException("Unsupported condition type " + type);
     }
   }
+
+  List<RestClient> getRestClients() {
+    return Arrays.asList(restClientSynthetic, restClientAlerts, restClientPolicy,
+        restClientSyntheticCondition, restClientNrql, restClientAlertExternalServices,
+        restClientPlugins);
+  }
+
+  <P> OffsetPagingStrategy<P> getSyntheticsPaging(Function<P, Integer> count) {
+    AdaptivePageSize adaptive = adaptivePageSize;
+    return adaptive != null
+        ? new OffsetPagingStrategy<>(syntheticUrl, OFFSET, adaptive, count)
+        : new OffsetPagingStrategy<>(syntheticUrl, OFFSET, pageSize, count);
+  }
+
+  String getSyntheticUri(Synthetic synthetic) {
+    return syntheticUrl + "/" + synthetic.getId();
+  }
 }
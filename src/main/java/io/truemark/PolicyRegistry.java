@@ -0,0 +1,236 @@
+package io.truemark;
+
+import io.truemark.data.Policies;
+import io.truemark.data.Policy;
+import io.truemark.exception.NewRelicBadRequestException;
+import io.truemark.http.LinkPagingStrategy;
+import io.truemark.http.PageFetcher;
+import io.truemark.http.Paginator;
+import io.truemark.http.QueryStringBuilder;
+import io.truemark.http.RestResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves policy names to policies. A name is looked up by asking New Relic for the policies
+ * with exactly that name, which is a single small request however many policies the account has.
+ * Should the API reject the name filter, the registry falls back to listing every page of
+ * policies once and indexing them by name. Resolved policies are cached for the time to live.
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j
+class PolicyRegistry {
+
+  static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private final Map<String, Entry> policies = new ConcurrentHashMap<>();
+  private final long ttlNanos;
+  private volatile boolean filterSupported = true;
+
+  private static class Entry {
+    private final Policy policy;
+    private final long storedNanos = System.nanoTime();
+
+    Entry(Policy policy) {
+      this.policy = policy;
+    }
+  }
+
+  /**
+   * Creates a new registry.
+   *
+   * @param ttlMillis how long a resolved policy is cached, 0 to resolve the name on every call
+   */
+  PolicyRegistry(long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  /**
+   * Returns the query listing the policies with exactly the given name.
+   *
+   * @param name the policy name
+   * @return the URI relative to the policy endpoint
+   */
+  static String getFilterUri(String name) {
+    return "?" + new QueryStringBuilder()
+        .add("filter%5Bname%5D", name)
+        .add("filter%5Bexact_match%5D", true)
+        .toQueryString();
+  }
+
+  /**
+   * Resolves a policy name.
+   *
+   * @param name     the policy name
+   * @param fetcher  fetches a page of policies
+   * @param executor the executor used to prefetch pages
+   * @return the policy or null if there is no policy by that name
+   * @throws IOException if the policies cannot be listed
+   */
+  Policy get(String name, PageFetcher<Policies> fetcher, Executor executor) throws IOException {
+    Policy policy = getCached(name);
+    if (policy != null) {
+      return policy;
+    }
+    if (filterSupported) {
+      try {
+        return index(name, list(getFilterUri(name), fetcher, executor));
+      } catch (NewRelicBadRequestException x) {
+        unsupported(x);
+      }
+    }
+    return index(name, list("", fetcher, executor));
+  }
+
+  /**
+   * Resolves several policy names. When more than one name is not cached, every policy is listed
+   * once and the names are resolved from that listing, rather than sending a filtered request per
+   * name.
+   *
+   * @param names    the policy names
+   * @param fetcher  fetches a page of policies
+   * @param executor the executor used to prefetch pages
+   * @return the policies found keyed by name, in the order of the names
+   * @throws IOException if the policies cannot be listed
+   */
+  Map<String, Policy> getAll(Collection<String> names, PageFetcher<Policies> fetcher,
+                             Executor executor) throws IOException {
+    Map<String, Policy> found = new HashMap<>();
+    List<String> missing = new ArrayList<>();
+    for (String name : names) {
+      Policy policy = getCached(name);
+      if (policy != null) {
+        found.put(name, policy);
+      } else if (!missing.contains(name)) {
+        missing.add(name);
+      }
+    }
+    if (missing.size() == 1) {
+      Policy policy = get(missing.get(0), fetcher, executor);
+      if (policy != null) {
+        found.put(missing.get(0), policy);
+      }
+    } else if (!missing.isEmpty()) {
+      Map<String, Policy> listed = index(list("", fetcher, executor));
+      for (String name : missing) {
+        if (listed.containsKey(name)) {
+          found.put(name, listed.get(name));
+        }
+      }
+    }
+    Map<String, Policy> ret = new LinkedHashMap<>();
+    for (String name : names) {
+      if (found.containsKey(name)) {
+        ret.put(name, found.get(name));
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Resolves a policy name without blocking.
+   *
+   * @param name    the policy name
+   * @param fetcher fetches a page of policies
+   * @return the policy, or null if there is no policy by that name
+   */
+  CompletableFuture<Policy> getAsync(String name,
+                                     Function<String, CompletableFuture<RestResponse<Policies>>>
+                                         fetcher) {
+    Policy policy = getCached(name);
+    if (policy != null) {
+      return CompletableFuture.completedFuture(policy);
+    }
+    if (!filterSupported) {
+      return listAsync("", fetcher).thenApply(all -> index(name, all));
+    }
+    return listAsync(getFilterUri(name), fetcher)
+        .handle((filtered, x) -> {
+          Throwable cause = x instanceof CompletionException ? x.getCause() : x;
+          if (cause instanceof NewRelicBadRequestException) {
+            unsupported((NewRelicBadRequestException) cause);
+            return listAsync("", fetcher).thenApply(all -> index(name, all));
+          } else if (x != null) {
+            throw x instanceof CompletionException ? (CompletionException) x
+                : new CompletionException(x);
+          }
+          return CompletableFuture.completedFuture(index(name, filtered));
+        })
+        .thenCompose(Function.identity());
+  }
+
+  private Policy getCached(String name) {
+    Entry entry = policies.get(name);
+    if (entry != null && System.nanoTime() - entry.storedNanos <= ttlNanos) {
+      return entry.policy;
+    }
+    return null;
+  }
+
+  private void unsupported(NewRelicBadRequestException x) {
+    log.warn("Filtering policies by name was rejected, listing all policies instead: "
+        + x.getMessage());
+    filterSupported = false;
+  }
+
+  /**
+   * Caches the policies listed and returns the one asked for. Names are compared again as the
+   * listing holds every policy when the name filter is not used, and the filter may also match
+   * names differing in case.
+   */
+  private Policy index(String name, List<Policy> listed) {
+    Policy found = index(listed).get(name);
+    if (found != null) {
+      log.debug("Found the policy with Name : " + name);
+    }
+    return found;
+  }
+
+  /**
+   * Caches the policies listed and returns them keyed by name. When several policies have the
+   * same name the last one listed is both cached and returned, as the name lookup of earlier
+   * versions did.
+   */
+  private Map<String, Policy> index(List<Policy> listed) {
+    Map<String, Policy> found = new HashMap<>();
+    for (Policy policy : listed) {
+      if (policy.getName() != null) {
+        policies.put(policy.getName(), new Entry(policy));
+        found.put(policy.getName(), policy);
+      }
+    }
+    return found;
+  }
+
+  private static List<Policy> list(String uri, PageFetcher<Policies> fetcher, Executor executor)
+      throws IOException {
+    try (Stream<Policy> policies = new Paginator<>(new LinkPagingStrategy<>(uri), fetcher,
+        NewRelicClient::getPolicies).prefetch(executor).stream()) {
+      return policies.collect(Collectors.toList());
+    } catch (UncheckedIOException x) {
+      throw x.getCause();
+    }
+  }
+
+  private static CompletableFuture<List<Policy>> listAsync(
+      String uri, Function<String, CompletableFuture<RestResponse<Policies>>> fetcher) {
+    return Paginator.collectAsync(new LinkPagingStrategy<>(uri), fetcher,
+        NewRelicClient::getPolicies);
+  }
+}
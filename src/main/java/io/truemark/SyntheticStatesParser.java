@@ -0,0 +1,109 @@
+package io.truemark;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.truemark.http.ResponseParser;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the name and status of each monitor from a page of the Synthetics monitor listing. The
+ * page is parsed token by token and every other property, including nested objects and arrays,
+ * is skipped without being materialized.
+ *
+ * @author Abhijeet Kale
+ */
+class SyntheticStatesParser implements ResponseParser<SyntheticStatesParser.Page> {
+
+  static final SyntheticStatesParser INSTANCE = new SyntheticStatesParser();
+
+  /**
+   * The monitor states of a page along with the monitor count reported by New Relic.
+   */
+  static class Page {
+    private final List<Map.Entry<String, Boolean>> states;
+    private final Integer count;
+
+    Page(List<Map.Entry<String, Boolean>> states, Integer count) {
+      this.states = states;
+      this.count = count;
+    }
+
+    /**
+     * Returns one entry per monitor on the page, holding the name and whether the monitor is
+     * enabled. Either may be null if not reported.
+     *
+     * @return the monitor states
+     */
+    List<Map.Entry<String, Boolean>> getStates() {
+      return states;
+    }
+
+    Integer getCount() {
+      return count;
+    }
+  }
+
+  @Override
+  public Page parse(JsonParser parser) throws IOException {
+    List<Map.Entry<String, Boolean>> states = new ArrayList<>();
+    Integer count = null;
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected a monitor listing object");
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("monitors".equals(field) && token == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          states.add(parseMonitor(parser));
+        }
+      } else if ("count".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+        count = parser.getIntValue();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return new Page(states, count);
+  }
+
+  private static Map.Entry<String, Boolean> parseMonitor(JsonParser parser) throws IOException {
+    String name = null;
+    Boolean enabled = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("name".equals(field) && token == JsonToken.VALUE_STRING) {
+        name = parser.getText();
+      } else if ("status".equals(field) && token == JsonToken.VALUE_STRING) {
+        enabled = !textEqualsIgnoreCase(parser, NewRelicClient.DISABLED);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return new SimpleImmutableEntry<>(name, enabled);
+  }
+
+  /**
+   * Compares the current string value against a constant without creating a String.
+   */
+  private static boolean textEqualsIgnoreCase(JsonParser parser, String value) throws IOException {
+    int length = parser.getTextLength();
+    if (length != value.length()) {
+      return false;
+    }
+    char[] text = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    for (int i = 0; i < length; i++) {
+      if (Character.toUpperCase(text[offset + i]) != Character.toUpperCase(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
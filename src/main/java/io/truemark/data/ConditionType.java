@@ -0,0 +1,113 @@
+package io.truemark.data;
+
+import java.util.List;
+
+/**
+ * The kinds of alert conditions which may be attached to a policy. Each kind is served by its own
+ * New Relic endpoint and is wrapped in its own property of the request and response bodies.
+ *
+ * @author Abhijeet Kale
+ */
+public enum ConditionType {
+
+  ALERT("alert") {
+    @Override
+    public List<Condition> getConditions(PolicyAlertConditions conditions) {
+      return conditions.getConditions();
+    }
+
+    @Override
+    public PolicyAlertCondition wrap(Condition condition) {
+      PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
+      policyAlertCondition.setCondition(condition);
+      return policyAlertCondition;
+    }
+  },
+
+  SYNTHETIC("synthetic") {
+    @Override
+    public List<Condition> getConditions(PolicyAlertConditions conditions) {
+      return conditions.getSyntheticsConditions();
+    }
+
+    @Override
+    public PolicyAlertCondition wrap(Condition condition) {
+      PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
+      policyAlertCondition.setSyntheticsCondition(condition);
+      return policyAlertCondition;
+    }
+  },
+
+  NRQL("NRQL") {
+    @Override
+    public List<Condition> getConditions(PolicyAlertConditions conditions) {
+      return conditions.getNrqlConditions();
+    }
+
+    @Override
+    public PolicyAlertCondition wrap(Condition condition) {
+      PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
+      policyAlertCondition.setNrqlCondition(condition);
+      return policyAlertCondition;
+    }
+  },
+
+  EXTERNAL_SERVICE("external service") {
+    @Override
+    public List<Condition> getConditions(PolicyAlertConditions conditions) {
+      return conditions.getExternalServiceConditions();
+    }
+
+    @Override
+    public PolicyAlertCondition wrap(Condition condition) {
+      PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
+      policyAlertCondition.setExternalServiceCondition(condition);
+      return policyAlertCondition;
+    }
+  },
+
+  PLUGIN("plugin") {
+    @Override
+    public List<Condition> getConditions(PolicyAlertConditions conditions) {
+      return conditions.getPluginsConditions();
+    }
+
+    @Override
+    public PolicyAlertCondition wrap(Condition condition) {
+      PolicyAlertCondition policyAlertCondition = new PolicyAlertCondition();
+      policyAlertCondition.setPluginCondition(condition);
+      return policyAlertCondition;
+    }
+  };
+
+  private final String label;
+
+  ConditionType(String label) {
+    this.label = label;
+  }
+
+  /**
+   * Returns a human readable name for use in log messages.
+   *
+   * @return the label
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Extracts the conditions of this type from a listing response.
+   *
+   * @param conditions the listing response
+   * @return the conditions of this type or null if none were returned
+   */
+  public abstract List<Condition> getConditions(PolicyAlertConditions conditions);
+
+  /**
+   * Wraps a condition of this type into a request body suitable for an update.
+   *
+   * @param condition the condition to wrap
+   * @return the request body
+   */
+  public abstract PolicyAlertCondition wrap(Condition condition);
+}
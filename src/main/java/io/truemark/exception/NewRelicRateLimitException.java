@@ -0,0 +1,34 @@
+package io.truemark.exception;
+
+import lombok.NoArgsConstructor;
+
+/**
+ * Thrown when New Relic rejects a request because the API rate limit has been exceeded.
+ *
+ * @author Abhijeet Kale
+ */
+@NoArgsConstructor
+public class NewRelicRateLimitException extends NewRelicException {
+
+  private static final long serialVersionUID = 7203958416205781134L;
+
+  private long retryAfterMillis = -1;
+
+  public NewRelicRateLimitException(String message) {
+    super(message);
+  }
+
+  public NewRelicRateLimitException(String message, long retryAfterMillis) {
+    super(message);
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /**
+   * Returns the time New Relic asked to wait before sending another request.
+   *
+   * @return the delay in milliseconds or -1 if none was given
+   */
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
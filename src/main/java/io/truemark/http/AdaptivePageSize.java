@@ -0,0 +1,149 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * A page size which adapts to the latency of the pages fetched with it. The size is doubled, up to
+ * the maximum, whenever a page is returned within the target latency and is halved, down to the
+ * minimum, after a page request times out. Large listings are thereby fetched with few requests
+ * while a degraded API is still served with small pages.
+ *
+ * <p>Use {@link #measure(PageFetcher)} to report the latency of page requests and pass the
+ * instance as the limit of an {@link OffsetPagingStrategy}, which then retries a timed out page
+ * with the reduced size.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class AdaptivePageSize implements IntSupplier, Serializable {
+
+  private static final long serialVersionUID = 5203712286041318257L;
+  private final int min;
+  private final int max;
+  private final long targetLatencyNanos;
+  private final AtomicInteger size;
+
+  /**
+   * Creates a new adaptive page size.
+   *
+   * @param initial             the page size to start with
+   * @param min                 the smallest page size to shrink to
+   * @param max                 the largest page size accepted by the API
+   * @param targetLatencyMillis the latency below which the page size is grown
+   */
+  public AdaptivePageSize(int initial, int min, int max, long targetLatencyMillis) {
+    if (min <= 0 || max < min || initial < min || initial > max) {
+      throw new IllegalArgumentException("Page sizes must satisfy 0 < min <= initial <= max");
+    }
+    this.min = min;
+    this.max = max;
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    this.size = new AtomicInteger(initial);
+  }
+
+  /**
+   * Returns the page size to request next.
+   *
+   * @return the page size
+   */
+  @Override
+  public int getAsInt() {
+    return size.get();
+  }
+
+  /**
+   * Records a page returned after the given latency.
+   *
+   * @param latencyNanos the time taken to fetch the page
+   */
+  public void onResponse(long latencyNanos) {
+    if (latencyNanos <= targetLatencyNanos) {
+      size.updateAndGet(current -> Math.min(max, current * 2));
+    }
+  }
+
+  /**
+   * Records a page request which timed out.
+   */
+  public void onTimeout() {
+    size.updateAndGet(current -> Math.max(min, current / 2));
+  }
+
+  /**
+   * Returns the page size to retry a timed out request with. The size is below the one of the
+   * failed request even if concurrent requests have grown the page size in the meantime.
+   *
+   * @param failedSize the page size of the request which timed out
+   * @return the page size for the retry or 0 if the request cannot be made any smaller
+   */
+  public int getRetrySize(int failedSize) {
+    int retrySize = Math.min(size.get(), failedSize / 2);
+    return retrySize >= min ? retrySize : 0;
+  }
+
+  /**
+   * Wraps a fetcher so that the latency and timeouts of its requests adjust this page size.
+   *
+   * @param fetcher the fetcher to measure
+   * @param <P>     the type of a page
+   * @return the measuring fetcher
+   */
+  public <P> PageFetcher<P> measure(PageFetcher<P> fetcher) {
+    return uri -> {
+      long start = System.nanoTime();
+      try {
+        RestResponse<P> response = fetcher.fetch(uri);
+        onResponse(System.nanoTime() - start);
+        return response;
+      } catch (IOException x) {
+        if (isTimeout(x)) {
+          onTimeout();
+        }
+        throw x;
+      }
+    };
+  }
+
+  /**
+   * Wraps an asynchronous fetcher so that the latency and timeouts of its requests adjust this
+   * page size.
+   *
+   * @param fetcher the fetcher to measure
+   * @param <P>     the type of a page
+   * @return the measuring fetcher
+   */
+  public <P> Function<String, CompletableFuture<RestResponse<P>>> measureAsync(
+      Function<String, CompletableFuture<RestResponse<P>>> fetcher) {
+    return uri -> {
+      long start = System.nanoTime();
+      return fetcher.apply(uri).whenComplete((response, x) -> {
+        if (x == null) {
+          onResponse(System.nanoTime() - start);
+        } else if (isTimeout(x)) {
+          onTimeout();
+        }
+      });
+    };
+  }
+
+  /**
+   * Tells whether a failure was caused by a connect or read timeout.
+   *
+   * @param x the failure
+   * @return true if a timeout is found in the cause chain
+   */
+  public static boolean isTimeout(Throwable x) {
+    for (Throwable cause = x; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SocketTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
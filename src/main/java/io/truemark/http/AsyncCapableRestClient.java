@@ -0,0 +1,16 @@
+package io.truemark.http;
+
+/**
+ * Implemented by a {@link RestClient} whose transport supports non-blocking I/O natively.
+ *
+ * @author Abhijeet Kale
+ */
+public interface AsyncCapableRestClient extends RestClient {
+
+  /**
+   * Returns a non-blocking view of this client sharing its transport and configuration.
+   *
+   * @return the asynchronous client
+   */
+  AsyncRestClient async();
+}
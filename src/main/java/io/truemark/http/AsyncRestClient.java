@@ -0,0 +1,139 @@
+package io.truemark.http;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link RestClient}. Every method returns immediately and the
+ * returned future is completed with the response, or completed exceptionally with the
+ * {@link java.io.IOException} the blocking call would have thrown.
+ *
+ * @author Abhijeet Kale
+ */
+public interface AsyncRestClient {
+
+  /**
+   * Sends an HTTP GET request and loads the response into the provided object instance.
+   *
+   * @param uri      the URI to GET
+   * @param instance the instance to load the response into
+   * @param <T>      the instance type
+   * @return a future completed with the instance passed in
+   */
+  <T> CompletableFuture<T> get(String uri, T instance);
+
+  /**
+   * Sends an HTTP GET request and loads the response into a new instance of the provided type.
+   *
+   * @param uri   the URI to GET
+   * @param clazz the type of instance to create
+   * @param <T>   the type of the instance
+   * @return a future completed with the newly created instance
+   */
+  <T> CompletableFuture<T> get(String uri, Class<T> clazz);
+
+  /**
+   * Sends an HTTP GET request and returns the response status and headers along with the body.
+   *
+   * @param uri   the URI to GET
+   * @param clazz the type of instance to create
+   * @param <T>   the type of the instance
+   * @return a future completed with the response
+   */
+  <T> CompletableFuture<RestResponse<T>> getResponse(String uri, Class<T> clazz);
+
+  /**
+   * Sends an HTTP GET request and parses the response body with the given parser.
+   *
+   * @param uri    the URI to GET
+   * @param parser parses the response body
+   * @param <T>    the type of the result
+   * @return a future completed with the response
+   */
+  <T> CompletableFuture<RestResponse<T>> getResponse(String uri, ResponseParser<T> parser);
+
+  /**
+   * Sends an HTTP GET request and loads the response into a new instance of the provided generic
+   * type.
+   *
+   * @param uri            the URI to GET
+   * @param clazz          the type of instance to create
+   * @param parameterClass the type parameter class
+   * @param <T>            the type of the instance
+   * @param <S>            the type of the type parameter
+   * @return a future completed with the newly created instance
+   */
+  <T, S> CompletableFuture<T> get(String uri, Class<T> clazz, Class<S> parameterClass);
+
+  /**
+   * Sends an HTTP PUT request to issue an update. The response is loaded back into the given
+   * object.
+   *
+   * @param uri the URI to PUT
+   * @param o   the instance to update
+   * @param <T> the type of the instance
+   * @return a future completed with the instance passed in
+   */
+  <T> CompletableFuture<T> update(String uri, T o);
+
+  /**
+   * Sends an HTTP PATCH request to issue a partial update.
+   *
+   * @param uri   the URI to PATCH
+   * @param clazz the response type
+   * @param u     the patch
+   * @param <T>   the type of the response
+   * @param <U>   the type of the patch
+   * @return a future completed with the updated instance
+   */
+  <T, U> CompletableFuture<T> patch(String uri, Class<T> clazz, U u);
+
+  /**
+   * Sends an HTTP POST request to create a new instance.
+   *
+   * @param uri   the URI to POST
+   * @param o     the request object
+   * @param clazz the response type
+   * @param <V>   the request object type
+   * @param <T>   the response object type
+   * @return a future completed with the populated response object
+   */
+  <V, T> CompletableFuture<V> create(String uri, T o, Class<V> clazz);
+
+  /**
+   * Sends an HTTP POST request to create a new instance. The response is loaded back into the
+   * request object.
+   *
+   * @param uri the URI to POST
+   * @param o   the request object
+   * @param <T> the type of the request object
+   * @return a future completed with the populated request object
+   */
+  <T> CompletableFuture<T> create(String uri, T o);
+
+  /**
+   * Sends an HTTP DELETE request to delete an instance.
+   *
+   * @param uri the URL to DELETE
+   * @return a future completed once the instance is deleted
+   */
+  CompletableFuture<Void> delete(String uri);
+
+  /**
+   * Sends an HTTP POST request to execute an action that doesn't return a response body.
+   *
+   * @param uri the URL to POST
+   * @return a future completed once the action is executed
+   */
+  CompletableFuture<Void> execute(String uri);
+
+  /**
+   * Sends an HTTP POST request and loads the response into a new instance of the given type.
+   *
+   * @param uri   the URI to POST
+   * @param data  the request data
+   * @param clazz the response type
+   * @param <T>   the response type
+   * @return a future completed with the populated response object
+   */
+  <T> CompletableFuture<T> postForObject(String uri, Object data, Class<T> clazz);
+}
@@ -0,0 +1,228 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent writes of a bulk operation with a bounded number of them in flight. The
+ * calling thread works through the writes along with up to parallelism - 1 tasks on the
+ * executor, each taking the next pending write once its previous one completes, so a parallelism
+ * of 1 sends the writes one after another on the calling thread. A failed write does not stop
+ * the others, its error is recorded in its result instead.
+ *
+ * <p>Non-blocking writes are run by {@link #executeAsync(List, int)}, which starts the next
+ * pending write as each one in flight completes without holding a thread meanwhile.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class BulkWriter {
+
+  public static final int DEFAULT_PARALLELISM = 8;
+  private final Executor executor;
+  private final int parallelism;
+
+  /**
+   * A single write.
+   */
+  @FunctionalInterface
+  public interface Write {
+    /**
+     * Sends the write.
+     *
+     * @throws IOException if the write fails
+     */
+    void write() throws IOException;
+  }
+
+  /**
+   * A write along with the item it updates.
+   */
+  public static class Task {
+    private final String type;
+    private final String name;
+    private final Write write;
+
+    /**
+     * Creates a new task.
+     *
+     * @param type  the kind of item written, such as "NRQL condition"
+     * @param name  the name of the item
+     * @param write sends the update
+     */
+    public Task(String type, String name, Write write) {
+      this.type = type;
+      this.name = name;
+      this.write = write;
+    }
+  }
+
+  /**
+   * A write sent without blocking.
+   */
+  @FunctionalInterface
+  public interface AsyncWrite {
+    /**
+     * Sends the write.
+     *
+     * @return a future completed once the write completed, exceptionally if it failed
+     */
+    CompletableFuture<?> write();
+  }
+
+  /**
+   * A non-blocking write along with the item it updates.
+   */
+  public static class AsyncTask {
+    private final String type;
+    private final String name;
+    private final AsyncWrite write;
+
+    /**
+     * Creates a new task.
+     *
+     * @param type  the kind of item written, such as "NRQL condition"
+     * @param name  the name of the item
+     * @param write sends the update
+     */
+    public AsyncTask(String type, String name, AsyncWrite write) {
+      this.type = type;
+      this.name = name;
+      this.write = write;
+    }
+  }
+
+  /**
+   * Creates a new writer.
+   *
+   * @param executor    the executor running the writes besides the calling thread
+   * @param parallelism the maximum number of writes in flight, at least 1
+   */
+  public BulkWriter(Executor executor, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be at least 1");
+    }
+    this.executor = executor;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Runs the writes and waits for all of them to complete.
+   *
+   * @param tasks the writes
+   * @return the result of every write, in the order of the tasks
+   */
+  public List<WriteResult> execute(List<Task> tasks) {
+    WriteResult[] results = new WriteResult[tasks.size()];
+    AtomicInteger next = new AtomicInteger();
+    Runnable worker = () -> {
+      for (int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+        results[i] = execute(tasks.get(i));
+      }
+    };
+    List<CompletableFuture<Void>> workers = new ArrayList<>();
+    for (int i = 1; i < Math.min(parallelism, tasks.size()); i++) {
+      try {
+        workers.add(CompletableFuture.runAsync(worker, executor));
+      } catch (RejectedExecutionException x) {
+        // the remaining workers take over the writes
+        break;
+      }
+    }
+    worker.run();
+    for (CompletableFuture<Void> future : workers) {
+      future.join();
+    }
+    return new ArrayList<>(Arrays.asList(results));
+  }
+
+  /**
+   * Runs non-blocking writes with at most parallelism of them in flight.
+   *
+   * @param tasks       the writes
+   * @param parallelism the maximum number of writes in flight, at least 1
+   * @return a future completed with the result of every write, in the order of the tasks
+   */
+  public static CompletableFuture<List<WriteResult>> executeAsync(List<AsyncTask> tasks,
+                                                                  int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The parallelism must be at least 1");
+    }
+    CompletableFuture<List<WriteResult>> ret = new CompletableFuture<>();
+    if (tasks.isEmpty()) {
+      ret.complete(new ArrayList<>());
+      return ret;
+    }
+    AsyncRun run = new AsyncRun(tasks, ret);
+    for (int i = 0; i < Math.min(parallelism, tasks.size()); i++) {
+      run.sendNext();
+    }
+    return ret;
+  }
+
+  /**
+   * The state of a run of non-blocking writes.
+   */
+  private static class AsyncRun {
+    private final List<AsyncTask> tasks;
+    private final WriteResult[] results;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final CompletableFuture<List<WriteResult>> done;
+
+    AsyncRun(List<AsyncTask> tasks, CompletableFuture<List<WriteResult>> done) {
+      this.tasks = tasks;
+      this.results = new WriteResult[tasks.size()];
+      this.remaining = new AtomicInteger(tasks.size());
+      this.done = done;
+    }
+
+    void sendNext() {
+      int i = next.getAndIncrement();
+      if (i >= results.length) {
+        return;
+      }
+      AsyncTask task = tasks.get(i);
+      long start = System.nanoTime();
+      CompletableFuture<?> future;
+      try {
+        future = task.write.write();
+      } catch (RuntimeException x) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(x);
+      }
+      future.whenComplete((result, x) -> {
+        long latency = System.nanoTime() - start;
+        Throwable cause = x instanceof CompletionException && x.getCause() != null
+            ? x.getCause() : x;
+        results[i] = cause == null
+            ? new WriteResult(task.type, task.name, WriteResult.Status.APPLIED, latency, null)
+            : new WriteResult(task.type, task.name, WriteResult.Status.FAILED, latency,
+                cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        if (remaining.decrementAndGet() == 0) {
+          done.complete(new ArrayList<>(Arrays.asList(results)));
+        } else {
+          sendNext();
+        }
+      });
+    }
+  }
+
+  private static WriteResult execute(Task task) {
+    long start = System.nanoTime();
+    try {
+      task.write.write();
+      return new WriteResult(task.type, task.name, WriteResult.Status.APPLIED,
+          System.nanoTime() - start, null);
+    } catch (IOException | RuntimeException x) {
+      return new WriteResult(task.type, task.name, WriteResult.Status.FAILED,
+          System.nanoTime() - start, x);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package io.truemark.http;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads so that pools owned by the client never keep the JVM alive.
+ *
+ * @author Abhijeet Kale
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+  private final String prefix;
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * Creates a new factory.
+   *
+   * @param prefix the prefix used to name the threads
+   */
+  public DaemonThreadFactory(String prefix) {
+    this.prefix = prefix;
+  }
+
+  @Override
+  public Thread newThread(Runnable r) {
+    Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,166 @@
+package io.truemark.http;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MetricsListener} keeping the request counts, bytes transferred and latency histograms
+ * of every endpoint, keyed by method and endpoint template such as
+ * {@code PUT alerts_nrql_conditions/{id}}. Recording is lock free and a snapshot may be taken at
+ * any time, for instance to publish to a dashboard.
+ *
+ * @author Abhijeet Kale
+ * @see LatencyHistogram
+ */
+public class EndpointMetrics implements MetricsListener {
+
+  private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  /**
+   * The metrics of a single endpoint.
+   */
+  private static class Endpoint {
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram firstByte = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    void record(RequestEvent event) {
+      if (event.isFailed()) {
+        errors.increment();
+      }
+      if (event.getStatus() == 429) {
+        throttled.increment();
+      }
+      requestBytes.add(event.getRequestBytes());
+      responseBytes.add(event.getResponseBytes());
+      connect.record(event.getConnectNanos());
+      firstByte.record(event.getFirstByteNanos());
+      total.record(event.getTotalNanos());
+    }
+  }
+
+  @Override
+  public void requestCompleted(RequestEvent event) {
+    String key = event.getMethod() + " " + event.getEndpoint();
+    Endpoint endpoint = endpoints.get(key);
+    if (endpoint == null) {
+      endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint());
+    }
+    endpoint.record(event);
+  }
+
+  /**
+   * Takes a snapshot of the metrics of every endpoint requested so far.
+   *
+   * @return the metrics keyed by method and endpoint template, in alphabetical order
+   */
+  public Map<String, Snapshot> snapshot() {
+    Map<String, Snapshot> snapshot = new TreeMap<>();
+    for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+      snapshot.put(endpoint.getKey(), new Snapshot(endpoint.getValue()));
+    }
+    return snapshot;
+  }
+
+  /**
+   * Forgets the metrics recorded so far.
+   */
+  public void reset() {
+    endpoints.clear();
+  }
+
+  /**
+   * The metrics of an endpoint at some point in time.
+   */
+  public static class Snapshot {
+
+    private final long errorCount;
+    private final long throttledCount;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final LatencyHistogram.Snapshot connect;
+    private final LatencyHistogram.Snapshot firstByte;
+    private final LatencyHistogram.Snapshot total;
+
+    Snapshot(Endpoint endpoint) {
+      total = endpoint.total.snapshot();
+      firstByte = endpoint.firstByte.snapshot();
+      connect = endpoint.connect.snapshot();
+      errorCount = endpoint.errors.sum();
+      throttledCount = endpoint.throttled.sum();
+      requestBytes = endpoint.requestBytes.sum();
+      responseBytes = endpoint.responseBytes.sum();
+    }
+
+    public long getCount() {
+      return total.getCount();
+    }
+
+    /**
+     * Returns the number of requests which failed, without a response or with an error status.
+     *
+     * @return the number of failed requests, including the throttled ones
+     */
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    /**
+     * Returns the number of requests rejected by the rate limit with a 429 response.
+     *
+     * @return the number of throttled requests
+     */
+    public long getThrottledCount() {
+      return throttledCount;
+    }
+
+    public long getRequestBytes() {
+      return requestBytes;
+    }
+
+    public long getResponseBytes() {
+      return responseBytes;
+    }
+
+    /**
+     * Returns the time taken to open the connection or take it from the keep-alive cache.
+     *
+     * @return the connect latencies
+     */
+    public LatencyHistogram.Snapshot getConnect() {
+      return connect;
+    }
+
+    /**
+     * Returns the time until the response status and headers were received.
+     *
+     * @return the time to first byte latencies
+     */
+    public LatencyHistogram.Snapshot getFirstByte() {
+      return firstByte;
+    }
+
+    /**
+     * Returns the time until the response was read and parsed.
+     *
+     * @return the total latencies
+     */
+    public LatencyHistogram.Snapshot getTotal() {
+      return total;
+    }
+
+    @Override
+    public String toString() {
+      return getCount() + " requests, " + errorCount + " failed, " + throttledCount
+          + " throttled, " + requestBytes + " bytes sent, " + responseBytes
+          + " bytes received, latency " + total;
+    }
+  }
+}
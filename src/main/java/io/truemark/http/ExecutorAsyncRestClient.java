@@ -0,0 +1,130 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Adapts a blocking {@link RestClient} to the {@link AsyncRestClient} contract by running each
+ * call on an executor. The executor threads still block on network I/O; clients with native
+ * non-blocking support implement {@link AsyncCapableRestClient} instead.
+ *
+ * @author Abhijeet Kale
+ */
+public class ExecutorAsyncRestClient implements AsyncRestClient {
+
+  protected final RestClient restClient;
+  protected final Executor executor;
+
+  /**
+   * Creates a new adapter.
+   *
+   * @param restClient the blocking client to delegate to
+   * @param executor   the executor to run the blocking calls on
+   */
+  public ExecutorAsyncRestClient(RestClient restClient, Executor executor) {
+    this.restClient = restClient;
+    this.executor = executor;
+  }
+
+  /**
+   * A blocking call which may throw an I/O error.
+   *
+   * @param <T> the result type
+   */
+  protected interface Call<T> {
+    T call() throws IOException;
+  }
+
+  /**
+   * Runs a call on the executor. A call the executor rejects, such as when it is shut down or its
+   * queue is full, fails the returned future rather than throwing.
+   *
+   * @param call the blocking call
+   * @param <T>  the result type
+   * @return a future completed with the result of the call
+   */
+  protected <T> CompletableFuture<T> submit(Call<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(call.call());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+    } catch (RejectedExecutionException x) {
+      future.completeExceptionally(x);
+    }
+    return future;
+  }
+
+  @Override
+  public <T> CompletableFuture<T> get(String uri, T instance) {
+    return submit(() -> restClient.get(uri, instance));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> get(String uri, Class<T> clazz) {
+    return submit(() -> restClient.get(uri, clazz));
+  }
+
+  @Override
+  public <T> CompletableFuture<RestResponse<T>> getResponse(String uri, Class<T> clazz) {
+    return submit(() -> restClient.getResponse(uri, clazz));
+  }
+
+  @Override
+  public <T> CompletableFuture<RestResponse<T>> getResponse(String uri,
+                                                             ResponseParser<T> parser) {
+    return submit(() -> restClient.getResponse(uri, parser));
+  }
+
+  @Override
+  public <T, S> CompletableFuture<T> get(String uri, Class<T> clazz, Class<S> parameterClass) {
+    return submit(() -> restClient.get(uri, clazz, parameterClass));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> update(String uri, T o) {
+    return submit(() -> restClient.update(uri, o));
+  }
+
+  @Override
+  public <T, U> CompletableFuture<T> patch(String uri, Class<T> clazz, U u) {
+    return submit(() -> restClient.patch(uri, clazz, u));
+  }
+
+  @Override
+  public <V, T> CompletableFuture<V> create(String uri, T o, Class<V> clazz) {
+    return submit(() -> restClient.create(uri, o, clazz));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> create(String uri, T o) {
+    return submit(() -> restClient.create(uri, o));
+  }
+
+  @Override
+  public CompletableFuture<Void> delete(String uri) {
+    return submit(() -> {
+      restClient.delete(uri);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> execute(String uri) {
+    return submit(() -> {
+      restClient.execute(uri);
+      return null;
+    });
+  }
+
+  @Override
+  public <T> CompletableFuture<T> postForObject(String uri, Object data, Class<T> clazz) {
+    return submit(() -> restClient.postForObject(uri, data, clazz));
+  }
+}
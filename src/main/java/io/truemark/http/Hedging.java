@@ -0,0 +1,231 @@
+package io.truemark.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent requests to cut their tail latency. A request which has not completed within
+ * a percentile of the recent latency is sent a second time and whichever copy completes first is
+ * used, the other one is cancelled. The number of hedged requests is capped by a budget, a
+ * fraction of all requests, so a slow API is never flooded with extra requests.
+ *
+ * <p>The first copy runs on the calling thread and only the hedge is handed to the executor, so
+ * a saturated executor delays hedges but never the requests themselves. Requests are not hedged
+ * until enough latencies have been recorded to estimate the percentile.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j
+public class Hedging {
+
+  static final int WINDOW = 256;
+  static final int MIN_SAMPLES = 20;
+  private static final int RECOMPUTE_INTERVAL = 16;
+  private static volatile ScheduledThreadPoolExecutor timer;
+  private final double percentile;
+  private final double budget;
+  private final Executor executor;
+  private final long[] latencies = new long[WINDOW];
+  private int samples;
+  private volatile long delayNanos = -1;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+
+  /**
+   * A request which may be sent more than once.
+   *
+   * @param <T> the type of the result
+   */
+  public interface Request<T> {
+
+    /**
+     * Sends the request and reads the response.
+     *
+     * @return the result
+     * @throws IOException if an I/O error occurs or the request was cancelled
+     */
+    T send() throws IOException;
+
+    /**
+     * Aborts the request, which is in progress on another thread or not started yet.
+     */
+    void cancel();
+  }
+
+  /**
+   * Creates a new hedging policy.
+   *
+   * @param percentile the percentile of recent latency after which a request is hedged, such as
+   *                   0.95
+   * @param budget     the maximum ratio of hedged to total requests, such as 0.05
+   * @param executor   the executor the hedged requests are sent on
+   */
+  public Hedging(double percentile, double budget, Executor executor) {
+    if (!(percentile > 0 && percentile < 1) || !(budget > 0 && budget <= 1)) {
+      throw new IllegalArgumentException("The percentile must be in (0, 1) and the budget in "
+          + "(0, 1]");
+    }
+    this.percentile = percentile;
+    this.budget = budget;
+    this.executor = executor;
+  }
+
+  /**
+   * Sends a request, hedging it if it is slow.
+   *
+   * @param factory creates a copy of the request, called once for the request and once more if
+   *                it is hedged
+   * @param <T>     the type of the result
+   * @return the result of the copy which completed first
+   * @throws IOException if the request failed
+   */
+  public <T> T execute(Supplier<Request<T>> factory) throws IOException {
+    long total = requests.incrementAndGet();
+    long delay = delayNanos;
+    Request<T> primary = factory.get();
+    long start = System.nanoTime();
+    if (delay < 0) {
+      T result = primary.send();
+      record(System.nanoTime() - start);
+      return result;
+    }
+    Hedge<T> hedge = new Hedge<>(primary, factory, total);
+    ScheduledFuture<?> scheduled = timer().schedule(hedge::fire, delay, TimeUnit.NANOSECONDS);
+    try {
+      T result = primary.send();
+      record(System.nanoTime() - start);
+      return result;
+    } catch (IOException x) {
+      if (hedge.result.isDone() && !hedge.result.isCompletedExceptionally()) {
+        // the hedge completed first and cancelled this request
+        record(System.nanoTime() - start);
+        return hedge.result.join();
+      }
+      throw x;
+    } finally {
+      scheduled.cancel(false);
+      hedge.cancel();
+    }
+  }
+
+  /**
+   * Returns the time after which a request is hedged.
+   *
+   * @return the delay in nanoseconds or -1 if too few latencies have been recorded
+   */
+  public long getDelayNanos() {
+    return delayNanos;
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getHedgeCount() {
+    return hedges.get();
+  }
+
+  /**
+   * Records the latency of a completed request.
+   *
+   * @param latencyNanos the latency
+   */
+  synchronized void record(long latencyNanos) {
+    latencies[samples % WINDOW] = latencyNanos;
+    samples++;
+    if (samples >= MIN_SAMPLES
+        && (samples % RECOMPUTE_INTERVAL == 0 || delayNanos < 0)) {
+      long[] sorted = Arrays.copyOf(latencies, Math.min(samples, WINDOW));
+      Arrays.sort(sorted);
+      delayNanos = sorted[(int) Math.min(sorted.length - 1, (long) (percentile * sorted.length))];
+    }
+  }
+
+  private boolean tryHedge(long total) {
+    long current;
+    do {
+      current = hedges.get();
+      if (current + 1 > budget * total) {
+        return false;
+      }
+    } while (!hedges.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  private static ScheduledThreadPoolExecutor timer() {
+    ScheduledThreadPoolExecutor ret = timer;
+    if (ret == null) {
+      synchronized (Hedging.class) {
+        ret = timer;
+        if (ret == null) {
+          ret = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("newrelic-hedging"));
+          ret.setRemoveOnCancelPolicy(true);
+          timer = ret;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * The second copy of a request, sent once the first one is late.
+   */
+  private class Hedge<T> {
+    private final Request<T> primary;
+    private final Supplier<Request<T>> factory;
+    private final long total;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private volatile Request<T> request;
+    private volatile boolean done;
+
+    Hedge(Request<T> primary, Supplier<Request<T>> factory, long total) {
+      this.primary = primary;
+      this.factory = factory;
+      this.total = total;
+    }
+
+    void fire() {
+      if (done || !tryHedge(total)) {
+        return;
+      }
+      Request<T> hedge = factory.get();
+      request = hedge;
+      if (done) {
+        return; // the request completed meanwhile
+      }
+      try {
+        executor.execute(() -> {
+          try {
+            result.complete(hedge.send());
+            primary.cancel();
+          } catch (IOException | RuntimeException x) {
+            if (!done) {
+              log.debug("Hedged request failed: " + x.getMessage());
+            }
+            result.completeExceptionally(x);
+          }
+        });
+      } catch (RejectedExecutionException x) {
+        result.completeExceptionally(x);
+      }
+    }
+
+    void cancel() {
+      done = true;
+      Request<T> hedge = request;
+      if (hedge != null && !result.isDone()) {
+        hedge.cancel();
+      }
+    }
+  }
+}
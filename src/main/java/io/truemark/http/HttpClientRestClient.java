@@ -0,0 +1,120 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A RestClient built on the java.net.http.HttpClient of Java 11. Clients sharing one HttpClient
+ * multiplex their requests over a single HTTP/2 connection per host, and the client supports
+ * non-blocking requests through {@link #async()}.
+ *
+ * <p>The HttpClient needs Java 11, this class is the Java 8 version which cannot be created and
+ * is replaced by the one in the Java 11 part of the multi-release jar. Use
+ * {@link RestClientFactory#http2()} to create instances.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class HttpClientRestClient extends JacksonRestClient implements AsyncCapableRestClient {
+
+  private static final long serialVersionUID = 4026375935383641042L;
+  /**
+   * The connect timeout of created HttpClients and the default timeout of each request.
+   */
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+
+  /**
+   * Creates a new RestClient client with its own HttpClient.
+   *
+   * @param url    the base url
+   * @param apiKey the api key
+   * @throws IllegalStateException as the running JVM is older than Java 11
+   */
+  public HttpClientRestClient(String url, String apiKey) {
+    throw unsupported();
+  }
+
+  static IllegalStateException unsupported() {
+    return new IllegalStateException("The HTTP/2 transport requires Java 11 or later");
+  }
+
+  /**
+   * Sets how long to wait for the response to each request, from sending the request until the
+   * response headers are received. A request not answered in time fails with a
+   * SocketTimeoutException.
+   *
+   * @param timeout the timeout, defaults to {@link #DEFAULT_TIMEOUT}
+   */
+  public void setTimeout(Duration timeout) {
+    throw unsupported();
+  }
+
+  public Duration getTimeout() {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> T get(String uri, T o) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> T get(String uri, Class<T> clazz) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, Class<T> clazz) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, ResponseParser<T> parser)
+      throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T, S> T get(String uri, Class<T> clazz, Class<S> parameterClass) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> T update(String uri, T o) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T, U> T patch(String uri, Class<T> clazz, U u) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <V, T> V create(String uri, T o, Class<V> clazz) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> T create(String uri, T o) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public void delete(String uri) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public void execute(String uri) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public <T> T postForObject(String uri, Object data, Class<T> clazz) throws IOException {
+    throw unsupported();
+  }
+
+  @Override
+  public AsyncRestClient async() {
+    throw unsupported();
+  }
+}
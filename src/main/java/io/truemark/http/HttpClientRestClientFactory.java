@@ -0,0 +1,27 @@
+package io.truemark.http;
+
+/**
+ * Creates {@link HttpClientRestClient} instances which all share one HttpClient, so that every
+ * endpoint of a New Relic host is served over the same HTTP/2 connection.
+ *
+ * <p>This is the Java 8 version which cannot be created and is replaced by the one in the Java 11
+ * part of the multi-release jar.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class HttpClientRestClientFactory implements RestClientFactory {
+
+  /**
+   * Creates a new factory.
+   *
+   * @throws IllegalStateException as the running JVM is older than Java 11
+   */
+  public HttpClientRestClientFactory() {
+    throw HttpClientRestClient.unsupported();
+  }
+
+  @Override
+  public RestClient create(String url, String apiKey) {
+    throw HttpClientRestClient.unsupported();
+  }
+}
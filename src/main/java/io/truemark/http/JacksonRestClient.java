@@ -1,17 +1,36 @@
 package io.truemark.http;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.InjectableValues.Std;
-import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.truemark.data.Condition;
+import io.truemark.data.Policies;
+import io.truemark.data.Policy;
+import io.truemark.data.PolicyAlertCondition;
+import io.truemark.data.PolicyAlertConditions;
+import io.truemark.data.Synthetic;
+import io.truemark.data.SyntheticCondition;
+import io.truemark.data.Synthetics;
+import io.truemark.error.NewRelicError;
+import io.truemark.exception.NewRelicAuthenticationFailedException;
+import io.truemark.exception.NewRelicBadRequestException;
+import io.truemark.exception.NewRelicException;
+import io.truemark.exception.NewRelicForbiddenException;
+import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.exception.NewRelicRateLimitException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Partial implementation for RestClient.
@@ -22,8 +41,24 @@ import java.util.Collection;
 public abstract class JacksonRestClient implements RestClient {
 
   private static final long serialVersionUID = -8805834142603047857L;
+
+  /**
+   * System property which, when set to true, registers the Jackson Afterburner module if it is
+   * available on the classpath. Afterburner replaces reflection with generated bytecode for
+   * accessing the properties of the model.
+   */
+  public static final String AFTERBURNER_PROPERTY = "io.truemark.jackson.afterburner";
+  private static final String AFTERBURNER_MODULE =
+      "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+  private static final Class<?>[] MODEL_TYPES = {
+      Synthetics.class, Synthetic.class, Policies.class, Policy.class,
+      PolicyAlertConditions.class, PolicyAlertCondition.class, Condition.class,
+      SyntheticCondition.class, NewRelicError.class};
   protected ObjectMapper objectMapper;
   protected InjectableValues injectableValues;
+  private transient volatile ReaderWriterRegistry registry;
+  protected WireLogger wireLogger = new WireLogger();
+  protected RateLimiter rateLimiter;
 
   public JacksonRestClient() {
     objectMapper = new ObjectMapper();
@@ -32,52 +67,215 @@ public abstract class JacksonRestClient implements RestClient {
     }
     injectableValues = new Std()
         .addValue("restClient", this);
+    if (Boolean.getBoolean(AFTERBURNER_PROPERTY)) {
+      registerModule(AFTERBURNER_MODULE);
+    }
+  }
+
+  private void registerModule(String className) {
+    try {
+      objectMapper.registerModule((Module) Class.forName(className).newInstance());
+    } catch (ClassNotFoundException x) {
+      log.warn(className + " requested but not found on the classpath");
+    } catch (ReflectiveOperationException | ClassCastException x) {
+      log.warn("Unable to register " + className + ": " + x.getMessage(), x);
+    }
+  }
+
+  /**
+   * Sets the wire logger used to log requests and responses. Wire logging is enabled by setting
+   * the {@value WireLogger#LOGGER} logger to debug level.
+   *
+   * @param wireLogger the wire logger
+   */
+  public void setWireLogger(WireLogger wireLogger) {
+    this.wireLogger = wireLogger != null ? wireLogger : new WireLogger();
+  }
+
+  public WireLogger getWireLogger() {
+    return wireLogger;
+  }
+
+  /**
+   * Sets the limiter every request of this client takes a permit from. Clients using the same API
+   * key should share one limiter. Requests rejected with a 429 response are retried as allowed by
+   * the limiter.
+   *
+   * @param rateLimiter the limiter or null to send requests without limit
+   */
+  public void setRateLimiter(RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Takes a permit from the rate limiter, if any.
+   *
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  protected void acquire() throws InterruptedIOException {
+    if (rateLimiter != null) {
+      rateLimiter.acquire();
+    }
+  }
+
+  /**
+   * Tells the rate limiter, if any, about a successful response.
+   *
+   * @param headers the response headers
+   */
+  protected void onResponse(Map<String, List<String>> headers) {
+    if (rateLimiter != null) {
+      rateLimiter.onResponse(headers);
+    }
+  }
 
+  /**
+   * Checks if a failed request should be sent again because it was rejected by the rate limit,
+   * in which case the rate limiter is told to slow down.
+   *
+   * @param x       the error
+   * @param retries the number of times the request has been retried so far
+   * @return true if the request should be retried
+   */
+  protected boolean isThrottledRetry(IOException x, int retries) {
+    if (rateLimiter == null || !(x instanceof NewRelicRateLimitException)
+        || retries >= rateLimiter.getMaxRetries()) {
+      return false;
+    }
+    long retryAfter = ((NewRelicRateLimitException) x).getRetryAfterMillis();
+    log.debug("Rate limit exceeded, retrying after " + retryAfter + " ms");
+    rateLimiter.onThrottled(retryAfter);
+    return true;
+  }
+
+  /**
+   * Returns the readers and writers of this client. The registry is built on first use, after
+   * subclasses have finished configuring the ObjectMapper, and is warmed for the model types.
+   *
+   * @return the registry
+   */
+  protected ReaderWriterRegistry registry() {
+    ReaderWriterRegistry ret = registry;
+    if (ret == null) {
+      synchronized (this) {
+        ret = registry;
+        if (ret == null) {
+          ret = new ReaderWriterRegistry(objectMapper, injectableValues).warm(MODEL_TYPES);
+          registry = ret;
+        }
+      }
+    }
+    return ret;
   }
 
   protected <T> T readValue(String value, Class<T> clazz) throws IOException {
-    return objectMapper.reader().with(injectableValues).withType(clazz).readValue(value);
+    return registry().reader(clazz).readValue(value);
   }
 
   protected <T> T readValue(InputStream inputStream, Class<T> clazz) throws IOException {
-    return objectMapper.reader().with(injectableValues).withType(clazz).readValue(inputStream);
+    return registry().reader(clazz).readValue(inputStream);
   }
 
   protected <T> T readValue(String value, Object o) throws IOException {
-    return objectMapper.reader().with(injectableValues).withValueToUpdate(o).readValue(value);
+    return registry().updater(o).readValue(value);
   }
 
   protected <T> T readValue(InputStream inputStream, Object o) throws IOException {
-    return objectMapper.reader().with(injectableValues).withValueToUpdate(o).readValue(
-        inputStream);
+    return registry().updater(o).readValue(inputStream);
   }
 
   public <C, P> C readValue(String value, Class<C> clazz, Class<P> parameterClass) throws
       IOException {
-    JavaType type = objectMapper.getTypeFactory().constructParametricType(clazz, parameterClass);
-    return objectMapper.reader().with(injectableValues).withType(type).readValue(value);
+    return registry().reader(clazz, parameterClass).readValue(value);
   }
 
   protected <C, P> C readValue(InputStream inputStream, Class<C> clazz,
                                Class<P> parameterClass) throws IOException {
-    JavaType type = objectMapper.getTypeFactory().constructParametricType(clazz, parameterClass);
-    return objectMapper.reader().with(injectableValues).withType(type).readValue(inputStream);
+    return registry().reader(clazz, parameterClass).readValue(inputStream);
+  }
+
+  protected <T> T parse(InputStream inputStream, ResponseParser<T> parser) throws IOException {
+    try (JsonParser jsonParser = objectMapper.getFactory().createParser(inputStream)) {
+      return parser.parse(jsonParser);
+    }
+  }
+
+  protected <T> T parse(byte[] value, ResponseParser<T> parser) throws IOException {
+    try (JsonParser jsonParser = objectMapper.getFactory().createParser(value)) {
+      return parser.parse(jsonParser);
+    }
   }
 
   protected String writeValue(Object o) throws IOException {
-    return objectMapper.writeValueAsString(o);
+    return registry().writer(o.getClass()).writeValueAsString(o);
   }
 
   protected void writeValue(OutputStream out, Object o) throws IOException {
-    objectMapper.writeValue(out, o);
+    registry().writer(o.getClass()).writeValue(out, o);
+  }
+
+  protected byte[] writeValueAsBytes(Object o) throws IOException {
+    return registry().writer(o.getClass()).writeValueAsBytes(o);
+  }
+
+  /**
+   * Maps an unsuccessful HTTP status to the exception to throw.
+   *
+   * @param status the HTTP status code
+   * @param error  the error response body or null
+   * @param x      the exception raised by the transport or null
+   * @return the exception to throw
+   * @throws IOException if the error body cannot be parsed
+   */
+  @SuppressWarnings("unchecked")
+  protected IOException getError(int status, String error, IOException x) throws IOException {
+    switch (status) {
+      case 401:
+        return new NewRelicAuthenticationFailedException(error);
+      case 404:
+        return new NewRelicNotFoundException(error);
+      case 400:
+        if (error != null) {
+          return new NewRelicBadRequestException("Received error: " + error,
+              readCollection(error, List.class, NewRelicError.class));
+        }
+        return new NewRelicBadRequestException();
+      case 403:
+        return new NewRelicForbiddenException(error); // TODO
+      case 429:
+        return new NewRelicRateLimitException(error);
+      default:
+        return new NewRelicException(error, x);
+    }
+  }
+
+  /**
+   * Maps an unsuccessful HTTP status to the exception to throw, taking the delay requested by a
+   * 429 response from its headers.
+   *
+   * @param status  the HTTP status code
+   * @param headers the response headers
+   * @param error   the error response body or null
+   * @param x       the exception raised by the transport or null
+   * @return the exception to throw
+   * @throws IOException if the error body cannot be parsed
+   */
+  protected IOException getError(int status, Map<String, List<String>> headers, String error,
+                                 IOException x) throws IOException {
+    if (status == 429) {
+      return new NewRelicRateLimitException(error, RateLimiter.getRetryAfterMillis(headers));
+    }
+    return getError(status, error, x);
   }
 
   protected <C extends Collection<T>, T> C readCollection(String value, Class<C> collectionClass,
                                                           Class<T> typeClass)
       throws IOException {
-    return objectMapper.reader().with(injectableValues).withType(
-        objectMapper.getTypeFactory().constructCollectionType(collectionClass, typeClass))
-        .readValue(value);
+    return registry().reader(collectionClass, typeClass).readValue(value);
   }
 
 }
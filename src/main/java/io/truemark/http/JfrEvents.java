@@ -0,0 +1,62 @@
+package io.truemark.http;
+
+/**
+ * Emits Java Flight Recorder events for the HTTP requests and the operations of the client, so a
+ * slow run can be lined up with the GC and thread activity recorded at the same time.
+ *
+ * <p>Flight Recorder events need Java 11, this class is the Java 8 version which records nothing
+ * and is replaced by the one in the Java 11 part of the multi-release jar. Callers get null when
+ * an event is not recorded, so the only cost when recording is off is that check.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class JfrEvents {
+
+  private JfrEvents() {
+  }
+
+  /**
+   * Starts the event of an HTTP request, if such events are being recorded.
+   *
+   * @return the event to commit once the request completed, or null
+   */
+  public static JfrEvents request() {
+    return null;
+  }
+
+  /**
+   * Starts the event of a client operation, if such events are being recorded.
+   *
+   * @param operation the name of the operation, such as disableAlertConditions
+   * @param target    what the operation applies to, such as the policy name
+   * @return the event to commit once the operation completed, or null
+   */
+  public static JfrEvents operation(String operation, String target) {
+    return null;
+  }
+
+  /**
+   * Commits the event of an HTTP request.
+   *
+   * @param event the timings and sizes of the request
+   */
+  public void commit(RequestEvent event) {
+  }
+
+  /**
+   * Commits the event of a client operation.
+   *
+   * @param items  the number of items read or written
+   * @param report the outcome of the writes, or null if the operation only read
+   */
+  public void commit(int items, WriteReport report) {
+  }
+
+  /**
+   * Commits the event of a client operation which failed.
+   *
+   * @param error the exception the operation failed with
+   */
+  public void failed(Throwable error) {
+  }
+}
@@ -0,0 +1,155 @@
+package io.truemark.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of latencies with a bounded relative error, in the manner of an HDR
+ * histogram. Latencies are recorded in microseconds into buckets whose width grows with the
+ * value, {@value #SUB_BUCKETS} buckets for every power of two, so a percentile is within about 3%
+ * of the true value from 1 microsecond to over an hour. Longer latencies are recorded as the
+ * highest trackable value.
+ *
+ * <p>Recording never blocks: the buckets are spread over a few stripes chosen by thread, so
+ * threads recording at the same time rarely update the same counter. The stripes are summed when
+ * a snapshot is taken.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_VALUE_BITS = 31;
+  static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+  static final long MAX_VALUE = (1L << (MAX_VALUE_BITS + 1)) - 1;
+  private static final int STRIPES =
+      Math.min(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+  private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    stripes[stripe].incrementAndGet(index(micros));
+    sum.add(micros);
+    if (micros > max.get()) {
+      max.accumulateAndGet(micros, Math::max);
+    }
+  }
+
+  /**
+   * Returns the bucket of a value. Values below {@value #SUB_BUCKETS} have a bucket each, above
+   * that each power of two is split into {@value #SUB_BUCKETS} buckets.
+   */
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * Returns the highest value recorded in a bucket.
+   */
+  static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    return ((long) (index % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+  }
+
+  /**
+   * Takes a snapshot of the latencies recorded so far. Latencies recorded while the snapshot is
+   * taken may or may not be included.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return new Snapshot(counts, sum.sum(), max.get());
+  }
+
+  /**
+   * The latencies recorded by a histogram at some point in time.
+   */
+  public static class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] counts, long sum, long max) {
+      long count = 0;
+      for (long c : counts) {
+        count += c;
+      }
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMaxMicros() {
+      return max;
+    }
+
+    public double getMeanMicros() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the latency below which the given share of the requests completed.
+     *
+     * @param percentile the percentile between 0 and 1, such as 0.99
+     * @return the latency in microseconds, 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValue(i), max);
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "count " + count + ", mean " + Math.round(getMeanMicros()) + " us, p50 "
+          + getPercentileMicros(0.5) + " us, p99 " + getPercentileMicros(0.99) + " us, max "
+          + max + " us";
+    }
+  }
+}
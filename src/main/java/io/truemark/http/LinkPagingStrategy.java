@@ -0,0 +1,58 @@
+package io.truemark.http;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pages through a listing by following the RFC 5988 Link header, as done by the New Relic REST
+ * v2 API. The listing ends when a response carries no link with rel="next".
+ *
+ * @param <P> the type of a page
+ * @author Abhijeet Kale
+ */
+public class LinkPagingStrategy<P> implements PagingStrategy<P> {
+
+  private static final Pattern LINK = Pattern.compile("<([^>]*)>\\s*;([^,]*)");
+  private static final Pattern REL_NEXT = Pattern.compile("rel\\s*=\\s*\"?next\"?");
+  private final String uri;
+
+  /**
+   * Creates a new strategy.
+   *
+   * @param uri the URI of the first page
+   */
+  public LinkPagingStrategy(String uri) {
+    this.uri = uri;
+  }
+
+  /**
+   * Extracts the URI with rel="next" from a Link header.
+   *
+   * @param link the value of the Link header or null
+   * @return the next URI or null if there is none
+   */
+  public static String getNext(String link) {
+    if (link != null) {
+      Matcher matcher = LINK.matcher(link);
+      while (matcher.find()) {
+        if (REL_NEXT.matcher(matcher.group(2)).find()) {
+          return matcher.group(1).trim();
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public PageRequest first() {
+    return new PageRequest(uri);
+  }
+
+  @Override
+  public PageRequest next(PageRequest current, RestResponse<P> response, int items) {
+    List<String> links = response.getHeaders().get("Link");
+    String next = links != null ? getNext(String.join(",", links)) : null;
+    return next != null && !next.equals(current.getUri()) ? new PageRequest(next) : null;
+  }
+}
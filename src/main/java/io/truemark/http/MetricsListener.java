@@ -0,0 +1,21 @@
+package io.truemark.http;
+
+/**
+ * Receives the timings and sizes of every HTTP request sent by a {@link URLConnectionRestClient}.
+ * Implementations are called on the thread which sent the request, once the response has been
+ * read, so they must be thread safe and should return quickly.
+ *
+ * @author Abhijeet Kale
+ * @see EndpointMetrics
+ */
+public interface MetricsListener {
+
+  /**
+   * Called once for every request sent, successful or not. Requests which are retried are
+   * reported once per attempt, responses served from the cache without a request are not
+   * reported.
+   *
+   * @param event the request
+   */
+  void requestCompleted(RequestEvent event);
+}
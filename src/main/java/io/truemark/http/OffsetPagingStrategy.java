@@ -0,0 +1,109 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Pages through a listing using offset and limit query parameters, as done by the Synthetics v3
+ * API. The listing ends on a short page or once the total reported by the API is reached.
+ *
+ * <p>The page size is read before each request, so a strategy created with an
+ * {@link AdaptivePageSize} follows its adjustments and retries a timed out page with the reduced
+ * size.</p>
+ *
+ * @param <P> the type of a page
+ * @author Abhijeet Kale
+ */
+public class OffsetPagingStrategy<P> implements PagingStrategy<P> {
+
+  private final String uri;
+  private final int offset;
+  private final IntSupplier limit;
+  private final Function<P, Integer> total;
+
+  /**
+   * Creates a new strategy.
+   *
+   * @param uri    the URI of the listing without paging parameters
+   * @param offset the offset of the first item to fetch
+   * @param limit  the number of items to request per page
+   * @param total  extracts the total number of items from a page, may return null if unknown
+   */
+  public OffsetPagingStrategy(String uri, int offset, int limit, Function<P, Integer> total) {
+    this(uri, offset, fixed(limit), total);
+  }
+
+  /**
+   * Creates a new strategy with a page size which may change between requests.
+   *
+   * @param uri    the URI of the listing without paging parameters
+   * @param offset the offset of the first item to fetch
+   * @param limit  supplies the number of items to request for each page
+   * @param total  extracts the total number of items from a page, may return null if unknown
+   */
+  public OffsetPagingStrategy(String uri, int offset, IntSupplier limit,
+                              Function<P, Integer> total) {
+    this.uri = uri;
+    this.offset = offset;
+    this.limit = limit;
+    this.total = total;
+  }
+
+  private static IntSupplier fixed(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive");
+    }
+    return () -> limit;
+  }
+
+  /**
+   * Builds the request for the page at the given offset.
+   *
+   * @param offset the offset of the first item on the page
+   * @param limit  the number of items to request
+   * @return the page request
+   */
+  public PageRequest request(int offset, int limit) {
+    return new PageRequest(uri + (uri.contains("?") ? "&" : "?") + "offset=" + offset
+        + "&limit=" + limit, offset, limit);
+  }
+
+  /**
+   * Returns the total number of items reported on a page.
+   *
+   * @param page the page
+   * @return the total or null if unknown
+   */
+  public Integer getTotal(P page) {
+    return page != null && total != null ? total.apply(page) : null;
+  }
+
+  public int getLimit() {
+    return limit.getAsInt();
+  }
+
+  @Override
+  public PageRequest first() {
+    return request(offset, getLimit());
+  }
+
+  @Override
+  public PageRequest next(PageRequest current, RestResponse<P> response, int items) {
+    int next = current.getOffset() + current.getLimit();
+    Integer count = getTotal(response.getBody());
+    if (items < current.getLimit() || (count != null && next >= count)) {
+      return null;
+    }
+    return request(next, getLimit());
+  }
+
+  @Override
+  public PageRequest retry(PageRequest failed, IOException x) {
+    if (limit instanceof AdaptivePageSize && AdaptivePageSize.isTimeout(x)) {
+      int size = ((AdaptivePageSize) limit).getRetrySize(failed.getLimit());
+      return size > 0 ? request(failed.getOffset(), size) : null;
+    }
+    return null;
+  }
+}
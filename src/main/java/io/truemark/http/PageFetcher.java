@@ -0,0 +1,21 @@
+package io.truemark.http;
+
+import java.io.IOException;
+
+/**
+ * Fetches a single page of a listing.
+ *
+ * @param <P> the type of a page
+ * @author Abhijeet Kale
+ */
+public interface PageFetcher<P> {
+
+  /**
+   * Fetches a page.
+   *
+   * @param uri the URI of the page
+   * @return the page along with its response headers
+   * @throws IOException if an error occurs
+   */
+  RestResponse<P> fetch(String uri) throws IOException;
+}
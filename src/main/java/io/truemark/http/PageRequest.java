@@ -0,0 +1,38 @@
+package io.truemark.http;
+
+import lombok.Getter;
+
+/**
+ * Identifies a single page of a paginated listing.
+ *
+ * @author Abhijeet Kale
+ */
+@Getter
+public class PageRequest {
+
+  private final String uri;
+  private final int offset;
+  private final int limit;
+
+  /**
+   * Creates a request for a page addressed by its URI only.
+   *
+   * @param uri the URI of the page
+   */
+  public PageRequest(String uri) {
+    this(uri, -1, -1);
+  }
+
+  /**
+   * Creates a request for a page addressed by offset and limit.
+   *
+   * @param uri    the URI of the page
+   * @param offset the offset of the first item on the page
+   * @param limit  the maximum number of items on the page
+   */
+  public PageRequest(String uri, int offset, int limit) {
+    this.uri = uri;
+    this.offset = offset;
+    this.limit = limit;
+  }
+}
@@ -0,0 +1,351 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily iterates over the items of a paginated listing. Pages are only fetched as the items are
+ * consumed, so a caller which stops early never requests the remaining pages. When an executor is
+ * configured the page following the one being consumed is fetched in the background.
+ *
+ * <p>The iterator and stream throw {@link UncheckedIOException} if a page cannot be fetched.</p>
+ *
+ * @param <P> the type of a page
+ * @param <T> the type of the items on a page
+ * @author Abhijeet Kale
+ */
+public class Paginator<P, T> implements Iterable<T> {
+
+  private final PagingStrategy<P> strategy;
+  private final PageFetcher<P> fetcher;
+  private final Function<P, List<T>> items;
+  private Executor executor;
+
+  /**
+   * Creates a new paginator.
+   *
+   * @param strategy decides which pages are requested
+   * @param fetcher  fetches a page
+   * @param items    extracts the items from a page, may return null for an empty page
+   */
+  public Paginator(PagingStrategy<P> strategy, PageFetcher<P> fetcher,
+                   Function<P, List<T>> items) {
+    this.strategy = strategy;
+    this.fetcher = fetcher;
+    this.items = items;
+  }
+
+  /**
+   * Enables prefetching of the next page on the given executor.
+   *
+   * @param executor the executor to fetch pages on or null to fetch on the consuming thread
+   * @return the paginator for method chaining
+   */
+  public Paginator<P, T> prefetch(Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  @Override
+  public PageIterator iterator() {
+    return new PageIterator();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliteratorUnknownSize(iterator(),
+        Spliterator.ORDERED | Spliterator.NONNULL);
+  }
+
+  /**
+   * Returns a sequential stream over the items. Closing the stream abandons a pending prefetch.
+   *
+   * @return the stream
+   */
+  public Stream<T> stream() {
+    PageIterator iterator = iterator();
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+        Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+  }
+
+  /**
+   * Collects all items of a listing without blocking, following the pages one after another.
+   *
+   * @param strategy decides which pages are requested
+   * @param fetcher  fetches a page asynchronously
+   * @param items    extracts the items from a page, may return null for an empty page
+   * @param <P>      the type of a page
+   * @param <T>      the type of the items on a page
+   * @return a future completed with all items of the listing
+   */
+  public static <P, T> CompletableFuture<List<T>> collectAsync(
+      PagingStrategy<P> strategy, Function<String, CompletableFuture<RestResponse<P>>> fetcher,
+      Function<P, List<T>> items) {
+    return collectAsync(strategy, fetcher, items, strategy.first(), new ArrayList<>());
+  }
+
+  private static <P, T> CompletableFuture<List<T>> collectAsync(
+      PagingStrategy<P> strategy, Function<String, CompletableFuture<RestResponse<P>>> fetcher,
+      Function<P, List<T>> items, PageRequest request, List<T> collected) {
+    return fetchAsync(strategy, fetcher, request).thenCompose(page -> {
+      List<T> pageItems = getItems(items, page.response);
+      collected.addAll(pageItems);
+      PageRequest next = strategy.next(page.request, page.response, pageItems.size());
+      return next != null
+          ? collectAsync(strategy, fetcher, items, next, collected)
+          : CompletableFuture.completedFuture(collected);
+    });
+  }
+
+  /**
+   * Collects all items of an offset paged listing, fetching up to the given number of pages at a
+   * time. The first page is fetched on its own to learn the total reported by the API, the
+   * remaining pages are then spread over at most parallelism lanes which each fetch their pages
+   * one after another. The items are returned in listing order. If the total is unknown the
+   * pages are followed sequentially.
+   *
+   * @param strategy    decides which pages are requested
+   * @param fetcher     fetches a page asynchronously
+   * @param items       extracts the items from a page, may return null for an empty page
+   * @param parallelism the maximum number of pages requested at the same time
+   * @param <P>         the type of a page
+   * @param <T>         the type of the items on a page
+   * @return a future completed with all items of the listing
+   */
+  public static <P, T> CompletableFuture<List<T>> collectAsync(
+      OffsetPagingStrategy<P> strategy,
+      Function<String, CompletableFuture<RestResponse<P>>> fetcher,
+      Function<P, List<T>> items, int parallelism) {
+    return fetchAsync(strategy, fetcher, strategy.first()).thenCompose(first -> {
+      List<T> collected = new ArrayList<>(getItems(items, first.response));
+      PageRequest next = strategy.next(first.request, first.response, collected.size());
+      Integer total = strategy.getTotal(first.response.getBody());
+      if (next == null) {
+        return CompletableFuture.completedFuture(collected);
+      }
+      if (total == null || parallelism <= 1) {
+        return collectAsync(strategy, fetcher, items, next, collected);
+      }
+      List<PageRequest> requests = new ArrayList<>();
+      for (int offset = next.getOffset(); offset < total; offset += strategy.getLimit()) {
+        requests.add(strategy.request(offset, strategy.getLimit()));
+      }
+      AtomicReferenceArray<List<T>> pages = new AtomicReferenceArray<>(requests.size());
+      CompletableFuture<?>[] lanes =
+          new CompletableFuture<?>[Math.min(parallelism, requests.size())];
+      for (int lane = 0; lane < lanes.length; lane++) {
+        lanes[lane] = collectLane(strategy, requests, lane, lanes.length, fetcher, items, pages);
+      }
+      return CompletableFuture.allOf(lanes).thenApply(v -> {
+        for (int i = 0; i < pages.length(); i++) {
+          collected.addAll(pages.get(i));
+        }
+        return collected;
+      });
+    });
+  }
+
+  private static <P, T> CompletableFuture<Void> collectLane(
+      OffsetPagingStrategy<P> strategy, List<PageRequest> requests, int index, int step,
+      Function<String, CompletableFuture<RestResponse<P>>> fetcher, Function<P, List<T>> items,
+      AtomicReferenceArray<List<T>> pages) {
+    if (index >= requests.size()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return collectRange(strategy, fetcher, items, requests.get(index)).thenCompose(range -> {
+      pages.set(index, range);
+      return collectLane(strategy, requests, index + step, step, fetcher, items, pages);
+    });
+  }
+
+  /**
+   * Collects the items of a page. If the page is retried with a smaller size, the rest of its
+   * range is requested in further pages.
+   */
+  private static <P, T> CompletableFuture<List<T>> collectRange(
+      OffsetPagingStrategy<P> strategy,
+      Function<String, CompletableFuture<RestResponse<P>>> fetcher,
+      Function<P, List<T>> items, PageRequest request) {
+    return fetchAsync(strategy, fetcher, request).thenCompose(page -> {
+      List<T> pageItems = getItems(items, page.response);
+      int end = request.getOffset() + request.getLimit();
+      int fetched = page.request.getOffset() + page.request.getLimit();
+      if (fetched >= end || pageItems.size() < page.request.getLimit()) {
+        return CompletableFuture.completedFuture(pageItems);
+      }
+      return collectRange(strategy, fetcher, items, strategy.request(fetched, end - fetched))
+          .thenApply(rest -> {
+            List<T> range = new ArrayList<>(pageItems);
+            range.addAll(rest);
+            return range;
+          });
+    });
+  }
+
+  /**
+   * Fetches a page, replacing a failed request as long as the strategy offers a retry.
+   */
+  private static <P> CompletableFuture<Page<P>> fetchAsync(
+      PagingStrategy<P> strategy, Function<String, CompletableFuture<RestResponse<P>>> fetcher,
+      PageRequest request) {
+    return fetcher.apply(request.getUri()).handle((response, x) -> {
+      if (x == null) {
+        return CompletableFuture.completedFuture(new Page<>(request, response));
+      }
+      Throwable cause = x instanceof CompletionException && x.getCause() != null
+          ? x.getCause() : x;
+      IOException ix = cause instanceof UncheckedIOException
+          ? ((UncheckedIOException) cause).getCause()
+          : cause instanceof IOException ? (IOException) cause : null;
+      PageRequest retry = ix != null ? strategy.retry(request, ix) : null;
+      if (retry == null) {
+        CompletableFuture<Page<P>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(cause);
+        return failed;
+      }
+      return fetchAsync(strategy, fetcher, retry);
+    }).thenCompose(Function.identity());
+  }
+
+  /**
+   * A fetched page along with the request which produced it.
+   */
+  private static class Page<P> {
+    private final PageRequest request;
+    private final RestResponse<P> response;
+
+    Page(PageRequest request, RestResponse<P> response) {
+      this.request = request;
+      this.response = response;
+    }
+  }
+
+  /**
+   * Collects all items of an offset paged listing, fetching up to the given number of pages at a
+   * time on the executor. This is the blocking counterpart of
+   * {@link #collectAsync(OffsetPagingStrategy, Function, Function, int)}.
+   *
+   * @param strategy    decides which pages are requested
+   * @param fetcher     fetches a page
+   * @param items       extracts the items from a page, may return null for an empty page
+   * @param executor    the executor to fetch the pages on
+   * @param parallelism the maximum number of pages requested at the same time
+   * @param <P>         the type of a page
+   * @param <T>         the type of the items on a page
+   * @return all items of the listing
+   * @throws UncheckedIOException if a page cannot be fetched
+   */
+  public static <P, T> List<T> collect(OffsetPagingStrategy<P> strategy, PageFetcher<P> fetcher,
+                                       Function<P, List<T>> items, Executor executor,
+                                       int parallelism) {
+    return await(collectAsync(strategy,
+        uri -> CompletableFuture.supplyAsync(() -> fetch(fetcher, uri), executor),
+        items, parallelism));
+  }
+
+  private static <P> RestResponse<P> fetch(PageFetcher<P> fetcher, String uri) {
+    try {
+      return fetcher.fetch(uri);
+    } catch (IOException x) {
+      throw new UncheckedIOException(x);
+    }
+  }
+
+  private static <R> R await(CompletableFuture<R> future) {
+    try {
+      return future.join();
+    } catch (CompletionException x) {
+      if (x.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) x.getCause();
+      }
+      throw x;
+    }
+  }
+
+  private static <P, T> List<T> getItems(Function<P, List<T>> items, RestResponse<P> response) {
+    List<T> page = response.getBody() != null ? items.apply(response.getBody()) : null;
+    return page != null ? page : Collections.<T>emptyList();
+  }
+
+  /**
+   * Iterates over the items page by page.
+   */
+  public class PageIterator implements Iterator<T>, AutoCloseable {
+
+    private PageRequest next = strategy.first();
+    private CompletableFuture<RestResponse<P>> pending;
+    private Iterator<T> current = Collections.emptyIterator();
+
+    @Override
+    public boolean hasNext() {
+      while (!current.hasNext()) {
+        if (next == null) {
+          return false;
+        }
+        load();
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return current.next();
+    }
+
+    private void load() {
+      PageRequest request = next;
+      CompletableFuture<RestResponse<P>> prefetched = pending;
+      pending = null;
+      RestResponse<P> response = null;
+      while (response == null) {
+        try {
+          response = prefetched != null ? await(prefetched) : fetch(fetcher, request.getUri());
+        } catch (UncheckedIOException x) {
+          PageRequest retry = strategy.retry(request, x.getCause());
+          if (retry == null) {
+            throw x;
+          }
+          request = retry;
+        }
+        prefetched = null;
+      }
+      List<T> page = getItems(items, response);
+      next = strategy.next(request, response, page.size());
+      if (next != null && executor != null) {
+        String uri = next.getUri();
+        pending = CompletableFuture.supplyAsync(() -> fetch(fetcher, uri), executor);
+      }
+      current = page.iterator();
+    }
+
+    /**
+     * Stops the iteration, abandoning a pending prefetch.
+     */
+    @Override
+    public void close() {
+      next = null;
+      current = Collections.emptyIterator();
+      if (pending != null) {
+        pending.cancel(false);
+        pending = null;
+      }
+    }
+  }
+}
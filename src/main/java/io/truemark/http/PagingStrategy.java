@@ -0,0 +1,41 @@
+package io.truemark.http;
+
+import java.io.IOException;
+
+/**
+ * Decides which pages of a listing are requested.
+ *
+ * @param <P> the type of a page
+ * @author Abhijeet Kale
+ */
+public interface PagingStrategy<P> {
+
+  /**
+   * Returns the request for the first page.
+   *
+   * @return the first page request
+   */
+  PageRequest first();
+
+  /**
+   * Returns the request for the page following the one just fetched.
+   *
+   * @param current  the request which was just fetched
+   * @param response the response to the current request
+   * @param items    the number of items on the current page
+   * @return the next page request or null if the current page was the last one
+   */
+  PageRequest next(PageRequest current, RestResponse<P> response, int items);
+
+  /**
+   * Returns a request to issue in place of one which failed, allowing a strategy to retry a page
+   * in a form more likely to succeed. By default a failed request ends the listing.
+   *
+   * @param failed the request which failed
+   * @param x      the failure
+   * @return the replacement request or null to fail the listing
+   */
+  default PageRequest retry(PageRequest failed, IOException x) {
+    return null;
+  }
+}
@@ -1,14 +1,15 @@
 package io.truemark.http;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -17,9 +18,73 @@ import java.util.TreeMap;
  */
 public class QueryStringBuilder {
 
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final int MAX_BUFFER_SIZE = 8192;
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  // The getters of a class are looked up once and kept as method handles
+  private static final ClassValue<Property[]> PROPERTIES = new ClassValue<Property[]>() {
+    @Override
+    protected Property[] computeValue(Class<?> type) {
+      try {
+        List<Property> properties = new ArrayList<>();
+        for (PropertyDescriptor descriptor
+            : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+          Method method = descriptor.getReadMethod();
+          if (method != null) {
+            properties.add(new Property(descriptor.getName(), method));
+          }
+        }
+        return properties.toArray(new Property[0]);
+      } catch (IntrospectionException x) {
+        throw new IllegalArgumentException(x);
+      }
+    }
+  };
+
+  // The query strings are built in a buffer reused by each thread
+  private static final ThreadLocal<StringBuilder> BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(256));
+
   // This was set as a TreeMap to ensure a consistent order was maintained with parameters
   protected Map<String, Object> params = new TreeMap<String, Object>();
 
+  /**
+   * A bean property read through a method handle of its getter.
+   */
+  private static class Property {
+    private final String name;
+    private final Method method;
+    private final MethodHandle getter;
+
+    Property(String name, Method method) {
+      this.name = name;
+      this.method = method;
+      MethodHandle getter;
+      try {
+        getter = LOOKUP.unreflect(method).asType(GETTER_TYPE);
+      } catch (IllegalAccessException x) {
+        getter = null; // reported when the property is read, as done for reflective calls
+      }
+      this.getter = getter;
+    }
+
+    Object get(Object o) {
+      if (getter == null) {
+        throw new IllegalArgumentException(new IllegalAccessException(method + " is not "
+            + "accessible"));
+      }
+      try {
+        return getter.invokeExact(o);
+      } catch (Error x) {
+        throw x;
+      } catch (Throwable x) {
+        throw new IllegalArgumentException(x);
+      }
+    }
+  }
+
   /**
    * Adds public getters as parameters to the query string.
    *
@@ -27,29 +92,13 @@ public class QueryStringBuilder {
    * @return the QueryStringBuilder for method chaining
    */
   public QueryStringBuilder add(Object o) {
-    try {
-      BeanInfo beanInfo = Introspector.getBeanInfo(o.getClass(), Object.class);
-      PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-      for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-        String name = propertyDescriptor.getName();
-        Method method = propertyDescriptor.getReadMethod();
-        if (method != null) {
-          try {
-            Object value = method.invoke(o);
-            if (value != null) {
-              add(name, value);
-            }
-          } catch (IllegalAccessException x) {
-            throw new IllegalArgumentException(x);
-          } catch (InvocationTargetException x) {
-            throw new IllegalArgumentException(x);
-          }
-        }
+    for (Property property : PROPERTIES.get(o.getClass())) {
+      Object value = property.get(o);
+      if (value != null) {
+        add(property.name, value);
       }
-      return this;
-    } catch (IntrospectionException x) {
-      throw new IllegalArgumentException(x);
     }
+    return this;
   }
 
   /**
@@ -69,41 +118,98 @@ public class QueryStringBuilder {
   }
 
   protected void append(StringBuilder sb, String key, Object value) {
-    try {
-      if (sb.length() > 0) {
-        sb.append("&");
+    if (sb.length() > 0) {
+      sb.append('&');
+    }
+    sb.append(key).append('=');
+    // numbers and booleans never need encoding
+    if (value instanceof Integer) {
+      sb.append(((Integer) value).intValue());
+    } else if (value instanceof Long) {
+      sb.append(((Long) value).longValue());
+    } else if (value instanceof Boolean) {
+      sb.append(((Boolean) value).booleanValue());
+    } else {
+      encode(value instanceof CharSequence ? (CharSequence) value : value.toString(), sb);
+    }
+  }
+
+  /**
+   * Encodes a value into a buffer the way {@link java.net.URLEncoder} does with UTF-8, without
+   * creating intermediate strings or byte arrays.
+   *
+   * @param value the value to encode
+   * @param sb    the buffer to append the encoded value to
+   */
+  static void encode(CharSequence value, StringBuilder sb) {
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '.' || c == '-' || c == '*' || c == '_') {
+        sb.append(c);
+      } else if (c == ' ') {
+        sb.append('+');
+      } else if (c < 0x80) {
+        percent(sb, c);
+      } else if (c < 0x800) {
+        percent(sb, 0xC0 | (c >> 6));
+        percent(sb, 0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          percent(sb, 0xF0 | (codePoint >> 18));
+          percent(sb, 0x80 | ((codePoint >> 12) & 0x3F));
+          percent(sb, 0x80 | ((codePoint >> 6) & 0x3F));
+          percent(sb, 0x80 | (codePoint & 0x3F));
+        } else {
+          percent(sb, '?'); // unpaired surrogates cannot be encoded
+        }
+      } else {
+        percent(sb, 0xE0 | (c >> 12));
+        percent(sb, 0x80 | ((c >> 6) & 0x3F));
+        percent(sb, 0x80 | (c & 0x3F));
       }
-      sb.append(key)
-          .append("=")
-          .append(URLEncoder.encode(value.toString(), "UTF-8"));
-    } catch (UnsupportedEncodingException x) {
-      throw new IllegalStateException(x); // this should never happen
     }
   }
 
+  private static void percent(StringBuilder sb, int b) {
+    sb.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+  }
+
   /**
    * Returns the query string to be used with an HTTP GET request.
    *
    * @return the query string
    */
   public String toQueryString() {
-    StringBuilder sb = new StringBuilder();
-    for (Map.Entry<String, Object> entry : params.entrySet()) {
-      Object value = entry.getValue();
-      String key = entry.getKey();
-      if (value instanceof Object[]) {
-        for (Object ovalue : ((Object[]) value)) {
-          append(sb, key, ovalue);
-        }
-      } else if (value instanceof Collection) {
-        for (Object ovalue : ((Collection) value)) {
-          append(sb, key, ovalue);
+    StringBuilder sb = BUFFER.get();
+    if (sb.length() > 0) {
+      sb = new StringBuilder(); // the buffer is in use further up the stack
+    }
+    try {
+      for (Map.Entry<String, Object> entry : params.entrySet()) {
+        Object value = entry.getValue();
+        String key = entry.getKey();
+        if (value instanceof Object[]) {
+          for (Object ovalue : ((Object[]) value)) {
+            append(sb, key, ovalue);
+          }
+        } else if (value instanceof Collection) {
+          for (Object ovalue : ((Collection) value)) {
+            append(sb, key, ovalue);
+          }
+        } else {
+          append(sb, key, value);
         }
-      } else {
-        append(sb, key, value);
+      }
+      return sb.toString();
+    } finally {
+      sb.setLength(0);
+      if (sb.capacity() > MAX_BUFFER_SIZE) {
+        BUFFER.remove(); // do not hold on to the buffer of an unusually long query string
       }
     }
-    return sb.toString();
   }
 
 }
@@ -0,0 +1,290 @@
+package io.truemark.http;
+
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limiting the rate of requests sent with one API key. A single instance is shared
+ * by all clients using the same key, as New Relic applies its quotas per account and key.
+ *
+ * <p>The limiter learns from the responses it is told about. A 429 response pauses all requests
+ * for the time given by its {@code Retry-After} header and halves the request rate, which then
+ * grows back towards the configured rate with every successful response. A response reporting
+ * that no requests remain in the current window through {@code X-RateLimit-Remaining} pauses
+ * requests until the window is reset, as given by {@code X-RateLimit-Reset}. Without a configured
+ * rate requests are not limited until the first 429 response. The rate measured up to then, or
+ * {@link #DEFAULT_THROTTLED_RATE} if too few requests were sent, becomes the maximum rate and is
+ * halved like a configured one.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class RateLimiter implements Serializable {
+
+  private static final long serialVersionUID = -3183410259374851102L;
+  public static final String RETRY_AFTER = "Retry-After";
+  public static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+  public static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+  public static final int DEFAULT_MAX_RETRIES = 3;
+  /**
+   * The lowest maximum rate learned from a 429 response when no rate was configured, in requests
+   * per second.
+   */
+  public static final double DEFAULT_THROTTLED_RATE = 1;
+  static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+  // X-RateLimit-Reset values above this are epoch seconds rather than seconds to wait
+  private static final long EPOCH_SECONDS = 1_000_000_000L;
+  // number of successful responses after which a halved rate is fully restored
+  private static final int RECOVERY_RESPONSES = 20;
+  // period over which the request rate is measured while no rate is set
+  private static final long MEASURE_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private double maxRate = Double.POSITIVE_INFINITY;
+  private double rate = Double.POSITIVE_INFINITY;
+  private double burst = 1;
+  private int maxRetries = DEFAULT_MAX_RETRIES;
+  private transient boolean started;
+  private transient double storedPermits;
+  private transient long nextFreeNanos;
+  private transient long measureStartNanos;
+  private transient int measuredPermits;
+  private transient double measuredRate;
+
+  /**
+   * Creates a limiter which does not restrict the request rate until New Relic rejects a request
+   * for exceeding it.
+   */
+  public RateLimiter() {
+  }
+
+  /**
+   * Creates a limiter with the given rate.
+   *
+   * @param requestsPerSecond the maximum sustained number of requests per second
+   * @param burst             the number of requests which may be sent at once after being idle
+   */
+  public RateLimiter(double requestsPerSecond, int burst) {
+    setRate(requestsPerSecond, burst);
+  }
+
+  /**
+   * Sets the maximum request rate. The limiter may send at a lower rate after being throttled.
+   *
+   * @param requestsPerSecond the maximum sustained number of requests per second, or
+   *                          {@link Double#POSITIVE_INFINITY} to learn the rate from the first
+   *                          429 response
+   * @param burst             the number of requests which may be sent at once after being idle,
+   *                          at least 1
+   */
+  public synchronized void setRate(double requestsPerSecond, int burst) {
+    if (!(requestsPerSecond > 0) || burst < 1) {
+      throw new IllegalArgumentException("The rate must be positive and the burst at least 1");
+    }
+    this.maxRate = requestsPerSecond;
+    this.rate = requestsPerSecond;
+    this.burst = burst;
+    this.storedPermits = Math.min(storedPermits, burst);
+  }
+
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  public synchronized double getMaxRate() {
+    return maxRate;
+  }
+
+  /**
+   * Sets how often a request rejected with a 429 response is sent again.
+   *
+   * @param maxRetries the number of retries, 0 to fail on the first 429 response
+   */
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Takes a permit, waiting until one is available.
+   *
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  public void acquire() throws InterruptedIOException {
+    long wait = reserve();
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException x) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ix = new InterruptedIOException("Interrupted waiting for a permit");
+        ix.initCause(x);
+        throw ix;
+      }
+    }
+  }
+
+  /**
+   * Takes a permit without waiting for it. The caller must delay its request by the returned
+   * time, which allows waiting without blocking a thread.
+   *
+   * @return the time to wait in nanoseconds before sending the request
+   */
+  public synchronized long reserve() {
+    long now = nanoTime();
+    sync(now);
+    long wait = Math.max(0, nextFreeNanos - now);
+    if (Double.isInfinite(maxRate)) {
+      measure(now);
+    }
+    double stored = Math.min(1, storedPermits);
+    storedPermits -= stored;
+    nextFreeNanos += (long) ((1 - stored) * intervalNanos());
+    return wait;
+  }
+
+  /**
+   * Learns from the headers of a successful response.
+   *
+   * @param headers the response headers
+   */
+  public void onResponse(Map<String, List<String>> headers) {
+    long pause = getResetMillis(headers);
+    synchronized (this) {
+      if (pause > 0) {
+        pause(TimeUnit.MILLISECONDS.toNanos(pause));
+      }
+      if (rate < maxRate) {
+        rate = Math.min(maxRate, rate + maxRate / RECOVERY_RESPONSES);
+      }
+    }
+  }
+
+  /**
+   * Learns from a request rejected because the rate limit was exceeded. Further requests are
+   * paused and the request rate is halved. Without a configured rate the measured rate of the
+   * requests sent so far becomes the maximum rate first.
+   *
+   * @param retryAfterMillis the time New Relic asked to wait, a default is used if not positive
+   */
+  public synchronized void onThrottled(long retryAfterMillis) {
+    pause(TimeUnit.MILLISECONDS.toNanos(
+        retryAfterMillis > 0 ? retryAfterMillis : DEFAULT_RETRY_AFTER_MILLIS));
+    if (Double.isInfinite(maxRate)) {
+      maxRate = Math.max(DEFAULT_THROTTLED_RATE, getMeasuredRate(nanoTime()));
+      rate = maxRate;
+    }
+    rate = Math.max(maxRate / RECOVERY_RESPONSES, rate / 2);
+  }
+
+  /**
+   * Returns the time to wait before sending another request, as reported by the headers of a
+   * 429 response.
+   *
+   * @param headers the response headers
+   * @return the delay in milliseconds or -1 if the headers do not give one
+   */
+  public static long getRetryAfterMillis(Map<String, List<String>> headers) {
+    String retryAfter = RestResponse.getHeader(headers, RETRY_AFTER);
+    if (retryAfter != null) {
+      try {
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+      } catch (NumberFormatException x) {
+        try {
+          ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(),
+              DateTimeFormatter.RFC_1123_DATE_TIME);
+          return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException dx) { /* ignore the header */ }
+      }
+    }
+    long reset = getResetMillis(headers);
+    return reset > 0 ? reset : -1;
+  }
+
+  /**
+   * Returns the time until the rate limit window is reset if no requests remain in it.
+   */
+  private static long getResetMillis(Map<String, List<String>> headers) {
+    String remaining = RestResponse.getHeader(headers, RATE_LIMIT_REMAINING);
+    String reset = remaining != null ? RestResponse.getHeader(headers, RATE_LIMIT_RESET) : null;
+    if (reset == null) {
+      return -1;
+    }
+    try {
+      if (Long.parseLong(remaining.trim()) > 0) {
+        return -1;
+      }
+      long seconds = Long.parseLong(reset.trim());
+      if (seconds > EPOCH_SECONDS) {
+        return Math.max(0, TimeUnit.SECONDS.toMillis(seconds) - System.currentTimeMillis());
+      }
+      return TimeUnit.SECONDS.toMillis(seconds);
+    } catch (NumberFormatException x) {
+      return -1;
+    }
+  }
+
+  private void pause(long nanos) {
+    long now = nanoTime();
+    sync(now);
+    nextFreeNanos = Math.max(nextFreeNanos, now + nanos);
+    storedPermits = 0;
+  }
+
+  /**
+   * Counts a permit towards the measured rate, starting a new period once the current one is
+   * over.
+   */
+  private void measure(long now) {
+    long elapsed = now - measureStartNanos;
+    if (elapsed >= MEASURE_NANOS) {
+      measuredRate = measuredPermits * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      measureStartNanos = now;
+      measuredPermits = 0;
+    }
+    measuredPermits++;
+  }
+
+  /**
+   * Returns the higher of the rates of the last full period and of the current one, which counts
+   * as lasting at least a second so that a few requests sent at once do not make a high rate.
+   */
+  private double getMeasuredRate(long now) {
+    long elapsed = Math.max(now - measureStartNanos, TimeUnit.SECONDS.toNanos(1));
+    return Math.max(measuredRate,
+        measuredPermits * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+  }
+
+  private void sync(long now) {
+    if (!started) {
+      started = true;
+      storedPermits = burst;
+      nextFreeNanos = now;
+      measureStartNanos = now;
+    } else if (now > nextFreeNanos) {
+      double interval = intervalNanos();
+      storedPermits = interval > 0
+          ? Math.min(burst, storedPermits + (now - nextFreeNanos) / interval) : burst;
+      nextFreeNanos = now;
+    }
+  }
+
+  private double intervalNanos() {
+    return TimeUnit.SECONDS.toNanos(1) / rate;
+  }
+
+  /**
+   * Returns the current time, overridden in tests.
+   *
+   * @return the current value of the clock in nanoseconds
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+}
@@ -0,0 +1,117 @@
+package io.truemark.http;
+
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds pre-built ObjectReader and ObjectWriter instances of an ObjectMapper. Readers and writers
+ * are immutable and resolve their root (de)serializer once, so reusing them avoids building a new
+ * reader and looking up the type on every call.
+ *
+ * <p>The instances capture the configuration of the ObjectMapper at the time they are built,
+ * changes to the ObjectMapper made afterwards are not seen by the registry.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j
+public class ReaderWriterRegistry {
+
+  private final ObjectMapper objectMapper;
+  private final ObjectReader reader;
+  private final Map<Object, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Map<Class<?>, ObjectReader>> parametricReaders =
+      new ConcurrentHashMap<>();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new registry.
+   *
+   * @param objectMapper     the mapper to build readers and writers with
+   * @param injectableValues the values to inject while reading
+   */
+  public ReaderWriterRegistry(ObjectMapper objectMapper, InjectableValues injectableValues) {
+    this.objectMapper = objectMapper;
+    this.reader = objectMapper.reader().with(injectableValues);
+  }
+
+  /**
+   * Returns the reader for a type.
+   *
+   * @param clazz the type to read
+   * @return the reader
+   */
+  public ObjectReader reader(Class<?> clazz) {
+    return readers.computeIfAbsent(clazz, key -> reader.forType(clazz));
+  }
+
+  /**
+   * Returns the reader for a type.
+   *
+   * @param type the type to read
+   * @return the reader
+   */
+  public ObjectReader reader(JavaType type) {
+    return readers.computeIfAbsent(type, key -> reader.forType(type));
+  }
+
+  /**
+   * Returns the reader for a parametric type such as a collection.
+   *
+   * @param clazz          the raw type to read
+   * @param parameterClass the type parameter
+   * @return the reader
+   */
+  public ObjectReader reader(Class<?> clazz, Class<?> parameterClass) {
+    return parametricReaders.computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(parameterClass, key -> reader(
+            objectMapper.getTypeFactory().constructParametricType(clazz, parameterClass)));
+  }
+
+  /**
+   * Returns a reader which reads into the given object.
+   *
+   * @param o the object to update
+   * @return the reader
+   */
+  public ObjectReader updater(Object o) {
+    return reader(o.getClass()).withValueToUpdate(o);
+  }
+
+  /**
+   * Returns the writer for a type.
+   *
+   * @param clazz the type to write
+   * @return the writer
+   */
+  public ObjectWriter writer(Class<?> clazz) {
+    return writers.computeIfAbsent(clazz, key -> objectMapper.writerFor(clazz));
+  }
+
+  /**
+   * Builds the readers and writers of the given types ahead of their first use. Building them
+   * resolves and caches the root (de)serializers, so the first request does not pay for the
+   * introspection of the model. A type which cannot be handled by the mapper is logged and
+   * skipped.
+   *
+   * @param types the types to prepare
+   * @return the registry for method chaining
+   */
+  public ReaderWriterRegistry warm(Class<?>... types) {
+    for (Class<?> type : types) {
+      try {
+        reader(type);
+        writer(type);
+      } catch (RuntimeException x) {
+        log.warn("Unable to prepare JSON mapping for " + type.getName() + ": " + x.getMessage());
+      }
+    }
+    return this;
+  }
+}
@@ -0,0 +1,210 @@
+package io.truemark.http;
+
+import lombok.Getter;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The phases and sizes of a single HTTP request, as reported to a {@link MetricsListener}. The
+ * times are measured from the moment the request is about to be sent, after any wait for the
+ * rate limiter.
+ *
+ * @author Abhijeet Kale
+ */
+@Getter
+public class RequestEvent {
+
+  private final HttpMethod method;
+  private final String endpoint;
+  private final long startNanos;
+  private int status;
+  private long connectNanos;
+  private long firstByteNanos;
+  private long totalNanos;
+  private long requestBytes;
+  private long responseBytes;
+  private IOException error;
+
+  /**
+   * Creates a new event for a request being sent.
+   *
+   * @param method   the HTTP method
+   * @param endpoint the endpoint template, such as {@code alerts_nrql_conditions/{id}}
+   */
+  public RequestEvent(HttpMethod method, String endpoint) {
+    this.method = method;
+    this.endpoint = endpoint;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Returns the endpoint template of a URL: its path without the API version, the .json
+   * extension and the query, and with the numeric ids and UUIDs replaced by {@code {id}}. For
+   * instance {@code https://api.newrelic.com/v2/alerts_nrql_conditions/123.json} gives
+   * {@code alerts_nrql_conditions/{id}}.
+   *
+   * @param url the absolute URL of the request
+   * @return the endpoint template
+   */
+  public static String getEndpoint(String url) {
+    int scheme = url.indexOf("://");
+    int from = url.indexOf('/', scheme >= 0 ? scheme + 3 : 0);
+    if (from < 0) {
+      return "";
+    }
+    int to = url.length();
+    for (int i = from; i < to; i++) {
+      char c = url.charAt(i);
+      if (c == '?' || c == '#') {
+        to = i;
+      }
+    }
+    StringBuilder sb = new StringBuilder(to - from);
+    boolean first = true;
+    for (int start = from + 1; start <= to; ) {
+      int end = url.indexOf('/', start);
+      if (end < 0 || end > to) {
+        end = to;
+      }
+      String segment = url.substring(start, end);
+      if (segment.endsWith(".json")) {
+        segment = segment.substring(0, segment.length() - 5);
+      }
+      if (!segment.isEmpty() && !(first && isVersion(segment))) {
+        if (sb.length() > 0) {
+          sb.append('/');
+        }
+        sb.append(isId(segment) ? "{id}" : segment);
+      }
+      first = false;
+      start = end + 1;
+    }
+    return sb.toString();
+  }
+
+  private static boolean isVersion(String segment) {
+    return segment.length() > 1 && segment.charAt(0) == 'v' && isDigits(segment, 1);
+  }
+
+  private static boolean isId(String segment) {
+    if (isDigits(segment, 0)) {
+      return true;
+    }
+    if (segment.length() != 36) {
+      return false;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (i == 8 || i == 13 || i == 18 || i == 23 ? c != '-' : Character.digit(c, 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigits(String segment, int from) {
+    for (int i = from; i < segment.length(); i++) {
+      if (segment.charAt(i) < '0' || segment.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return segment.length() > from;
+  }
+
+  /**
+   * Tells whether the request failed, either without a response or with an error status.
+   *
+   * @return true if the request failed
+   */
+  public boolean isFailed() {
+    return status == 0 || status >= 400;
+  }
+
+  void connected() {
+    connectNanos = System.nanoTime() - startNanos;
+  }
+
+  void responded(int status) {
+    if (firstByteNanos == 0) {
+      firstByteNanos = System.nanoTime() - startNanos;
+    }
+    this.status = status;
+  }
+
+  void failed(IOException error) {
+    this.error = error;
+  }
+
+  void requestBytes(long requestBytes) {
+    this.requestBytes = requestBytes;
+  }
+
+  void responseBytes(long responseBytes) {
+    this.responseBytes = responseBytes;
+  }
+
+  RequestEvent finish() {
+    totalNanos = System.nanoTime() - startNanos;
+    return this;
+  }
+
+  /**
+   * Wraps the request stream so the bytes written to it are counted.
+   *
+   * @param out the request stream
+   * @return the stream to write to
+   */
+  OutputStream count(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+        requestBytes++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        requestBytes += len;
+      }
+    };
+  }
+
+  /**
+   * Wraps the response stream so the bytes read from it are counted.
+   *
+   * @param in the response stream
+   * @return the stream to read from
+   */
+  InputStream count(InputStream in) {
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+          responseBytes++;
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+          responseBytes += read;
+        }
+        return read;
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + endpoint + " " + status + " in " + totalNanos / 1000 + " us, "
+        + requestBytes + " bytes sent, " + responseBytes + " bytes received";
+  }
+}
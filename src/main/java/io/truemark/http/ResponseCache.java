@@ -0,0 +1,282 @@
+package io.truemark.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of GET responses, keyed by API key and URL as built by
+ * {@link #key(String, String)}, so one cache may be shared by clients using different keys
+ * without serving the response read with one key to another. The raw response bytes are stored
+ * rather than the objects read from them, so every caller gets its own copy to modify.
+ *
+ * <p>A response younger than the time to live is served without contacting the server. An older
+ * one is revalidated with {@code If-None-Match} or {@code If-Modified-Since} when the server sent
+ * an {@code ETag} or {@code Last-Modified} header, and is otherwise requested again. The least
+ * recently used responses are evicted once the total size of the cached bodies exceeds the
+ * limit.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class ResponseCache {
+
+  private final long ttlNanos;
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * A cached response.
+   */
+  public static class Entry {
+    private final byte[] body;
+    private final Map<String, List<String>> headers;
+    private final String etag;
+    private final String lastModified;
+    private volatile long storedNanos;
+
+    Entry(byte[] body, Map<String, List<String>> headers) {
+      this.body = body;
+      this.headers = headers;
+      this.etag = RestResponse.getHeader(headers, "ETag");
+      this.lastModified = RestResponse.getHeader(headers, "Last-Modified");
+      this.storedNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns a stream over the cached body.
+     *
+     * @return the body
+     */
+    public InputStream body() {
+      return new ByteArrayInputStream(body);
+    }
+
+    public Map<String, List<String>> getHeaders() {
+      return headers;
+    }
+
+    /**
+     * Returns the headers making a request conditional on this response being outdated.
+     *
+     * @return the headers, empty if the server sent no validator
+     */
+    public Map<String, String> getConditions() {
+      Map<String, String> conditions = new LinkedHashMap<>();
+      if (etag != null) {
+        conditions.put("If-None-Match", etag);
+      }
+      if (lastModified != null) {
+        conditions.put("If-Modified-Since", lastModified);
+      }
+      return conditions;
+    }
+  }
+
+  /**
+   * Creates a new cache.
+   *
+   * @param ttlMillis the time a response is served without revalidation
+   * @param maxBytes  the maximum total size of the cached bodies
+   */
+  public ResponseCache(long ttlMillis, long maxBytes) {
+    if (ttlMillis < 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("The time to live must not be negative and the size "
+          + "must be positive");
+    }
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the key of the response to a GET of a URL with an API key.
+   *
+   * @param apiKey the API key the request is sent with
+   * @param url    the URL requested
+   * @return the key to cache the response under
+   */
+  public static String key(String apiKey, String url) {
+    return apiKey + " " + url;
+  }
+
+  /**
+   * Returns the cached response for a URL if it is within its time to live.
+   *
+   * @param url the key of the URL requested
+   * @return the response or null if none is cached or it must be revalidated
+   */
+  public Entry getFresh(String url) {
+    Entry entry = get(url);
+    if (entry != null && System.nanoTime() - entry.storedNanos <= ttlNanos) {
+      hits.incrementAndGet();
+      return entry;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the cached response for a URL, whether it must be revalidated or not.
+   *
+   * @param url the key of the URL requested
+   * @return the response or null if none is cached
+   */
+  public synchronized Entry get(String url) {
+    return entries.get(url);
+  }
+
+  /**
+   * Stores a response.
+   *
+   * @param url     the key of the URL requested
+   * @param body    the response body
+   * @param headers the response headers
+   */
+  public void put(String url, byte[] body, Map<String, List<String>> headers) {
+    misses.incrementAndGet();
+    String cacheControl = RestResponse.getHeader(headers, "Cache-Control");
+    if (body.length > maxBytes
+        || (cacheControl != null && cacheControl.toLowerCase().contains("no-store"))) {
+      remove(url);
+      return;
+    }
+    Entry entry = new Entry(body, headers);
+    synchronized (this) {
+      Entry previous = entries.put(url, entry);
+      bytes += body.length - (previous != null ? previous.body.length : 0);
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (bytes > maxBytes && eldest.hasNext()) {
+        bytes -= eldest.next().body.length;
+        eldest.remove();
+      }
+    }
+  }
+
+  /**
+   * Records that the server confirmed a cached response is still current, restarting its time to
+   * live.
+   *
+   * @param entry the response revalidated
+   */
+  public void revalidated(Entry entry) {
+    revalidations.incrementAndGet();
+    entry.storedNanos = System.nanoTime();
+  }
+
+  /**
+   * Removes the cached response of a URL.
+   *
+   * @param url the key of the URL
+   */
+  public synchronized void remove(String url) {
+    Entry entry = entries.remove(url);
+    if (entry != null) {
+      bytes -= entry.body.length;
+    }
+  }
+
+  /**
+   * Removes the cached responses of all URLs starting with a prefix, whatever API key they were
+   * read with, as a write through one key changes what every key reads.
+   *
+   * @param prefix the prefix of the URLs to remove
+   */
+  public synchronized void invalidate(String prefix) {
+    Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<String, Entry> entry = i.next();
+      String key = entry.getKey();
+      // URLs hold no spaces, the URL is what follows the last one
+      if (key.startsWith(prefix, key.lastIndexOf(' ') + 1)) {
+        bytes -= entry.getValue().body.length;
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached responses.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of requests served from the cache without contacting the server.
+   *
+   * @return the number of hits
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of requests answered by the server with 304 Not Modified.
+   *
+   * @return the number of revalidations
+   */
+  public long getRevalidationCount() {
+    return revalidations.get();
+  }
+
+  /**
+   * Returns the number of responses downloaded in full.
+   *
+   * @return the number of misses
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the prefix of the cached URLs a write to a URL may affect. The query and the
+   * extension are dropped, as is a trailing numeric or UUID identifier, so a write to
+   * {@code /v2/alerts_conditions/123.json} affects {@code /v2/alerts_conditions.json?policy_id=1}
+   * and a write to {@code /monitors/<uuid>} affects {@code /monitors?offset=0&limit=20}.
+   *
+   * @param url the URL written to
+   * @return the prefix of the URLs to invalidate
+   */
+  public static String getCollection(String url) {
+    int query = url.indexOf('?');
+    String path = query >= 0 ? url.substring(0, query) : url;
+    int slash = path.lastIndexOf('/');
+    int dot = path.lastIndexOf('.');
+    if (dot > slash) {
+      path = path.substring(0, dot);
+    }
+    if (slash >= 0 && isId(path.substring(slash + 1))) {
+      path = path.substring(0, slash);
+    }
+    return path;
+  }
+
+  private static boolean isId(String segment) {
+    boolean digit = false;
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (Character.isDigit(c)) {
+        digit = true;
+      } else if (c != '-' && Character.digit(c, 16) < 0) {
+        return false;
+      }
+    }
+    return digit;
+  }
+}
@@ -0,0 +1,24 @@
+package io.truemark.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Parses a response body token by token. A parser lets a caller extract the few fields it needs
+ * straight from the response stream without materializing the whole response.
+ *
+ * @param <T> the type of the result
+ * @author Abhijeet Kale
+ */
+public interface ResponseParser<T> {
+
+  /**
+   * Parses a response body. The parser is positioned before the first token.
+   *
+   * @param parser the parser over the response body
+   * @return the result
+   * @throws IOException if an I/O error occurs or the body is malformed
+   */
+  T parse(JsonParser parser) throws IOException;
+}
@@ -1,7 +1,11 @@
 package io.truemark.http;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+
 import java.io.IOException;
 import java.io.Serializable;
+import java.net.HttpURLConnection;
 
 /**
  * Contract for all HttpClient implementations.
@@ -32,6 +36,47 @@ public interface RestClient extends Serializable {
    */
   <T> T get(String uri, Class<T> clazz) throws IOException;
 
+  /**
+   * Sends an HTTP GET request and loads the response into a new instance of the provided type.
+   * Unlike {@link #get(String, Class)} the status and headers of the response are returned along
+   * with the body, which is needed to follow pagination links.
+   *
+   * <p>The default implementation adapts {@link #get(String, Class)} for implementations written
+   * before this method was added. It returns no headers, so a listing paged through Link headers
+   * only sees its first page. Implementations should override it.</p>
+   *
+   * @param uri   the URI to GET
+   * @param clazz the type of instance to create
+   * @param <T>   the type of the instance
+   * @return the response holding the newly created instance
+   * @throws IOException if an error occurs
+   */
+  default <T> RestResponse<T> getResponse(String uri, Class<T> clazz) throws IOException {
+    return new RestResponse<>(HttpURLConnection.HTTP_OK, null, get(uri, clazz));
+  }
+
+  /**
+   * Sends an HTTP GET request and parses the response body with the given parser instead of
+   * binding it to a type.
+   *
+   * <p>The default implementation reads the body as a tree with {@link #get(String, Class)} and
+   * parses the tree, for implementations written before this method was added. It returns no
+   * headers and gives up the streaming. Implementations should override it.</p>
+   *
+   * @param uri    the URI to GET
+   * @param parser parses the response body
+   * @param <T>    the type of the result
+   * @return the response status and headers along with the parsed result
+   * @throws IOException if an I/O error occurs
+   */
+  default <T> RestResponse<T> getResponse(String uri, ResponseParser<T> parser)
+      throws IOException {
+    JsonNode body = get(uri, JsonNode.class);
+    try (JsonParser jsonParser = body.traverse()) {
+      return new RestResponse<>(HttpURLConnection.HTTP_OK, null, parser.parse(jsonParser));
+    }
+  }
+
   /**
    * Sends an HTTP GET request and loads the response into a new instance of the provided type.
    * This method is specifically used to load instances of object which are using generics. To get
@@ -0,0 +1,39 @@
+package io.truemark.http;
+
+/**
+ * Creates the {@link RestClient} used for a New Relic endpoint.
+ *
+ * @author Abhijeet Kale
+ */
+public interface RestClientFactory {
+
+  /**
+   * Creates a new client.
+   *
+   * @param url    the base url of the endpoint
+   * @param apiKey the api key to authenticate with
+   * @return the client
+   */
+  RestClient create(String url, String apiKey);
+
+  /**
+   * Returns a factory creating {@link URLConnectionRestClient} instances. This is the default.
+   *
+   * @return the factory
+   */
+  static RestClientFactory urlConnection() {
+    return URLConnectionRestClient::new;
+  }
+
+  /**
+   * Returns a factory creating clients on the java.net.http.HttpClient of Java 11. All clients
+   * created by the returned factory share one HttpClient, so requests to the same host are
+   * multiplexed over a single HTTP/2 connection.
+   *
+   * @return the factory
+   * @throws IllegalStateException if the running JVM is older than Java 11
+   */
+  static RestClientFactory http2() {
+    return new HttpClientRestClientFactory();
+  }
+}
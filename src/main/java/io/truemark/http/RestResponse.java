@@ -0,0 +1,70 @@
+package io.truemark.http;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A parsed response body along with the status and headers it was received with.
+ *
+ * @param <T> the type of the body
+ * @author Abhijeet Kale
+ */
+@Getter
+public class RestResponse<T> {
+
+  private final int status;
+  private final Map<String, List<String>> headers;
+  private final T body;
+
+  /**
+   * Creates a new response.
+   *
+   * @param status  the HTTP status code
+   * @param headers the response headers, null keys are ignored
+   * @param body    the parsed body
+   */
+  public RestResponse(int status, Map<String, List<String>> headers, T body) {
+    this.status = status;
+    this.body = body;
+    Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    if (headers != null) {
+      for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+        if (entry.getKey() != null) {
+          copy.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    this.headers = Collections.unmodifiableMap(copy);
+  }
+
+  /**
+   * Returns the first value of a header. Header names are case insensitive.
+   *
+   * @param name the header name
+   * @return the header value or null if the header is not present
+   */
+  public String getHeader(String name) {
+    List<String> values = headers.get(name);
+    return values != null && !values.isEmpty() ? values.get(0) : null;
+  }
+
+  /**
+   * Returns the first value of a header from a header map whose names may be in any case.
+   *
+   * @param headers the headers
+   * @param name    the header name
+   * @return the header value or null if the header is not present
+   */
+  public static String getHeader(Map<String, List<String>> headers, String name) {
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+}
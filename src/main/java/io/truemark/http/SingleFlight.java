@@ -0,0 +1,114 @@
+package io.truemark.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical calls made at the same time. The first caller for a key runs the call,
+ * callers arriving with the same key while it is in flight wait for it and get its result, or
+ * its exception, instead of running the call again. Once the call completed the next caller for
+ * the key runs it anew, nothing is cached.
+ *
+ * <p>Used to share one HTTP exchange between concurrent GETs of the same URL with the same API
+ * key, such as several threads listing the policies of an account at once.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class SingleFlight {
+
+  private final ConcurrentMap<String, CompletableFuture<Object>> inFlight =
+      new ConcurrentHashMap<>();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong shared = new AtomicLong();
+
+  /**
+   * A call whose result may be shared.
+   *
+   * @param <T> the type of the result
+   */
+  public interface Call<T> {
+
+    /**
+     * Runs the call.
+     *
+     * @return the result, which is handed to every caller sharing the call
+     * @throws IOException if an I/O error occurs
+     */
+    T call() throws IOException;
+  }
+
+  /**
+   * Runs a call, or waits for the identical call in flight.
+   *
+   * @param key  identifies the call, calls with equal keys must have interchangeable results
+   * @param call the call to run if none is in flight for the key
+   * @param <T>  the type of the result
+   * @return the result of the call
+   * @throws IOException if the call failed
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String key, Call<T> call) throws IOException {
+    CompletableFuture<Object> pending = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(key, pending);
+    if (existing != null) {
+      shared.incrementAndGet();
+      return (T) await(existing);
+    }
+    calls.incrementAndGet();
+    try {
+      T result = call.call();
+      pending.complete(result);
+      return result;
+    } catch (IOException | RuntimeException | Error x) {
+      pending.completeExceptionally(x);
+      throw x;
+    } finally {
+      inFlight.remove(key, pending);
+    }
+  }
+
+  private static Object await(CompletableFuture<Object> pending) throws IOException {
+    try {
+      return pending.get();
+    } catch (InterruptedException x) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ix = new InterruptedIOException("Interrupted waiting for a shared "
+          + "request");
+      ix.initCause(x);
+      throw ix;
+    } catch (ExecutionException x) {
+      Throwable cause = x.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Returns the number of calls which were run.
+   *
+   * @return the number of calls run
+   */
+  public long getCallCount() {
+    return calls.get();
+  }
+
+  /**
+   * Returns the number of callers who got the result of a call run for another caller.
+   *
+   * @return the number of shared results
+   */
+  public long getSharedCount() {
+    return shared.get();
+  }
+}
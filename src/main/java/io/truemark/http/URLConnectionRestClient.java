@@ -1,20 +1,20 @@
 package io.truemark.http;
 
+import com.fasterxml.jackson.core.JsonParser.Feature;
 import io.truemark.Version;
-import io.truemark.error.NewRelicError;
-import io.truemark.exception.NewRelicAuthenticationFailedException;
-import io.truemark.exception.NewRelicBadRequestException;
-import io.truemark.exception.NewRelicException;
-import io.truemark.exception.NewRelicForbiddenException;
-import io.truemark.exception.NewRelicNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
+import java.net.SocketException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -33,8 +33,15 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
   //TODO add serial version id
   private static final Charset UTF8 = Charset.forName("UTF-8");
   public static final String USER_AGENT = "NewRelic Java Client " + Version.VERSION;
+  private static final String MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
   protected String url;
   protected String apiKey;
+  protected boolean pooled;
+  protected boolean staleConnectionCheck = true;
+  protected transient Hedging hedging;
+  protected transient ResponseCache cache;
+  protected transient MetricsListener metricsListener;
+  protected transient SingleFlight singleFlight;
 
   /**
    * Creates a new RestClient client.
@@ -44,37 +51,119 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
   public URLConnectionRestClient(String url, String apiKey) {
     this.url = url;
     this.apiKey = apiKey;
+    // The streams are closed in cleanup, after any unread bytes have been drained
+    objectMapper.disable(Feature.AUTO_CLOSE_SOURCE);
   }
 
-  protected void logRequest(HttpURLConnection conn, String body) {
-    StringBuilder sb = new StringBuilder("\nHTTP Request:\n")
-        .append("  URL: ").append(conn.getURL()).append("\n")
-        .append("  Request Method: ").append(conn.getRequestMethod()).append("\n");
-    Map<String, List<String>> headers = conn.getRequestProperties();
-    sb.append("  Request Headers:\n");
-    for (String key : headers.keySet()) {
-      if (key != null) {
-        sb.append("    ").append(key).append(": ")
-            .append(headers.get(key)).append("\n");
-      }
-    }
-    sb.append("  Request Body:\n").append(body);
-    log.debug(sb.toString());
-  }
-
-  protected void logResponse(HttpURLConnection conn, String body) throws IOException {
-    StringBuilder sb = new StringBuilder("\nHTTP Response:\n")
-        .append("  Response Code: ").append(conn.getResponseCode()).append("\n");
-    Map<String, List<String>> headers = conn.getHeaderFields();
-    sb.append("  Response Headers:\n");
-    for (String key : headers.keySet()) {
-      if (key != null) {
-        sb.append("    ").append(key).append(": ")
-            .append(headers.get(key)).append("\n");
-      }
+  /**
+   * Enables or disables pooled mode. In pooled mode responses are fully drained and connections
+   * are left open for the JDK keep-alive cache to reuse, saving a TCP and TLS handshake on every
+   * request to the same host. Pooled mode is disabled by default.
+   *
+   * @param pooled true to reuse connections
+   */
+  public void setPooled(boolean pooled) {
+    this.pooled = pooled;
+  }
+
+  public boolean isPooled() {
+    return pooled;
+  }
+
+  /**
+   * Enables or disables the stale connection check used in pooled mode. When enabled, an
+   * idempotent request which fails because its pooled connection was closed by the server is
+   * sent once more on a new connection. Enabled by default.
+   *
+   * @param staleConnectionCheck true to retry requests failing on stale connections
+   */
+  public void setStaleConnectionCheck(boolean staleConnectionCheck) {
+    this.staleConnectionCheck = staleConnectionCheck;
+  }
+
+  public boolean isStaleConnectionCheck() {
+    return staleConnectionCheck;
+  }
+
+  /**
+   * Enables hedging of GET requests. A GET which is slower than a percentile of the recent
+   * latency is sent a second time and the first response is used, the slower connection is
+   * closed. The responses of hedged requests are read in full before they are parsed. Hedging
+   * is disabled by default and is not kept when the client is serialized.
+   *
+   * @param hedging the hedging policy or null to disable hedging
+   */
+  public void setHedging(Hedging hedging) {
+    this.hedging = hedging;
+  }
+
+  public Hedging getHedging() {
+    return hedging;
+  }
+
+  /**
+   * Enables caching of GET responses. Cached responses are served until their time to live has
+   * passed and are then revalidated with a conditional request. Any other request sent by this
+   * client invalidates the cached responses of the collection it writes to. Responses are cached
+   * under the API key of this client, so a cache may be shared by clients using different keys.
+   * Caching is disabled by default and is not kept when the client is serialized.
+   *
+   * @param cache the cache or null to disable caching
+   */
+  public void setResponseCache(ResponseCache cache) {
+    this.cache = cache;
+  }
+
+  public ResponseCache getResponseCache() {
+    return cache;
+  }
+
+  /**
+   * Sets the listener told about the timings and sizes of every request sent. No metrics are
+   * collected by default and the listener is not kept when the client is serialized.
+   *
+   * @param metricsListener the listener or null to collect no metrics
+   * @see EndpointMetrics
+   */
+  public void setMetricsListener(MetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+  }
+
+  public MetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * Enables coalescing of GET requests. A GET sent while an identical one, to the same URL with
+   * the same API key, is in flight waits for that exchange instead of sending another request.
+   * The response is buffered and every caller parses its own copy of it, so callers never share
+   * the objects returned. Clients may share one instance. Coalescing is disabled by default and
+   * is not kept when the client is serialized.
+   *
+   * @param singleFlight the requests in flight or null to disable coalescing
+   */
+  public void setSingleFlight(SingleFlight singleFlight) {
+    this.singleFlight = singleFlight;
+  }
+
+  public SingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * Sets the maximum number of idle connections the JDK keeps alive per host. This is a JVM wide
+   * setting read by the JDK when the first connection is made, so it must be called before any
+   * request is sent and does not override a value given on the command line.
+   *
+   * @param maxIdleConnections the maximum number of idle connections per host
+   */
+  public static void setMaxIdleConnectionsPerHost(int maxIdleConnections) {
+    if (System.getProperty(MAX_CONNECTIONS_PROPERTY) == null) {
+      System.setProperty(MAX_CONNECTIONS_PROPERTY, Integer.toString(maxIdleConnections));
+    } else {
+      log.warn(MAX_CONNECTIONS_PROPERTY + " is already set to "
+          + System.getProperty(MAX_CONNECTIONS_PROPERTY) + ", ignoring " + maxIdleConnections);
     }
-    sb.append("  Response Body:\n").append(body);
-    log.debug(sb.toString());
   }
 
   /**
@@ -95,6 +184,23 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
     return sb.toString();
   }
 
+  /**
+   * Helper method to read the contents of an InputStream to a byte array.
+   * This method will not close the stream.
+   *
+   * @param in the InputStream to read
+   * @return the contents of the stream
+   * @throws IOException if an I/O error occurs
+   */
+  protected byte[] readBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    for (int read = in.read(buf); read >= 0; read = in.read(buf)) {
+      out.write(buf, 0, read);
+    }
+    return out.toByteArray();
+  }
+
   /**
    * Helper method to completely read the error stream.
    *
@@ -128,34 +234,43 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
    * @return the exception to throw
    * @throws IOException if an I/O error occurs
    */
-  @SuppressWarnings("unchecked")
   protected IOException getError(IOException x, HttpURLConnection conn) throws IOException {
+    return getError(x, conn, null);
+  }
+
+  /**
+   * Used for error handling.
+   *
+   * @param x        the exception thrown or null
+   * @param conn     the connection
+   * @param exchange the wire log of the request or null if it is not logged
+   * @return the exception to throw
+   * @throws IOException if an I/O error occurs
+   */
+  protected IOException getError(IOException x, HttpURLConnection conn,
+                                 WireLogger.Exchange exchange) throws IOException {
     if (conn != null) {
       String error = readError(conn);
-      if (log.isDebugEnabled()) {
-        logResponse(conn, error);
-      }
       int status = conn.getResponseCode();
-      switch (status) {
-        case 401:
-          return new NewRelicAuthenticationFailedException(error);
-        case 404:
-          return new NewRelicNotFoundException(error);
-        case 400:
-          if (error != null) {
-            return new NewRelicBadRequestException("Received error: " + error,
-                readCollection(error, List.class, NewRelicError.class));
-          }
-          throw new NewRelicBadRequestException();
-        case 403:
-          return new NewRelicForbiddenException(error); // TODO
-        default:
-          return new NewRelicException(error, x);
+      if (exchange != null) {
+        exchange.response(status, conn.getHeaderFields());
+        exchange.responseBody(error);
       }
+      return getError(status, conn.getHeaderFields(), error, x);
     }
     return x;
   }
 
+  /**
+   * Returns the absolute URL of a request.
+   *
+   * @param uri the URI, absolute or relative to the base url
+   * @return the absolute URL
+   */
+  protected String resolve(String uri) {
+    return uri.startsWith("http") ? uri : this.url + uri;
+  }
+
   /**
    * Helper method to setup the connection.
    *
@@ -165,10 +280,7 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
    * @throws IOException if an I/O error occurs
    */
   protected HttpURLConnection setup(HttpMethod method, String url) throws IOException {
-    if (!url.startsWith("http")) {
-      url = this.url + url;
-    }
-    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    HttpURLConnection conn = (HttpURLConnection) new URL(resolve(url)).openConnection();
     conn.setRequestProperty("Accept", "application/json");
     conn.setRequestProperty("User-Agent", USER_AGENT);
     conn.setRequestMethod(method.toString());
@@ -187,6 +299,33 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
    * @param out  the output stream or null
    */
   protected void cleanup(HttpURLConnection conn, InputStream in, OutputStream out) {
+    if (pooled) {
+      // The JDK only returns a connection to its keep-alive cache once the response has been
+      // read to the end and the stream closed. Calling disconnect would close the socket.
+      if (in != null) {
+        drain(in);
+      }
+      close(in, out);
+    } else {
+      discard(conn, in, out);
+    }
+  }
+
+  /**
+   * Closes the connection resources and the underlying socket so it is never reused.
+   *
+   * @param conn the connection or null
+   * @param in   the input stream or null
+   * @param out  the output stream or null
+   */
+  protected void discard(HttpURLConnection conn, InputStream in, OutputStream out) {
+    close(in, out);
+    if (conn != null) {
+      conn.disconnect();
+    }
+  }
+
+  private void close(InputStream in, OutputStream out) {
     if (in != null) {
       try {
         in.close();
@@ -197,308 +336,405 @@ public class URLConnectionRestClient extends JacksonRestClient implements Serial
         out.close();
       } catch (IOException x) { /* do nothing */ }
     }
-    if (conn != null) {
-      conn.disconnect();
-    }
   }
 
-  @Override
-  public <T> T get(String uri, T o) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
+  /**
+   * Reads whatever is left of a stream so the connection can be reused.
+   *
+   * @param in the stream to drain
+   */
+  protected void drain(InputStream in) {
     try {
-      conn = setup(HttpMethod.GET, uri);
-      if (log.isDebugEnabled()) {
-        logRequest(conn, null);
+      byte[] buf = new byte[8192];
+      while (in.read(buf) >= 0) {
+        // discard
       }
-      conn.connect();
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, o);
-      } else {
-        return readValue(in, o);
-      }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, null);
-    }
+    } catch (IOException x) { /* do nothing, the connection will not be reused */ }
   }
 
-  @Override
-  public <T> T get(String uri, Class<T> clazz) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    try {
-      conn = setup(HttpMethod.GET, uri);
-      if (log.isDebugEnabled()) {
-        logRequest(conn, null);
+  /**
+   * Checks if a failed request may be sent again on a new connection. In pooled mode the server
+   * may have closed an idle connection while it sat in the keep-alive cache, in which case an
+   * idempotent request is retried once.
+   *
+   * @param method the HTTP method
+   * @param x      the error
+   * @return true if the request should be retried
+   */
+  protected boolean isRetryable(HttpMethod method, IOException x) {
+    return pooled && staleConnectionCheck
+        && (method == HttpMethod.GET || method == HttpMethod.PUT || method == HttpMethod.DELETE)
+        && isStaleConnection(x);
+  }
+
+  private boolean isStaleConnection(IOException x) {
+    return x instanceof SocketException
+        || (x.getMessage() != null && x.getMessage().startsWith("Unexpected end of file"));
+  }
+
+  /**
+   * Reads the body of a successful response.
+   *
+   * @param <T> the type of the result
+   */
+  protected interface ResponseReader<T> {
+
+    /**
+     * Reads the response.
+     *
+     * @param status  the HTTP status code
+     * @param headers the response headers
+     * @param in      the response stream
+     * @return the result of the request
+     * @throws IOException if an I/O error occurs
+     */
+    T read(int status, Map<String, List<String>> headers, InputStream in) throws IOException;
+  }
+
+  /**
+   * Sends a request and reads the response. This is the single code path used by all HTTP
+   * methods of this client.
+   *
+   * @param method the HTTP method
+   * @param uri    the URI
+   * @param body   the request body or null if the request has none
+   * @param reader reads the response body
+   * @param <T>    the type of the result
+   * @return the result produced by the reader
+   * @throws IOException if an I/O error occurs
+   */
+  protected <T> T send(HttpMethod method, String uri, Object body, ResponseReader<T> reader)
+      throws IOException {
+    ResponseCache cache = this.cache;
+    if (cache != null && method == HttpMethod.GET) {
+      ResponseCache.Entry cached = cache.getFresh(ResponseCache.key(apiKey, resolve(uri)));
+      if (cached != null) {
+        return reader.read(HttpURLConnection.HTTP_OK, cached.getHeaders(), cached.body());
       }
-      conn.connect();
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, clazz);
-      } else {
-        return readValue(in, clazz);
+    } else if (cache != null) {
+      try {
+        return send(method, uri, body, reader, null);
+      } finally {
+        cache.invalidate(ResponseCache.getCollection(resolve(uri)));
       }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, null);
     }
+    if (method != HttpMethod.GET) {
+      return send(method, uri, body, reader, null);
+    }
+    SingleFlight singleFlight = this.singleFlight;
+    if (singleFlight != null) {
+      return singleFlight.execute(apiKey + " " + resolve(uri), () -> fetch(uri)).read(reader);
+    }
+    if (hedging != null) {
+      return fetch(uri).read(reader);
+    }
+    return send(HttpMethod.GET, uri, null, reader, null);
   }
 
-  @Override
-  public <T, S> T get(String uri, Class<T> clazz, Class<S> parameterClass) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    try {
-      conn = setup(HttpMethod.GET, uri);
-      if (log.isDebugEnabled()) {
-        logRequest(conn, null);
-      }
-      conn.connect();
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, clazz, parameterClass);
-      } else {
-        return readValue(in, clazz, parameterClass);
-      }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, null);
+  /**
+   * Sends a GET request, hedging it if enabled, and reads its response in full. The response is
+   * parsed by the caller once it is known which copy of a hedged request completed first, since
+   * a reader may update an object of the caller and the copies must not do so concurrently.
+   *
+   * @param uri the URI
+   * @return the response
+   * @throws IOException if an I/O error occurs
+   */
+  private BufferedResponse fetch(String uri) throws IOException {
+    ResponseReader<BufferedResponse> buffer =
+        (status, headers, in) -> new BufferedResponse(status, headers, readBytes(in));
+    Hedging hedging = this.hedging;
+    if (hedging != null) {
+      return hedging.execute(() -> new HedgedRequest<>(uri, buffer));
     }
+    return send(HttpMethod.GET, uri, null, buffer, null);
   }
 
-  @Override
-  public <T> T update(String uri, T o) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    OutputStream out = null;
-    try {
-      conn = setup(HttpMethod.PUT, uri);
-      conn.setDoOutput(true);
-      conn.setRequestProperty("Content-Type", "application/json");
-
-      if (log.isDebugEnabled()) {
-        String body = writeValue(o);
-        logRequest(conn, body);
-        conn.connect();
-        out = conn.getOutputStream();
-        out.write(body.getBytes(UTF8));
-      } else {
-        conn.connect();
-        out = conn.getOutputStream();
-        writeValue(out, o);
-      }
+  /**
+   * A response read in full, parsed by the caller once the request completed. The same response
+   * may be parsed by each caller sharing the request.
+   */
+  private static class BufferedResponse {
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    BufferedResponse(int status, Map<String, List<String>> headers, byte[] body) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    <T> T read(ResponseReader<T> reader) throws IOException {
+      return reader.read(status, headers, new ByteArrayInputStream(body));
+    }
+  }
 
-      in = conn.getInputStream();
-      String res = readString(in);
-      if (res != null && !res.isEmpty()) {
-        if (log.isDebugEnabled()) {
-          logResponse(conn, res);
-          readValue(res, o);
+  /**
+   * Sends a request and reads the response.
+   *
+   * @param method the HTTP method
+   * @param uri    the URI
+   * @param body   the request body or null if the request has none
+   * @param reader reads the response body
+   * @param hedged the hedged request being sent or null if the request is not hedged
+   * @param <T>    the type of the result
+   * @return the result produced by the reader
+   * @throws IOException if an I/O error occurs
+   */
+  private <T> T send(HttpMethod method, String uri, Object body, ResponseReader<T> reader,
+                     HedgedRequest<T> hedged) throws IOException {
+    ResponseCache cache = method == HttpMethod.GET ? this.cache : null;
+    MetricsListener metricsListener = this.metricsListener;
+    int throttled = 0;
+    for (int attempt = 0; ; attempt++) {
+      HttpURLConnection conn = null;
+      InputStream in = null;
+      OutputStream out = null;
+      WireLogger.Exchange exchange = null;
+      RequestEvent event = null;
+      JfrEvents recorded = null;
+      try {
+        acquire();
+        conn = setup(method, uri);
+        recorded = JfrEvents.request();
+        if (metricsListener != null || recorded != null) {
+          event = new RequestEvent(method, RequestEvent.getEndpoint(conn.getURL().toString()));
+        }
+        if (hedged != null) {
+          hedged.connecting(conn);
+        }
+        if (body != null) {
+          conn.setDoOutput(true);
+          conn.setRequestProperty("Content-Type", "application/json");
+        }
+        ResponseCache.Entry cached = cache != null
+            ? cache.get(ResponseCache.key(apiKey, resolve(uri))) : null;
+        if (cached != null) {
+          for (Map.Entry<String, String> condition : cached.getConditions().entrySet()) {
+            conn.setRequestProperty(condition.getKey(), condition.getValue());
+          }
+        }
+        exchange = wireLogger.start(method.toString(), conn.getURL().toString());
+        if (exchange != null) {
+          byte[] json = body != null ? writeValueAsBytes(body) : null;
+          exchange.requestHeaders(conn.getRequestProperties());
+          exchange.requestBody(json);
+          conn.connect();
+          if (event != null) {
+            event.connected();
+          }
+          if (json != null) {
+            out = conn.getOutputStream();
+            out.write(json);
+            if (event != null) {
+              event.requestBytes(json.length);
+            }
+          }
         } else {
-          readValue(res, o);
+          conn.connect();
+          if (event != null) {
+            event.connected();
+          }
+          if (body != null) {
+            out = conn.getOutputStream();
+            writeValue(event != null ? event.count(out) : out, body);
+          }
+        }
+        in = conn.getInputStream();
+        int status = conn.getResponseCode();
+        if (event != null) {
+          event.responded(status);
+          in = event.count(in);
+        }
+        Map<String, List<String>> headers = conn.getHeaderFields();
+        onResponse(headers);
+        if (exchange != null) {
+          exchange.response(status, headers);
+        }
+        if (cached != null && status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          cache.revalidated(cached);
+          return reader.read(HttpURLConnection.HTTP_OK, cached.getHeaders(), cached.body());
+        }
+        InputStream res = exchange != null ? exchange.tee(in) : in;
+        if (cache != null && status == HttpURLConnection.HTTP_OK) {
+          byte[] bytes = readBytes(res);
+          cache.put(ResponseCache.key(apiKey, resolve(uri)), bytes, headers);
+          res = new ByteArrayInputStream(bytes);
+        }
+        return reader.read(status, headers, res);
+      } catch (IOException x) {
+        if (event != null) {
+          event.failed(x);
+        }
+        if (hedged != null && hedged.cancelled) {
+          throw x; // the connection was closed because the other request completed first
+        }
+        if (attempt == 0 && isRetryable(method, x)) {
+          log.debug("Retrying " + method + " " + uri + " on a new connection: " + x.getMessage());
+          discard(conn, in, out);
+          conn = null;
+          in = null;
+          out = null;
+          continue;
+        }
+        IOException error = getError(x, conn, exchange);
+        if (event != null && conn != null) {
+          event.responded(conn.getResponseCode());
+        }
+        if (isThrottledRetry(error, throttled)) {
+          throttled++;
+          continue;
+        }
+        throw error;
+      } finally {
+        if (exchange != null) {
+          exchange.log();
+        }
+        cleanup(conn, in, out);
+        if (event != null) {
+          event.finish();
+          if (metricsListener != null) {
+            completed(metricsListener, event);
+          }
+          if (recorded != null) {
+            recorded.commit(event);
+          }
         }
       }
-      return o;
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, out);
     }
   }
 
-  @Override
-  public <T, U> T patch(String uri, Class<T> clazz, U u) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    OutputStream out = null;
+  private static void completed(MetricsListener metricsListener, RequestEvent event) {
     try {
-      conn = setup(HttpMethod.PATCH, uri);
-      conn.setDoInput(true);
-      conn.setRequestProperty("Content-Type", "application/json");
-
-      if (log.isDebugEnabled()) {
-        String body = writeValue(u);
-        logRequest(conn, body);
-        conn.connect();
-        out = conn.getOutputStream();
-        out.write(body.getBytes(UTF8));
-      } else {
-        conn.connect();
-        out = conn.getOutputStream();
-        writeValue(out, u);
-      }
+      metricsListener.requestCompleted(event);
+    } catch (RuntimeException x) {
+      log.warn("The metrics listener failed: " + x.getMessage(), x);
+    }
+  }
 
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(in, clazz);
-      } else {
-        return readValue(in, clazz);
+  /**
+   * A GET request which may be cancelled from another thread by closing its connection.
+   */
+  private class HedgedRequest<T> implements Hedging.Request<T> {
+    private final String uri;
+    private final ResponseReader<T> reader;
+    private volatile HttpURLConnection conn;
+    private volatile boolean cancelled;
+    private volatile boolean completed;
+
+    HedgedRequest(String uri, ResponseReader<T> reader) {
+      this.uri = uri;
+      this.reader = reader;
+    }
+
+    @Override
+    public T send() throws IOException {
+      try {
+        return URLConnectionRestClient.this.send(HttpMethod.GET, uri, null, reader, this);
+      } finally {
+        completed = true;
       }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, out);
     }
-  }
 
-  @Override
-  public <V, T> V create(String uri, T o, Class<V> clazz) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    OutputStream out = null;
-    try {
-      conn = setup(HttpMethod.POST, uri);
-      conn.setDoOutput(true);
-      conn.setRequestProperty("Content-Type", "application/json");
-
-      if (log.isDebugEnabled()) {
-        String body = writeValue(o);
-        logRequest(conn, body);
-        conn.connect();
-        out = conn.getOutputStream();
-        out.write(body.getBytes(UTF8));
-      } else {
-        conn.connect();
-        out = conn.getOutputStream();
-        writeValue(out, o);
+    void connecting(HttpURLConnection conn) throws IOException {
+      this.conn = conn;
+      if (cancelled) {
+        throw new InterruptedIOException("Hedged request cancelled");
       }
+    }
 
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, clazz);
-      } else {
-        return readValue(in, clazz);
+    @Override
+    public void cancel() {
+      cancelled = true;
+      HttpURLConnection c = conn;
+      if (c != null && !completed) {
+        c.disconnect();
       }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, out);
     }
   }
 
   @Override
-  public <T> T create(String uri, T o) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    OutputStream out = null;
-    try {
-      conn = setup(HttpMethod.POST, uri);
-      conn.setDoOutput(true);
-      conn.setRequestProperty("Content-Type", "application/json");
-
-      if (log.isDebugEnabled()) {
-        String body = writeValue(o);
-        logRequest(conn, body);
-        conn.connect();
-        out = conn.getOutputStream();
-        out.write(body.getBytes(UTF8));
-      } else {
-        conn.connect();
-        out = conn.getOutputStream();
-        writeValue(out, o);
-      }
+  public <T> T get(String uri, T o) throws IOException {
+    return send(HttpMethod.GET, uri, null, (status, headers, in) -> readValue(in, o));
+  }
 
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, o);
-      } else {
-        return readValue(in, o);
+  @Override
+  public <T> T get(String uri, Class<T> clazz) throws IOException {
+    return send(HttpMethod.GET, uri, null, (status, headers, in) -> readValue(in, clazz));
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, Class<T> clazz) throws IOException {
+    return send(HttpMethod.GET, uri, null, (status, headers, in) -> {
+      T body = readValue(in, clazz);
+      return new RestResponse<>(status, headers, body);
+    });
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, ResponseParser<T> parser)
+      throws IOException {
+    return send(HttpMethod.GET, uri, null, (status, headers, in) -> {
+      T body = parse(in, parser);
+      return new RestResponse<>(status, headers, body);
+    });
+  }
+
+  @Override
+  public <T, S> T get(String uri, Class<T> clazz, Class<S> parameterClass) throws IOException {
+    return send(HttpMethod.GET, uri, null,
+        (status, headers, in) -> readValue(in, clazz, parameterClass));
+  }
+
+  @Override
+  public <T> T update(String uri, T o) throws IOException {
+    return send(HttpMethod.PUT, uri, o, (status, headers, in) -> {
+      // the response body is optional
+      PushbackInputStream res = new PushbackInputStream(in);
+      int first = res.read();
+      if (first >= 0) {
+        res.unread(first);
+        readValue(res, o);
       }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, out);
-    }
+      return o;
+    });
+  }
+
+  @Override
+  public <T, U> T patch(String uri, Class<T> clazz, U u) throws IOException {
+    return send(HttpMethod.PATCH, uri, u, (status, headers, in) -> readValue(in, clazz));
+  }
+
+  @Override
+  public <V, T> V create(String uri, T o, Class<V> clazz) throws IOException {
+    return send(HttpMethod.POST, uri, o, (status, headers, in) -> readValue(in, clazz));
+  }
+
+  @Override
+  public <T> T create(String uri, T o) throws IOException {
+    return send(HttpMethod.POST, uri, o, (status, headers, in) -> readValue(in, o));
   }
 
   @Override
   public void delete(String uri) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    try {
-      conn = setup(HttpMethod.DELETE, uri);
-      logRequest(conn, null);
-      conn.connect();
-      in = conn.getInputStream();
-      readString(in); // read the stream to completion
-      logResponse(conn, null);
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, null);
-    }
+    send(HttpMethod.DELETE, uri, null, (status, headers, in) -> {
+      drain(in); // read the stream to completion
+      return null;
+    });
   }
 
   @Override
   public void execute(String uri) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    try {
-      conn = setup(HttpMethod.POST, uri);
-      logRequest(conn, null);
-      conn.connect();
-      in = conn.getInputStream();
-      readString(in); // read the stream to completion
-      logResponse(conn, null);
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, null);
-    }
+    send(HttpMethod.POST, uri, null, (status, headers, in) -> {
+      drain(in); // read the stream to completion
+      return null;
+    });
   }
 
   @Override
   public <T> T postForObject(String uri, Object data, Class<T> clazz) throws IOException {
-    HttpURLConnection conn = null;
-    InputStream in = null;
-    OutputStream out = null;
-    try {
-      conn = setup(HttpMethod.POST, uri);
-      conn.setDoOutput(true);
-      conn.setRequestProperty("Content-Type", "application/json");
-
-      if (log.isDebugEnabled()) {
-        String body = writeValue(data);
-        logRequest(conn, body);
-        conn.connect();
-        out = conn.getOutputStream();
-        out.write(body.getBytes(UTF8));
-      } else {
-        conn.connect();
-        out = conn.getOutputStream();
-        writeValue(out, data);
-      }
-
-      in = conn.getInputStream();
-      if (log.isDebugEnabled()) {
-        String res = readString(in);
-        logResponse(conn, res);
-        return readValue(res, clazz);
-      } else {
-        return readValue(in, clazz);
-      }
-    } catch (IOException x) {
-      throw getError(x, conn);
-    } finally {
-      cleanup(conn, in, out);
-    }
+    return send(HttpMethod.POST, uri, data, (status, headers, in) -> readValue(in, clazz));
   }
 
 }
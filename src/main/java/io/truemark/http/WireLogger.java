@@ -0,0 +1,235 @@
+package io.truemark.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs HTTP requests and responses to the {@value #LOGGER} logger at debug level. When the logger
+ * is disabled the only cost per request is the level check in {@link #start(String, String)}.
+ * When enabled, response bodies are captured while they are parsed instead of being buffered
+ * upfront, at most a configurable number of bytes of each body is logged and only one in every
+ * given number of requests is logged, so wire logging may be left on in production.
+ *
+ * <p>The API key header is never logged.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j(topic = WireLogger.LOGGER)
+public class WireLogger implements Serializable {
+
+  private static final long serialVersionUID = 2364583010279845128L;
+  public static final String LOGGER = "io.truemark.http.wire";
+  public static final int DEFAULT_MAX_BYTES = 4096;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final String API_KEY_HEADER = "X-Api-Key";
+  private final int maxBytes;
+  private final int sampleRate;
+  private final AtomicLong requests = new AtomicLong();
+
+  /**
+   * Creates a wire logger logging every request with bodies capped at {@value DEFAULT_MAX_BYTES}
+   * bytes.
+   */
+  public WireLogger() {
+    this(DEFAULT_MAX_BYTES, 1);
+  }
+
+  /**
+   * Creates a new wire logger.
+   *
+   * @param maxBytes   the maximum number of bytes of a request or response body to log
+   * @param sampleRate log one in every sampleRate requests, 1 to log every request
+   */
+  public WireLogger(int maxBytes, int sampleRate) {
+    if (maxBytes < 0 || sampleRate < 1) {
+      throw new IllegalArgumentException("maxBytes must not be negative and sampleRate must be "
+          + "at least 1");
+    }
+    this.maxBytes = maxBytes;
+    this.sampleRate = sampleRate;
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Starts recording an exchange if the request is to be logged.
+   *
+   * @param method the HTTP method
+   * @param url    the URL requested
+   * @return the exchange to record into or null if the request is not logged
+   */
+  public Exchange start(String method, String url) {
+    if (!log.isDebugEnabled()) {
+      return null;
+    }
+    if (sampleRate > 1 && requests.getAndIncrement() % sampleRate != 0) {
+      return null;
+    }
+    return new Exchange(method, url);
+  }
+
+  /**
+   * Records a single request and its response, the exchange is logged by {@link #log()}.
+   */
+  public class Exchange {
+
+    private final StringBuilder sb;
+    private ByteArrayOutputStream captured;
+    private long length;
+    private boolean logged;
+
+    Exchange(String method, String url) {
+      sb = new StringBuilder("\nHTTP Request:\n  ").append(method).append(' ').append(url)
+          .append('\n');
+    }
+
+    /**
+     * Records the request headers.
+     *
+     * @param headers the request headers
+     */
+    public void requestHeaders(Map<String, List<String>> headers) {
+      headers(headers);
+    }
+
+    /**
+     * Records the request body.
+     *
+     * @param body the request body or null
+     */
+    public void requestBody(byte[] body) {
+      if (body != null) {
+        body("  Request Body", body, body.length);
+      }
+    }
+
+    /**
+     * Records the response status and headers.
+     *
+     * @param status  the HTTP status
+     * @param headers the response headers or null
+     */
+    public void response(int status, Map<String, List<String>> headers) {
+      sb.append("HTTP Response:\n  Response Code: ").append(status).append('\n');
+      if (headers != null) {
+        headers(headers);
+      }
+    }
+
+    /**
+     * Records a response body which is available in full.
+     *
+     * @param body the response body or null
+     */
+    public void responseBody(byte[] body) {
+      if (body != null) {
+        body("  Response Body", body, body.length);
+      }
+    }
+
+    /**
+     * Records a response body which was read as a String, such as an error message.
+     *
+     * @param body the response body or null
+     */
+    public void responseBody(String body) {
+      if (body != null) {
+        responseBody(body.getBytes(UTF8));
+      }
+    }
+
+    /**
+     * Wraps a response stream so the bytes read from it are captured, up to the byte limit,
+     * while it is consumed.
+     *
+     * @param in the response stream
+     * @return the stream to read from
+     */
+    public InputStream tee(InputStream in) {
+      captured = new ByteArrayOutputStream(Math.min(maxBytes, 8192));
+      return new FilterInputStream(in) {
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b >= 0) {
+            capture(b);
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int read = super.read(b, off, len);
+          if (read > 0) {
+            capture(b, off, read);
+          }
+          return read;
+        }
+      };
+    }
+
+    private void capture(int b) {
+      length++;
+      if (captured.size() < maxBytes) {
+        captured.write(b);
+      }
+    }
+
+    private void capture(byte[] b, int off, int len) {
+      length += len;
+      int room = maxBytes - captured.size();
+      if (room > 0) {
+        captured.write(b, off, Math.min(room, len));
+      }
+    }
+
+    /**
+     * Logs the exchange. Subsequent calls do nothing.
+     */
+    public void log() {
+      if (logged) {
+        return;
+      }
+      logged = true;
+      if (captured != null) {
+        byte[] body = captured.toByteArray();
+        body("  Response Body", body, length);
+      }
+      log.debug(sb.toString());
+    }
+
+    private void headers(Map<String, List<String>> headers) {
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        if (header.getKey() != null) {
+          sb.append("    ").append(header.getKey()).append(": ")
+              .append(API_KEY_HEADER.equalsIgnoreCase(header.getKey()) ? "[hidden]"
+                  : header.getValue()).append('\n');
+        }
+      }
+    }
+
+    private void body(String title, byte[] body, long total) {
+      int shown = Math.min(body.length, maxBytes);
+      sb.append(title).append(" (").append(total).append(" bytes");
+      if (total > shown) {
+        sb.append(", first ").append(shown).append(" logged");
+      }
+      sb.append("):\n").append(new String(body, 0, shown, UTF8)).append('\n');
+    }
+  }
+}
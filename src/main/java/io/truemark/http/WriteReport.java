@@ -0,0 +1,122 @@
+package io.truemark.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The results of a bulk operation, one per item, along with a summary of them.
+ *
+ * @author Abhijeet Kale
+ */
+public class WriteReport {
+
+  private final List<WriteResult> results;
+  private final long elapsedNanos;
+
+  /**
+   * Creates a new report.
+   *
+   * @param results      the result of every item
+   * @param elapsedNanos the time the whole operation took
+   */
+  public WriteReport(List<WriteResult> results, long elapsedNanos) {
+    this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Returns an empty report, for operations which had nothing to write.
+   *
+   * @return the report
+   */
+  public static WriteReport empty() {
+    return new WriteReport(Collections.emptyList(), 0);
+  }
+
+  public List<WriteResult> getResults() {
+    return results;
+  }
+
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+  }
+
+  /**
+   * Returns the number of items with the given outcome.
+   *
+   * @param status the outcome
+   * @return the number of items
+   */
+  public int getCount(WriteResult.Status status) {
+    int count = 0;
+    for (WriteResult result : results) {
+      if (result.getStatus() == status) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the items whose update was sent and failed.
+   *
+   * @return the failed items
+   */
+  public List<WriteResult> getFailures() {
+    List<WriteResult> failures = new ArrayList<>();
+    for (WriteResult result : results) {
+      if (result.getStatus() == WriteResult.Status.FAILED) {
+        failures.add(result);
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * Tells whether every item was found and is now in the requested state.
+   *
+   * @return true if no item failed or was missing
+   */
+  public boolean isSuccessful() {
+    for (WriteResult result : results) {
+      if (result.getStatus() == WriteResult.Status.FAILED
+          || result.getStatus() == WriteResult.Status.NOT_FOUND) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the highest latency of a single write.
+   *
+   * @return the latency in milliseconds, 0 if nothing was written
+   */
+  public long getMaxLatencyMillis() {
+    long max = 0;
+    for (WriteResult result : results) {
+      max = Math.max(max, result.getLatencyNanos());
+    }
+    return TimeUnit.NANOSECONDS.toMillis(max);
+  }
+
+  @Override
+  public String toString() {
+    Map<WriteResult.Status, Integer> counts = new EnumMap<>(WriteResult.Status.class);
+    for (WriteResult result : results) {
+      counts.merge(result.getStatus(), 1, Integer::sum);
+    }
+    StringBuilder summary = new StringBuilder().append(results.size()).append(" items in ")
+        .append(getElapsedMillis()).append(" ms");
+    for (Map.Entry<WriteResult.Status, Integer> count : counts.entrySet()) {
+      summary.append(", ").append(count.getValue()).append(' ')
+          .append(count.getKey().name().toLowerCase().replace('_', ' '));
+    }
+    return summary.append(", max latency ").append(getMaxLatencyMillis()).append(" ms")
+        .toString();
+  }
+}
@@ -0,0 +1,96 @@
+package io.truemark.http;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a single write of a bulk operation.
+ *
+ * @author Abhijeet Kale
+ */
+@Getter
+public class WriteResult {
+
+  /**
+   * What happened to the item written.
+   */
+  public enum Status {
+    /** The update was accepted by New Relic. */
+    APPLIED,
+    /** The item was already in the requested state, no request was sent. */
+    SKIPPED,
+    /** The item to update was not found, no request was sent. */
+    NOT_FOUND,
+    /** The update was sent and failed, or the item could not be listed. */
+    FAILED
+  }
+
+  private final String type;
+  private final String name;
+  private final Status status;
+  private final long latencyNanos;
+  private final Exception error;
+
+  /**
+   * Creates a new result.
+   *
+   * @param type         the kind of item written, such as "NRQL condition"
+   * @param name         the name of the item
+   * @param status       the outcome of the write
+   * @param latencyNanos the time the write took, including any wait for the rate limiter
+   * @param error        the reason the write failed, or null
+   */
+  public WriteResult(String type, String name, Status status, long latencyNanos,
+                     Exception error) {
+    this.type = type;
+    this.name = name;
+    this.status = status;
+    this.latencyNanos = latencyNanos;
+    this.error = error;
+  }
+
+  /**
+   * Creates the result for an item which could not be found.
+   *
+   * @param type the kind of item
+   * @param name the name of the item
+   * @return the result
+   */
+  public static WriteResult notFound(String type, String name) {
+    return new WriteResult(type, name, Status.NOT_FOUND, 0, null);
+  }
+
+  /**
+   * Creates the result for an item which was already in the requested state.
+   *
+   * @param type the kind of item
+   * @param name the name of the item
+   * @return the result
+   */
+  public static WriteResult skipped(String type, String name) {
+    return new WriteResult(type, name, Status.SKIPPED, 0, null);
+  }
+
+  /**
+   * Creates the result for an item which could not be written, without an update being sent.
+   *
+   * @param type  the kind of item
+   * @param name  the name of the item
+   * @param error the reason the item could not be written
+   * @return the result
+   */
+  public static WriteResult failed(String type, String name, Exception error) {
+    return new WriteResult(type, name, Status.FAILED, 0, error);
+  }
+
+  public long getLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + name + ": " + status + " in " + getLatencyMillis() + " ms"
+        + (error != null ? " (" + error.getMessage() + ")" : "");
+  }
+}
@@ -0,0 +1,458 @@
+package io.truemark.http;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A RestClient built on the java.net.http.HttpClient of Java 11. Clients sharing one HttpClient
+ * multiplex their requests over a single HTTP/2 connection per host, and the client supports
+ * non-blocking requests through {@link #async()}.
+ *
+ * <p>This is the Java 11 version of the class, replacing the one of the base part of the
+ * multi-release jar which cannot be created. Members using the types of java.net.http are not
+ * public, so that both versions have the same public API. Use {@link RestClientFactory#http2()}
+ * to create instances sharing one HttpClient.</p>
+ *
+ * @author Abhijeet Kale
+ */
+@Slf4j
+public class HttpClientRestClient extends JacksonRestClient implements AsyncCapableRestClient {
+
+  private static final long serialVersionUID = 4026375935383641042L;
+  /**
+   * The connect timeout of created HttpClients and the default timeout of each request.
+   */
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+  private final String url;
+  private final String apiKey;
+  private transient HttpClient httpClient;
+  private Duration timeout = DEFAULT_TIMEOUT;
+
+  /**
+   * Creates a new RestClient client with its own HttpClient.
+   *
+   * @param url    the base url
+   * @param apiKey the api key
+   */
+  public HttpClientRestClient(String url, String apiKey) {
+    this(url, apiKey, null);
+  }
+
+  /**
+   * Creates a new RestClient client.
+   *
+   * @param url        the base url
+   * @param apiKey     the api key
+   * @param httpClient the HttpClient to send requests with, or null to create one
+   */
+  HttpClientRestClient(String url, String apiKey, HttpClient httpClient) {
+    this.url = url;
+    this.apiKey = apiKey;
+    this.httpClient = httpClient;
+  }
+
+  /**
+   * Creates an HttpClient preferring HTTP/2, suitable for sharing between clients.
+   *
+   * @return the HttpClient
+   */
+  static HttpClient newHttpClient() {
+    return HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(DEFAULT_TIMEOUT)
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+  }
+
+  /**
+   * Sets how long to wait for the response to each request, from sending the request until the
+   * response headers are received. A request not answered in time fails with a
+   * SocketTimeoutException.
+   *
+   * @param timeout the timeout, defaults to {@link #DEFAULT_TIMEOUT}
+   */
+  public void setTimeout(Duration timeout) {
+    if (timeout == null || timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("The timeout must be positive");
+    }
+    this.timeout = timeout;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  private HttpClient client() {
+    if (httpClient == null) {
+      httpClient = newHttpClient(); // lost on serialization
+    }
+    return httpClient;
+  }
+
+  /**
+   * Reads the body of a successful response.
+   *
+   * @param <T> the type of the result
+   */
+  private interface BodyReader<T> {
+    T read(HttpResponse<byte[]> response) throws IOException;
+  }
+
+  /**
+   * Helper method to build a request.
+   *
+   * @param method the HTTP method to use
+   * @param uri    the URI to request
+   * @param body   the request body or null
+   * @return the request
+   * @throws IOException if the body cannot be serialized
+   */
+  private HttpRequest request(HttpMethod method, String uri, Object body) throws IOException {
+    if (!uri.startsWith("http")) {
+      uri = this.url + uri;
+    }
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri))
+        .timeout(timeout)
+        .header("Accept", "application/json")
+        .header("User-Agent", URLConnectionRestClient.USER_AGENT)
+        .header("X-Api-Key", apiKey);
+    BodyPublisher publisher = BodyPublishers.noBody();
+    if (body != null) {
+      builder.header("Content-Type", "application/json");
+      publisher = BodyPublishers.ofByteArray(writeValueAsBytes(body));
+    }
+    return builder.method(method.toString(), publisher).build();
+  }
+
+  private <T> T handle(HttpResponse<byte[]> response, BodyReader<T> reader) throws IOException {
+    byte[] body = response.body();
+    WireLogger.Exchange exchange = wireLogger.start(response.request().method(),
+        response.uri().toString());
+    if (exchange != null) {
+      exchange.requestHeaders(response.request().headers().map());
+      exchange.response(response.statusCode(), response.headers().map());
+      exchange.responseBody(body);
+      exchange.log();
+    }
+    if (response.statusCode() >= 400) {
+      throw getError(response.statusCode(), response.headers().map(),
+          body.length > 0 ? new String(body, StandardCharsets.UTF_8) : null, null);
+    }
+    onResponse(response.headers().map());
+    return reader.read(response);
+  }
+
+  private <T> T send(HttpMethod method, String uri, Object body, BodyReader<T> reader)
+      throws IOException {
+    HttpRequest request = request(method, uri, body);
+    for (int throttled = 0; ; throttled++) {
+      acquire();
+      try {
+        return handle(exchange(request), reader);
+      } catch (HttpTimeoutException x) {
+        throw timeout(x);
+      } catch (InterruptedException x) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ix = new InterruptedIOException("Interrupted waiting for " + uri);
+        ix.initCause(x);
+        throw ix;
+      } catch (IOException x) {
+        if (!isThrottledRetry(x, throttled)) {
+          throw x;
+        }
+      }
+    }
+  }
+
+  private <T> CompletableFuture<T> sendAsync(HttpMethod method, String uri, Object body,
+                                             BodyReader<T> reader) {
+    HttpRequest request;
+    try {
+      request = request(method, uri, body);
+    } catch (IOException x) {
+      return CompletableFuture.failedFuture(x);
+    }
+    return sendAsync(request, reader, 0);
+  }
+
+  private <T> CompletableFuture<T> sendAsync(HttpRequest request, BodyReader<T> reader,
+                                             int throttled) {
+    // the permit is waited for without blocking the caller
+    long wait = rateLimiter != null ? rateLimiter.reserve() : 0;
+    CompletableFuture<HttpResponse<byte[]>> sent = wait > 0
+        ? CompletableFuture.runAsync(() -> { },
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS))
+        .thenCompose(v -> exchangeAsync(request))
+        : exchangeAsync(request);
+    return sent.handle((response, x) -> {
+      Throwable cause = x instanceof CompletionException ? x.getCause() : x;
+      if (cause instanceof HttpTimeoutException) {
+        return CompletableFuture.<T>failedFuture(timeout((HttpTimeoutException) cause));
+      } else if (x != null) {
+        return CompletableFuture.<T>failedFuture(cause);
+      }
+      try {
+        return CompletableFuture.completedFuture(handle(response, reader));
+      } catch (IOException ix) {
+        if (isThrottledRetry(ix, throttled)) {
+          return sendAsync(request, reader, throttled + 1);
+        }
+        return CompletableFuture.<T>failedFuture(ix);
+      }
+    }).thenCompose(Function.identity());
+  }
+
+  /**
+   * Sends a request, recording a Flight Recorder event for it if such events are enabled.
+   *
+   * @param request the request
+   * @return the response
+   * @throws IOException          if an I/O error occurs
+   * @throws InterruptedException if interrupted while waiting for the response
+   */
+  private HttpResponse<byte[]> exchange(HttpRequest request) throws IOException,
+      InterruptedException {
+    JfrEvents recorded = JfrEvents.request();
+    if (recorded == null) {
+      return client().send(request, BodyHandlers.ofByteArray());
+    }
+    RequestEvent event = event(request);
+    HttpResponse<byte[]> response = null;
+    try {
+      response = client().send(request, BodyHandlers.ofByteArray());
+      return response;
+    } catch (IOException x) {
+      event.failed(x);
+      throw x;
+    } finally {
+      recorded.commit(completed(event, response));
+    }
+  }
+
+  /**
+   * Sends a request without blocking, recording a Flight Recorder event for it if such events are
+   * enabled.
+   *
+   * @param request the request
+   * @return the response
+   */
+  private CompletableFuture<HttpResponse<byte[]>> exchangeAsync(HttpRequest request) {
+    JfrEvents recorded = JfrEvents.request();
+    if (recorded == null) {
+      return client().sendAsync(request, BodyHandlers.ofByteArray());
+    }
+    RequestEvent event = event(request);
+    return client().sendAsync(request, BodyHandlers.ofByteArray())
+        .whenComplete((response, x) -> {
+          Throwable cause = x instanceof CompletionException ? x.getCause() : x;
+          if (cause instanceof IOException) {
+            event.failed((IOException) cause);
+          }
+          recorded.commit(completed(event, response));
+        });
+  }
+
+  private static RequestEvent event(HttpRequest request) {
+    RequestEvent event = new RequestEvent(HttpMethod.valueOf(request.method()),
+        RequestEvent.getEndpoint(request.uri().toString()));
+    request.bodyPublisher().ifPresent(body -> event.requestBytes(Math.max(0,
+        body.contentLength())));
+    return event;
+  }
+
+  private static RequestEvent completed(RequestEvent event, HttpResponse<byte[]> response) {
+    if (response != null) {
+      // the HttpClient gives no connect time and reads the whole body before returning
+      event.responded(response.statusCode());
+      event.responseBytes(response.body().length);
+    }
+    return event.finish();
+  }
+
+  /**
+   * Reports a timeout as a SocketTimeoutException, as done by the URLConnection based client.
+   *
+   * @param x the timeout raised by the HttpClient
+   * @return the exception to throw
+   */
+  private static SocketTimeoutException timeout(HttpTimeoutException x) {
+    SocketTimeoutException sx = new SocketTimeoutException(x.getMessage());
+    sx.initCause(x);
+    return sx;
+  }
+
+  private <T> BodyReader<T> into(T o) {
+    return response -> response.body().length > 0
+        ? readValue(new ByteArrayInputStream(response.body()), o) : o;
+  }
+
+  private <T> BodyReader<T> as(Class<T> clazz) {
+    return response -> readValue(new ByteArrayInputStream(response.body()), clazz);
+  }
+
+  private <T> BodyReader<RestResponse<T>> withHeaders(Class<T> clazz) {
+    return response -> new RestResponse<>(response.statusCode(), response.headers().map(),
+        readValue(new ByteArrayInputStream(response.body()), clazz));
+  }
+
+  private <T> BodyReader<RestResponse<T>> withHeaders(ResponseParser<T> parser) {
+    return response -> new RestResponse<>(response.statusCode(), response.headers().map(),
+        parse(response.body(), parser));
+  }
+
+  private <T, S> BodyReader<T> as(Class<T> clazz, Class<S> parameterClass) {
+    return response -> readValue(new ByteArrayInputStream(response.body()), clazz,
+        parameterClass);
+  }
+
+  private static BodyReader<Void> discard() {
+    return response -> null;
+  }
+
+  @Override
+  public <T> T get(String uri, T o) throws IOException {
+    return send(HttpMethod.GET, uri, null, into(o));
+  }
+
+  @Override
+  public <T> T get(String uri, Class<T> clazz) throws IOException {
+    return send(HttpMethod.GET, uri, null, as(clazz));
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, Class<T> clazz) throws IOException {
+    return send(HttpMethod.GET, uri, null, withHeaders(clazz));
+  }
+
+  @Override
+  public <T> RestResponse<T> getResponse(String uri, ResponseParser<T> parser)
+      throws IOException {
+    return send(HttpMethod.GET, uri, null, withHeaders(parser));
+  }
+
+  @Override
+  public <T, S> T get(String uri, Class<T> clazz, Class<S> parameterClass) throws IOException {
+    return send(HttpMethod.GET, uri, null, as(clazz, parameterClass));
+  }
+
+  @Override
+  public <T> T update(String uri, T o) throws IOException {
+    return send(HttpMethod.PUT, uri, o, into(o));
+  }
+
+  @Override
+  public <T, U> T patch(String uri, Class<T> clazz, U u) throws IOException {
+    return send(HttpMethod.PATCH, uri, u, as(clazz));
+  }
+
+  @Override
+  public <V, T> V create(String uri, T o, Class<V> clazz) throws IOException {
+    return send(HttpMethod.POST, uri, o, as(clazz));
+  }
+
+  @Override
+  public <T> T create(String uri, T o) throws IOException {
+    return send(HttpMethod.POST, uri, o, into(o));
+  }
+
+  @Override
+  public void delete(String uri) throws IOException {
+    send(HttpMethod.DELETE, uri, null, discard());
+  }
+
+  @Override
+  public void execute(String uri) throws IOException {
+    send(HttpMethod.POST, uri, null, discard());
+  }
+
+  @Override
+  public <T> T postForObject(String uri, Object data, Class<T> clazz) throws IOException {
+    return send(HttpMethod.POST, uri, data, as(clazz));
+  }
+
+  @Override
+  public AsyncRestClient async() {
+    return new AsyncRestClient() {
+
+      @Override
+      public <T> CompletableFuture<T> get(String uri, T instance) {
+        return sendAsync(HttpMethod.GET, uri, null, into(instance));
+      }
+
+      @Override
+      public <T> CompletableFuture<T> get(String uri, Class<T> clazz) {
+        return sendAsync(HttpMethod.GET, uri, null, as(clazz));
+      }
+
+      @Override
+      public <T> CompletableFuture<RestResponse<T>> getResponse(String uri, Class<T> clazz) {
+        return sendAsync(HttpMethod.GET, uri, null, withHeaders(clazz));
+      }
+
+      @Override
+      public <T> CompletableFuture<RestResponse<T>> getResponse(String uri,
+                                                                 ResponseParser<T> parser) {
+        return sendAsync(HttpMethod.GET, uri, null, withHeaders(parser));
+      }
+
+      @Override
+      public <T, S> CompletableFuture<T> get(String uri, Class<T> clazz,
+                                             Class<S> parameterClass) {
+        return sendAsync(HttpMethod.GET, uri, null, as(clazz, parameterClass));
+      }
+
+      @Override
+      public <T> CompletableFuture<T> update(String uri, T o) {
+        return sendAsync(HttpMethod.PUT, uri, o, into(o));
+      }
+
+      @Override
+      public <T, U> CompletableFuture<T> patch(String uri, Class<T> clazz, U u) {
+        return sendAsync(HttpMethod.PATCH, uri, u, as(clazz));
+      }
+
+      @Override
+      public <V, T> CompletableFuture<V> create(String uri, T o, Class<V> clazz) {
+        return sendAsync(HttpMethod.POST, uri, o, as(clazz));
+      }
+
+      @Override
+      public <T> CompletableFuture<T> create(String uri, T o) {
+        return sendAsync(HttpMethod.POST, uri, o, into(o));
+      }
+
+      @Override
+      public CompletableFuture<Void> delete(String uri) {
+        return sendAsync(HttpMethod.DELETE, uri, null, discard());
+      }
+
+      @Override
+      public CompletableFuture<Void> execute(String uri) {
+        return sendAsync(HttpMethod.POST, uri, null, discard());
+      }
+
+      @Override
+      public <T> CompletableFuture<T> postForObject(String uri, Object data, Class<T> clazz) {
+        return sendAsync(HttpMethod.POST, uri, data, as(clazz));
+      }
+    };
+  }
+}
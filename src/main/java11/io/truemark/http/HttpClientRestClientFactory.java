@@ -0,0 +1,33 @@
+package io.truemark.http;
+
+import java.net.http.HttpClient;
+
+/**
+ * Creates {@link HttpClientRestClient} instances which all share one HttpClient, so that every
+ * endpoint of a New Relic host is served over the same HTTP/2 connection.
+ *
+ * <p>This is the Java 11 version of the class, replacing the one of the base part of the
+ * multi-release jar which cannot be created.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class HttpClientRestClientFactory implements RestClientFactory {
+
+  private final HttpClient httpClient;
+
+  /**
+   * Creates a new factory with its own HttpClient preferring HTTP/2.
+   */
+  public HttpClientRestClientFactory() {
+    this(HttpClientRestClient.newHttpClient());
+  }
+
+  HttpClientRestClientFactory(HttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  @Override
+  public RestClient create(String url, String apiKey) {
+    return new HttpClientRestClient(url, apiKey, httpClient);
+  }
+}
@@ -0,0 +1,170 @@
+package io.truemark.http;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits Java Flight Recorder events for the HTTP requests and the operations of the client, so a
+ * slow run can be lined up with the GC and thread activity recorded at the same time.
+ *
+ * <p>This is the Java 11 version of the class. An event is only allocated past the begin call
+ * when Flight Recorder has the event type enabled, callers get null otherwise.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class JfrEvents {
+
+  private final Event event;
+
+  @Name("io.truemark.HttpRequest")
+  @Label("New Relic HTTP Request")
+  @Description("A request sent to the New Relic REST API")
+  @Category("New Relic Client")
+  @StackTrace(false)
+  static class HttpRequestEvent extends Event {
+    @Label("Method")
+    String method;
+    @Label("Endpoint")
+    @Description("The URL path with its ids replaced by {id}")
+    String endpoint;
+    @Label("Status")
+    int status;
+    @Label("Connect")
+    @Timespan
+    long connect;
+    @Label("Time to First Byte")
+    @Timespan
+    long firstByte;
+    @Label("Request Bytes")
+    @DataAmount
+    long requestBytes;
+    @Label("Response Bytes")
+    @DataAmount
+    long responseBytes;
+    @Label("Error")
+    String error;
+  }
+
+  @Name("io.truemark.Operation")
+  @Label("New Relic Client Operation")
+  @Description("A call to NewRelicClient, spanning the requests it sent")
+  @Category("New Relic Client")
+  @StackTrace(false)
+  static class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+    @Label("Target")
+    String target;
+    @Label("Items")
+    int items;
+    @Label("Applied")
+    int applied;
+    @Label("Skipped")
+    int skipped;
+    @Label("Not Found")
+    int notFound;
+    @Label("Failed")
+    int failed;
+    @Label("Error")
+    @Description("The exception the operation failed with, null if it completed")
+    String error;
+  }
+
+  private JfrEvents(Event event) {
+    this.event = event;
+  }
+
+  /**
+   * Starts the event of an HTTP request, if such events are being recorded.
+   *
+   * @return the event to commit once the request completed, or null
+   */
+  public static JfrEvents request() {
+    HttpRequestEvent event = new HttpRequestEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return new JfrEvents(event);
+  }
+
+  /**
+   * Starts the event of a client operation, if such events are being recorded.
+   *
+   * @param operation the name of the operation, such as disableAlertConditions
+   * @param target    what the operation applies to, such as the policy name
+   * @return the event to commit once the operation completed, or null
+   */
+  public static JfrEvents operation(String operation, String target) {
+    OperationEvent event = new OperationEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.operation = operation;
+    event.target = target;
+    event.begin();
+    return new JfrEvents(event);
+  }
+
+  /**
+   * Commits the event of an HTTP request.
+   *
+   * @param event the timings and sizes of the request
+   */
+  public void commit(RequestEvent event) {
+    HttpRequestEvent request = (HttpRequestEvent) this.event;
+    request.end();
+    if (request.shouldCommit()) {
+      request.method = event.getMethod().toString();
+      request.endpoint = event.getEndpoint();
+      request.status = event.getStatus();
+      request.connect = event.getConnectNanos();
+      request.firstByte = event.getFirstByteNanos();
+      request.requestBytes = event.getRequestBytes();
+      request.responseBytes = event.getResponseBytes();
+      request.error = event.getError() != null ? event.getError().toString() : null;
+      request.commit();
+    }
+  }
+
+  /**
+   * Commits the event of a client operation.
+   *
+   * @param items  the number of items read or written
+   * @param report the outcome of the writes, or null if the operation only read
+   */
+  public void commit(int items, WriteReport report) {
+    OperationEvent operation = (OperationEvent) this.event;
+    operation.end();
+    if (operation.shouldCommit()) {
+      operation.items = items;
+      if (report != null) {
+        operation.applied = report.getCount(WriteResult.Status.APPLIED);
+        operation.skipped = report.getCount(WriteResult.Status.SKIPPED);
+        operation.notFound = report.getCount(WriteResult.Status.NOT_FOUND);
+        operation.failed = report.getCount(WriteResult.Status.FAILED);
+      }
+      operation.commit();
+    }
+  }
+
+  /**
+   * Commits the event of a client operation which failed.
+   *
+   * @param error the exception the operation failed with
+   */
+  public void failed(Throwable error) {
+    OperationEvent operation = (OperationEvent) this.event;
+    operation.end();
+    if (operation.shouldCommit()) {
+      operation.error = error.toString();
+      operation.commit();
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package io.truemark;
 
+import io.truemark.exception.NewRelicException;
 import io.truemark.exception.NewRelicNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.BeforeClass;
@@ -111,7 +112,7 @@ public class NewRelicClientTest {
         }
       }
       log.info("testDisableSynthetic completed successfully.");
-    } catch (NewRelicNotFoundException e) {
+    } catch (NewRelicException e) {
       log.error("Error occurred while testing testDisableSynthetic. " + e.getMessage(), e);
     }
   }
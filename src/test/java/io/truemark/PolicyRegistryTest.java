@@ -0,0 +1,121 @@
+package io.truemark;
+
+import io.truemark.data.Policies;
+import io.truemark.data.Policy;
+import io.truemark.exception.NewRelicBadRequestException;
+import io.truemark.http.PageFetcher;
+import io.truemark.http.RestResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for PolicyRegistry.
+ *
+ * @author Abhijeet Kale
+ */
+public class PolicyRegistryTest {
+
+  private static Policy policy(int id, String name) {
+    Policy policy = new Policy();
+    policy.setId(id);
+    policy.setName(name);
+    return policy;
+  }
+
+  private static RestResponse<Policies> page(String next, Policy... policies) {
+    Policies page = new Policies();
+    page.setPolicies(policies);
+    String link = "<" + next + ">; rel=\"next\"";
+    return new RestResponse<>(200, next != null
+        ? Collections.singletonMap("Link", Collections.singletonList(link)) : null, page);
+  }
+
+  @Test
+  public void testFilter() throws IOException {
+    List<String> requested = new ArrayList<>();
+    PageFetcher<Policies> fetcher = uri -> {
+      requested.add(uri);
+      return page(null, policy(1, "Test Policy"), policy(2, "test policy"));
+    };
+    PolicyRegistry registry = new PolicyRegistry(60000);
+    assertThat(registry.get("test policy", fetcher, Runnable::run).getId(), equalTo(2));
+    assertThat(requested, equalTo(Collections.singletonList(
+        "?filter%5Bexact_match%5D=true&filter%5Bname%5D=test+policy")));
+    assertThat(registry.get("test policy", fetcher, Runnable::run).getId(), equalTo(2));
+    assertThat(requested.size(), equalTo(1));
+  }
+
+  @Test
+  public void testFallbackToIndex() throws IOException {
+    List<String> requested = new ArrayList<>();
+    PageFetcher<Policies> fetcher = uri -> {
+      requested.add(uri);
+      if (uri.startsWith("?")) {
+        throw new NewRelicBadRequestException("Unknown parameter");
+      }
+      return uri.isEmpty() ? page("page2", policy(1, "First")) : page(null, policy(2, "Second"));
+    };
+    PolicyRegistry registry = new PolicyRegistry(60000);
+    assertThat(registry.get("Second", fetcher, Runnable::run).getId(), equalTo(2));
+    assertThat(requested.size(), equalTo(3));
+    // the index answers every policy of the account, the filter is not tried again
+    assertThat(registry.get("First", fetcher, Runnable::run).getId(), equalTo(1));
+    assertThat(registry.get("Missing", fetcher, Runnable::run), nullValue());
+    assertThat(requested.size(), equalTo(5));
+  }
+
+  @Test
+  public void testGetAll() throws IOException {
+    List<String> requested = new ArrayList<>();
+    PageFetcher<Policies> fetcher = uri -> {
+      requested.add(uri);
+      return uri.isEmpty() ? page("page2", policy(1, "First"), policy(2, "Second"))
+          : page(null, policy(3, "Third"));
+    };
+    PolicyRegistry registry = new PolicyRegistry(60000);
+    Map<String, Policy> policies = registry.getAll(Arrays.asList("Third", "Missing", "First"),
+        fetcher, Runnable::run);
+    assertThat(new ArrayList<>(policies.keySet()), equalTo(Arrays.asList("Third", "First")));
+    assertThat(policies.get("Third").getId(), equalTo(3));
+    // a single listing of every policy, the cached names are not requested again
+    assertThat(requested.size(), equalTo(2));
+    assertThat(registry.getAll(Arrays.asList("First", "Second"), fetcher, Runnable::run).size(),
+        equalTo(2));
+    assertThat(requested.size(), equalTo(2));
+  }
+
+  @Test
+  public void testDuplicateNames() throws IOException {
+    PageFetcher<Policies> fetcher = uri -> page(null, policy(1, "Same"), policy(2, "Other"),
+        policy(3, "Same"));
+    PolicyRegistry registry = new PolicyRegistry(60000);
+    // the listed and the cached lookup both return the last policy of the name
+    assertThat(registry.get("Same", fetcher, Runnable::run).getId(), equalTo(3));
+    assertThat(registry.get("Same", fetcher, Runnable::run).getId(), equalTo(3));
+
+    PolicyRegistry all = new PolicyRegistry(60000);
+    assertThat(all.getAll(Arrays.asList("Same", "Other"), fetcher, Runnable::run).get("Same")
+        .getId(), equalTo(3));
+    assertThat(all.getAll(Collections.singletonList("Same"), fetcher, Runnable::run).get("Same")
+        .getId(), equalTo(3));
+  }
+
+  @Test
+  public void testAsync() {
+    PolicyRegistry registry = new PolicyRegistry(0);
+    Policy policy = registry.getAsync("Test",
+        uri -> CompletableFuture.completedFuture(page(null, policy(3, "Test")))).join();
+    assertThat(policy.getId(), equalTo(3));
+  }
+}
@@ -0,0 +1,274 @@
+package io.truemark;
+
+import io.truemark.data.ConditionType;
+import io.truemark.exception.NewRelicException;
+import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.http.BulkWriter;
+import io.truemark.http.WriteReport;
+import io.truemark.http.WriteResult;
+import io.truemark.stub.NewRelicStub;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.everyItem;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests NewRelicClient against the local New Relic API stub.
+ *
+ * @author Abhijeet Kale
+ */
+public class StubbedNewRelicClientTest {
+
+  @Test
+  public void testDisableRestoreConditions() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(60, 2, 0)) {
+      NewRelicClient client = stub.client();
+      String policy = NewRelicStub.getPolicyName(55);
+      Map<String, Boolean> states = client.getAlertConditionStats(policy);
+      assertThat(states.size(), equalTo(10));
+
+      WriteReport disabled = client.disableAlertConditions(policy);
+      assertTrue(disabled.isSuccessful());
+      assertThat(disabled.getCount(WriteResult.Status.APPLIED), equalTo(10));
+      assertThat(stub.getConditionStates(policy).values(), everyItem(equalTo(false)));
+      assertThat(stub.getConditionStates(NewRelicStub.getPolicyName(2)).values(),
+          everyItem(equalTo(true)));
+
+      Map<String, WriteReport> restored = client.restoreAlertConditionStates(
+          Collections.singletonMap(policy, states));
+      assertTrue(restored.get(policy).isSuccessful());
+      assertThat(stub.getConditionStates(policy), equalTo(states));
+    }
+  }
+
+  @Test
+  public void testBoundedExecutor() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(50, 1, 0)) {
+      NewRelicClient client = stub.client();
+      stub.setLatency(5, 0);
+      List<String> policies = new ArrayList<>();
+      for (int i = 1; i <= 50; i++) {
+        policies.add(NewRelicStub.getPolicyName(i));
+      }
+      assertThat(client.getAlertConditionStats(policies).size(), equalTo(50));
+      ThreadPoolExecutor executor = (ThreadPoolExecutor) client.getExecutor();
+      assertThat(executor.getLargestPoolSize(), equalTo(BulkWriter.DEFAULT_PARALLELISM));
+
+      client.setWriteParallelism(12);
+      assertThat(executor.getMaximumPoolSize(), equalTo(12));
+      client.setWriteParallelism(2);
+      assertThat(executor.getMaximumPoolSize(), equalTo(ConditionType.values().length));
+    }
+  }
+
+  @Test
+  public void testAsyncDisableRestore() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(3, 2, 0)) {
+      NewRelicClient client = stub.client();
+      client.setWriteParallelism(2);
+      String policy = NewRelicStub.getPolicyName(3);
+      Map<String, Boolean> states = client.getAlertConditionStats(policy);
+      AsyncNewRelicClient async = client.async();
+
+      WriteReport disabled = async.disableAlertConditions(policy).join();
+      assertTrue(disabled.isSuccessful());
+      assertThat(disabled.getCount(WriteResult.Status.APPLIED), equalTo(10));
+      assertThat(stub.getConditionStates(policy).values(), everyItem(equalTo(false)));
+
+      Map<String, Boolean> restore = new HashMap<>(states);
+      restore.put("missing", true);
+      WriteReport restored = async.restoreAlertConditionStates(policy, restore).join();
+      assertThat(restored.getCount(WriteResult.Status.APPLIED), equalTo(10));
+      assertThat(restored.getCount(WriteResult.Status.NOT_FOUND), equalTo(1));
+      assertThat(stub.getConditionStates(policy), equalTo(states));
+    }
+  }
+
+  @Test
+  public void testFailedListing() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(3, 2, 0)) {
+      NewRelicClient client = stub.client();
+      String policy = NewRelicStub.getPolicyName(1);
+      stub.failRequests("alerts_nrql_conditions");
+      WriteReport disabled = client.disableAlertConditions(policy);
+      assertFalse(disabled.isSuccessful());
+      assertThat(disabled.getCount(WriteResult.Status.APPLIED), equalTo(8));
+      assertThat(disabled.getFailures().size(), equalTo(1));
+      assertThat(disabled.getFailures().get(0).getType(), equalTo("NRQL conditions"));
+    }
+  }
+
+  @Test
+  public void testRestoreSkippedAndMissing() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(3, 2, 0)) {
+      NewRelicClient client = stub.client();
+      String policy = NewRelicStub.getPolicyName(1);
+      Map<String, Boolean> states = new HashMap<>(client.getAlertConditionStats(policy));
+      states.put("missing", false);
+      WriteReport restored = client.restoreAlertConditionStates(policy, states);
+      assertFalse(restored.isSuccessful());
+      assertThat(restored.getCount(WriteResult.Status.SKIPPED), equalTo(10));
+      assertThat(restored.getCount(WriteResult.Status.NOT_FOUND), equalTo(1));
+      assertThat(stub.getWriteCount(), equalTo(0L));
+
+      // the NRQL conditions cannot be told apart from missing ones without their listing
+      stub.failRequests("alerts_nrql_conditions");
+      states.remove("missing");
+      restored = client.restoreAlertConditionStates(policy, states);
+      assertThat(restored.getCount(WriteResult.Status.SKIPPED), equalTo(8));
+      assertThat(restored.getCount(WriteResult.Status.FAILED), equalTo(2));
+      assertThat(stub.getWriteCount(), equalTo(0L));
+    }
+  }
+
+  @Test
+  public void testDisableRestoreSynthetics() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(250)) {
+      NewRelicClient client = stub.client();
+      Map<String, Boolean> states = client.getSyntheticStates();
+      assertThat(states.size(), equalTo(250));
+
+      assertTrue(client.disableSynthetics(states.keySet()).isSuccessful());
+      assertThat(stub.getMonitorStatuses().values(), everyItem(equalTo("DISABLED")));
+
+      WriteReport restored = client.restoreSyntheticStates(states);
+      assertThat(restored.getCount(WriteResult.Status.APPLIED), equalTo(250));
+      assertThat(stub.getMonitorStatuses().values(), everyItem(equalTo("ENABLED")));
+    }
+  }
+
+  @Test
+  public void testRestoreNullSyntheticState() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(20)) {
+      NewRelicClient client = stub.client();
+      String name = NewRelicStub.monitor(1).getName();
+      Map<String, Boolean> states = new HashMap<>();
+      states.put(name, null);
+      states.put(NewRelicStub.monitor(2).getName(), false);
+
+      WriteReport restored = client.restoreSyntheticStates(states);
+      assertThat(restored.getCount(WriteResult.Status.APPLIED), equalTo(1));
+      assertThat(restored.getFailures().size(), equalTo(1));
+      assertThat(restored.getFailures().get(0).getName(), equalTo(name));
+      assertThat(stub.getMonitorStatuses().get(name), equalTo("ENABLED"));
+
+      restored = client.async().restoreSyntheticStates(states).join();
+      assertThat(restored.getCount(WriteResult.Status.SKIPPED), equalTo(1));
+      assertThat(restored.getFailures().size(), equalTo(1));
+      assertThat(restored.getFailures().get(0).getName(), equalTo(name));
+    }
+  }
+
+  @Test
+  public void testFailedSyntheticsPage() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(60)) {
+      NewRelicClient client = stub.client();
+      client.setPageSize(20);
+      stub.failRequests("offset=20&");
+      try {
+        client.getSyntheticStates();
+        fail("Expected the listing to fail");
+      } catch (NewRelicNotFoundException x) {
+        // the states of the first page alone are not returned
+      }
+      WriteReport disabled = client.disableSynthetics(Arrays.asList(
+          NewRelicStub.monitor(1).getName(), NewRelicStub.monitor(50).getName()));
+      assertThat(disabled.getCount(WriteResult.Status.APPLIED), equalTo(1));
+      assertThat(disabled.getFailures().size(), equalTo(1));
+      assertThat(disabled.getFailures().get(0).getName(), equalTo(
+          NewRelicStub.monitor(50).getName()));
+    }
+  }
+
+  @Test
+  public void testThrottled() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(20)) {
+      NewRelicClient client = stub.client();
+      client.setRateLimitRetries(3);
+      Map<String, Boolean> states = client.getSyntheticStates();
+      stub.setRateLimit(10);
+      WriteReport disabled = client.disableSynthetics(states.keySet());
+      assertTrue(disabled.toString(), disabled.isSuccessful());
+      assertTrue(stub.getThrottledCount() > 0);
+      assertThat(stub.getMonitorStatuses().values(), everyItem(equalTo("DISABLED")));
+    }
+  }
+
+  @Test
+  public void testServerErrors() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(20)) {
+      NewRelicClient client = stub.client();
+      stub.setWriteErrorRate(1);
+      WriteReport disabled = client.disableSynthetics(Arrays.asList(
+          NewRelicStub.monitor(1).getName(), NewRelicStub.monitor(2).getName(), "missing"));
+      assertThat(disabled.getCount(WriteResult.Status.FAILED), equalTo(2));
+      assertThat(disabled.getCount(WriteResult.Status.NOT_FOUND), equalTo(1));
+      assertThat(stub.getErrorCount(), equalTo(2L));
+    }
+  }
+
+  @Test
+  public void testFailedSyntheticUpdate() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(20)) {
+      NewRelicClient client = stub.client();
+      stub.setWriteErrorRate(1);
+      String name = NewRelicStub.monitor(1).getName();
+      try {
+        client.disableSynthetic(name);
+        fail("Expected the update to fail");
+      } catch (NewRelicNotFoundException x) {
+        fail("Expected the update to fail rather than the synthetic not to be found");
+      } catch (NewRelicException x) {
+        // the failed update is reported
+      }
+      try {
+        client.async().disableSynthetic(name).join();
+        fail("Expected the update to fail");
+      } catch (CompletionException x) {
+        assertThat(x.getCause(), instanceOf(NewRelicException.class));
+        assertThat(x.getCause(), not(instanceOf(NewRelicNotFoundException.class)));
+      }
+      assertThat(stub.getMonitorStatuses().get(name), equalTo("ENABLED"));
+    }
+  }
+
+  @Test
+  public void testSerializedWithAdaptivePageSize() throws Exception {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      NewRelicClient client = stub.client();
+      client.setAdaptivePageSize(500);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(client);
+      }
+      NewRelicClient copy;
+      try (ObjectInputStream in = new ObjectInputStream(
+          new ByteArrayInputStream(bytes.toByteArray()))) {
+        copy = (NewRelicClient) in.readObject();
+      }
+      assertThat(copy.getAdaptivePageSize(), notNullValue());
+      assertThat(copy.getSyntheticStates().size(), equalTo(30));
+    }
+  }
+}
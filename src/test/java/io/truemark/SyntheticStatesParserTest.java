@@ -0,0 +1,52 @@
+package io.truemark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for SyntheticStatesParser.
+ *
+ * @author Abhijeet Kale
+ */
+public class SyntheticStatesParserTest {
+
+  private static SyntheticStatesParser.Page parse(String json) throws IOException {
+    return SyntheticStatesParser.INSTANCE.parse(new ObjectMapper().getFactory().createParser(json));
+  }
+
+  @Test
+  public void testParse() throws IOException {
+    SyntheticStatesParser.Page page = parse("{\"monitors\":["
+        + "{\"id\":\"a\",\"name\":\"first\",\"locations\":[\"AWS_US_EAST_1\"],"
+        + "\"options\":{\"status\":\"DISABLED\",\"nested\":[{\"name\":\"x\"}]},"
+        + "\"status\":\"ENABLED\"},"
+        + "{\"status\":\"disabled\",\"frequency\":5,\"name\":\"second\"},"
+        + "{\"name\":\"third\",\"status\":\"MUTED\"},"
+        + "{\"name\":\"fourth\"}"
+        + "],\"count\":4,\"extra\":{\"count\":10}}");
+    List<Map.Entry<String, Boolean>> states = page.getStates();
+    assertThat(page.getCount(), equalTo(4));
+    assertThat(states.size(), equalTo(4));
+    assertThat(states.get(0).getKey(), equalTo("first"));
+    assertThat(states.get(0).getValue(), equalTo(true));
+    assertThat(states.get(1).getKey(), equalTo("second"));
+    assertThat(states.get(1).getValue(), equalTo(false));
+    assertThat(states.get(2).getValue(), equalTo(true));
+    assertThat(states.get(3).getValue(), nullValue());
+  }
+
+  @Test
+  public void testEmptyPage() throws IOException {
+    SyntheticStatesParser.Page page = parse("{\"monitors\":[]}");
+    assertThat(page.getStates().size(), equalTo(0));
+    assertThat(page.getCount(), nullValue());
+  }
+}
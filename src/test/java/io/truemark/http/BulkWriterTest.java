@@ -0,0 +1,115 @@
+package io.truemark.http;
+
+import io.truemark.exception.NewRelicBadRequestException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for BulkWriter.
+ *
+ * @author Abhijeet Kale
+ */
+public class BulkWriterTest {
+
+  @Test
+  public void testBoundedParallelism() {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      AtomicInteger inFlight = new AtomicInteger();
+      AtomicInteger maxInFlight = new AtomicInteger();
+      List<BulkWriter.Task> tasks = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        int item = i;
+        tasks.add(new BulkWriter.Task("condition", "c" + i, () -> {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+          } finally {
+            inFlight.decrementAndGet();
+          }
+          if (item % 10 == 0) {
+            throw new NewRelicBadRequestException("Invalid condition");
+          }
+        }));
+      }
+      List<WriteResult> results = new BulkWriter(executor, 4).execute(tasks);
+      WriteReport report = new WriteReport(results, 0);
+      assertThat(maxInFlight.get() <= 4, equalTo(true));
+      assertThat(results.get(1).getName(), equalTo("c1"));
+      assertThat(report.getCount(WriteResult.Status.APPLIED), equalTo(36));
+      assertThat(report.getFailures().size(), equalTo(4));
+      assertThat(report.getFailures().get(0).getError(),
+          instanceOf(NewRelicBadRequestException.class));
+      assertThat(report.isSuccessful(), equalTo(false));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSerialOnCallingThread() {
+    Thread caller = Thread.currentThread();
+    List<BulkWriter.Task> tasks = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      tasks.add(new BulkWriter.Task("synthetic", "s" + i,
+          () -> threads.add(Thread.currentThread())));
+    }
+    List<WriteResult> results = new BulkWriter(command -> {
+      throw new AssertionError("No task expected on the executor");
+    }, 1).execute(tasks);
+    assertThat(new WriteReport(results, 0).isSuccessful(), equalTo(true));
+    for (Thread thread : threads) {
+      assertThat(thread, equalTo(caller));
+    }
+  }
+
+  @Test
+  public void testAsyncBoundedParallelism() {
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    try {
+      AtomicInteger inFlight = new AtomicInteger();
+      AtomicInteger maxInFlight = new AtomicInteger();
+      List<BulkWriter.AsyncTask> tasks = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        int item = i;
+        tasks.add(new BulkWriter.AsyncTask("condition", "c" + i, () -> {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          CompletableFuture<Void> write = new CompletableFuture<>();
+          executor.schedule(() -> {
+            inFlight.decrementAndGet();
+            if (item % 10 == 0) {
+              write.completeExceptionally(new NewRelicBadRequestException("Invalid condition"));
+            } else {
+              write.complete(null);
+            }
+          }, 2, TimeUnit.MILLISECONDS);
+          return write;
+        }));
+      }
+      List<WriteResult> results = BulkWriter.executeAsync(tasks, 3).join();
+      WriteReport report = new WriteReport(results, 0);
+      assertThat(maxInFlight.get(), equalTo(3));
+      assertThat(results.get(1).getName(), equalTo("c1"));
+      assertThat(report.getCount(WriteResult.Status.APPLIED), equalTo(36));
+      assertThat(report.getFailures().get(0).getError(),
+          instanceOf(NewRelicBadRequestException.class));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
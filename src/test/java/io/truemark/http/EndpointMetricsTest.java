@@ -0,0 +1,66 @@
+package io.truemark.http;
+
+import io.truemark.NewRelicClient;
+import io.truemark.exception.NewRelicNotFoundException;
+import io.truemark.stub.NewRelicStub;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for EndpointMetrics and the request events of URLConnectionRestClient.
+ *
+ * @author Abhijeet Kale
+ */
+public class EndpointMetricsTest {
+
+  @Test
+  public void testEndpoint() {
+    assertThat(RequestEvent.getEndpoint(
+        "https://api.newrelic.com/v2/alerts_nrql_conditions/123.json"),
+        equalTo("alerts_nrql_conditions/{id}"));
+    assertThat(RequestEvent.getEndpoint(
+        "https://api.newrelic.com/v2/alerts_conditions/?policy_id=42&page=2"),
+        equalTo("alerts_conditions"));
+    assertThat(RequestEvent.getEndpoint("https://api.newrelic.com/v2/alerts_policies.json"
+        + "?filter%5Bname%5D=a/b"), equalTo("alerts_policies"));
+    assertThat(RequestEvent.getEndpoint(
+        "https://synthetics.newrelic.com/synthetics/api/v3/monitors/"
+            + "6a4a1c8e-0a3b-4b8f-0000-000000000001"),
+        equalTo("synthetics/api/v3/monitors/{id}"));
+    assertThat(RequestEvent.getEndpoint("http://localhost"), equalTo(""));
+  }
+
+  @Test
+  public void testMetrics() throws IOException, NewRelicNotFoundException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      NewRelicClient client = stub.client();
+      EndpointMetrics metrics = new EndpointMetrics();
+      client.setMetricsListener(metrics);
+      client.setPageSize(20);
+      stub.setWriteErrorRate(1);
+      client.disableSynthetics(Arrays.asList(NewRelicStub.monitor(1).getName(),
+          NewRelicStub.monitor(2).getName()));
+
+      Map<String, EndpointMetrics.Snapshot> snapshot = metrics.snapshot();
+      assertThat(snapshot.keySet(), equalTo(new TreeSet<>(Arrays.asList(
+          "GET monitors", "PUT monitors/{id}"))));
+      EndpointMetrics.Snapshot listing = snapshot.get("GET monitors");
+      assertThat(listing.getCount(), equalTo(2L));
+      assertThat(listing.getErrorCount(), equalTo(0L));
+      assertTrue(listing.getResponseBytes() > 1000);
+      assertTrue(listing.getTotal().getMaxMicros() >= listing.getFirstByte().getMaxMicros());
+      EndpointMetrics.Snapshot updates = snapshot.get("PUT monitors/{id}");
+      assertThat(updates.getCount(), equalTo(2L));
+      assertThat(updates.getErrorCount(), equalTo(2L));
+      assertTrue(updates.getRequestBytes() > 100);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package io.truemark.http;
+
+import io.truemark.data.Synthetics;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for ExecutorAsyncRestClient.
+ *
+ * @author Abhijeet Kale
+ */
+public class ExecutorAsyncRestClientTest {
+
+  @Test
+  public void testRejected() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    // the call is never run, so no client is needed
+    AsyncRestClient client = new ExecutorAsyncRestClient(null, executor);
+    CompletableFuture<Synthetics> future = client.get("monitors", Synthetics.class);
+    assertTrue(future.isCompletedExceptionally());
+    try {
+      future.join();
+      fail("Expected the call to be rejected");
+    } catch (CompletionException x) {
+      assertThat(x.getCause(), instanceOf(RejectedExecutionException.class));
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package io.truemark.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.anyOf;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for Hedging.
+ *
+ * @author Abhijeet Kale
+ */
+public class HedgingTest {
+
+  /**
+   * A request returning its number after a delay, or blocking until cancelled when it stalls.
+   */
+  private static class TestRequest implements Hedging.Request<Integer> {
+    private final int number;
+    private final boolean stall;
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    TestRequest(int number, boolean stall) {
+      this.number = number;
+      this.stall = stall;
+    }
+
+    @Override
+    public Integer send() throws IOException {
+      try {
+        if (cancelled.await(stall ? 10000 : 1, TimeUnit.MILLISECONDS)) {
+          throw new InterruptedIOException("cancelled");
+        }
+      } catch (InterruptedException x) {
+        throw new InterruptedIOException();
+      }
+      return number;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled.countDown();
+    }
+  }
+
+  private static void warm(Hedging hedging) throws IOException {
+    for (int i = 0; i < Hedging.MIN_SAMPLES; i++) {
+      hedging.execute(() -> new TestRequest(0, false));
+    }
+  }
+
+  @Test
+  public void testHedgeWins() throws IOException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      Hedging hedging = new Hedging(0.9, 0.5, executor);
+      assertThat(hedging.getDelayNanos(), equalTo(-1L));
+      warm(hedging);
+      assertTrue(hedging.getDelayNanos() > 0);
+      AtomicInteger created = new AtomicInteger();
+      TestRequest[] requests = {new TestRequest(1, true), new TestRequest(2, false)};
+      long start = System.nanoTime();
+      int result = hedging.execute(() -> requests[created.getAndIncrement()]);
+      assertThat(result, equalTo(2));
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+      assertThat(requests[0].cancelled.getCount(), equalTo(0L));
+      assertThat(hedging.getHedgeCount(), equalTo(1L));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBudget() throws IOException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      Hedging hedging = new Hedging(0.3, 0.05, executor);
+      warm(hedging);
+      AtomicInteger created = new AtomicInteger();
+      for (int i = 0; i < 40; i++) {
+        // every request is slower than the percentile
+        hedging.execute(() -> {
+          created.incrementAndGet();
+          return new Hedging.Request<Integer>() {
+            @Override
+            public Integer send() throws IOException {
+              try {
+                Thread.sleep(20);
+              } catch (InterruptedException x) {
+                throw new InterruptedIOException();
+              }
+              return 0;
+            }
+
+            @Override
+            public void cancel() {
+            }
+          };
+        });
+      }
+      assertThat(hedging.getRequestCount(), equalTo(60L));
+      assertThat(hedging.getHedgeCount(), equalTo(3L));
+      assertThat(created.get(), equalTo(43));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testUpdatingReader() throws IOException, InterruptedException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    AtomicInteger count = new AtomicInteger();
+    CountDownLatch hedged = new CountDownLatch(1);
+    server.setExecutor(executor);
+    server.createContext("/", exchange -> {
+      int n = count.incrementAndGet();
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream out = exchange.getResponseBody()) {
+        if (n == Hedging.MIN_SAMPLES + 1) {
+          // the first copy of the hedged request stalls half way through its body
+          out.write("{\"name\":\"primary\",".getBytes(StandardCharsets.UTF_8));
+          out.flush();
+          try {
+            hedged.await(5, TimeUnit.SECONDS);
+            Thread.sleep(200);
+          } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+          }
+          out.write("\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        } else {
+          if (n == Hedging.MIN_SAMPLES + 2) {
+            hedged.countDown();
+          }
+          out.write(("{\"id\":" + n + ",\"hedge\":" + (n > Hedging.MIN_SAMPLES) + "}")
+              .getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    });
+    server.start();
+    try {
+      URLConnectionRestClient client = new URLConnectionRestClient(
+          "http://127.0.0.1:" + server.getAddress().getPort() + "/", "key");
+      Hedging hedging = new Hedging(0.5, 1, executor);
+      client.setHedging(hedging);
+      for (int i = 0; i < Hedging.MIN_SAMPLES; i++) {
+        client.get("items", new HashMap<String, Object>());
+      }
+      Map<String, Object> item = new HashMap<>();
+      assertThat(client.get("items", item), sameInstance(item));
+      assertThat(hedging.getHedgeCount(), equalTo(1L));
+      // a single response is read into the object, either copy may have completed first
+      Map<String, Object> primary = new HashMap<>();
+      primary.put("name", "primary");
+      primary.put("id", 1);
+      Map<String, Object> hedge = new HashMap<>();
+      hedge.put("id", Hedging.MIN_SAMPLES + 2);
+      hedge.put("hedge", true);
+      assertThat(item, anyOf(equalTo(primary), equalTo(hedge)));
+    } finally {
+      hedged.countDown();
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+}
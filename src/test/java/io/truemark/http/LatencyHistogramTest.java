@@ -0,0 +1,51 @@
+package io.truemark.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for LatencyHistogram.
+ *
+ * @author Abhijeet Kale
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long value = 0; value < 1 << 20; value += 1 + value / 100) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(value + " above its bucket", value <= LatencyHistogram.highestValue(index));
+      assertTrue(value + " below its bucket",
+          index == 0 || value > LatencyHistogram.highestValue(index - 1));
+      assertTrue(value + " in a wide bucket",
+          LatencyHistogram.highestValue(index) - value <= Math.max(1, value / 16));
+    }
+    assertThat(LatencyHistogram.index(LatencyHistogram.MAX_VALUE),
+        equalTo(LatencyHistogram.BUCKETS - 1));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int millis = 1; millis <= 1000; millis++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+    histogram.record(TimeUnit.DAYS.toNanos(1));
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getCount(), equalTo(1001L));
+    assertThat(snapshot.getMaxMicros(), equalTo(LatencyHistogram.MAX_VALUE));
+    assertNear(snapshot.getPercentileMicros(0.5), 501000);
+    assertNear(snapshot.getPercentileMicros(0.99), 991000);
+    assertThat(snapshot.getPercentileMicros(1), equalTo(LatencyHistogram.MAX_VALUE));
+    assertThat(new LatencyHistogram().snapshot().getPercentileMicros(0.5), equalTo(0L));
+  }
+
+  private static void assertNear(long actual, long expected) {
+    assertTrue(actual + " is not near " + expected, Math.abs(actual - expected) <= expected / 30);
+  }
+}
@@ -0,0 +1,212 @@
+package io.truemark.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for Paginator and the paging strategies.
+ *
+ * @author Abhijeet Kale
+ */
+public class PaginatorTest {
+
+  /**
+   * Serves the numbers 0 until total in pages, recording the requested uris.
+   */
+  private static class NumberPages implements PageFetcher<List<Integer>> {
+    private final int total;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    NumberPages(int total) {
+      this.total = total;
+    }
+
+    @Override
+    public RestResponse<List<Integer>> fetch(String uri) throws IOException {
+      requests.add(uri);
+      int offset = Integer.parseInt(uri.replaceAll(".*offset=(\\d+).*", "$1"));
+      int limit = Integer.parseInt(uri.replaceAll(".*limit=(\\d+).*", "$1"));
+      List<Integer> page = new ArrayList<>();
+      for (int i = offset; i < Math.min(offset + limit, total); i++) {
+        page.add(i);
+      }
+      return new RestResponse<>(200, Collections.emptyMap(), page);
+    }
+  }
+
+  private static Paginator<List<Integer>, Integer> numbers(NumberPages pages) {
+    return new Paginator<>(new OffsetPagingStrategy<>("/numbers", 0, 10, page -> null), pages,
+        page -> page);
+  }
+
+  @Test
+  public void testOffsetPagingStopsOnShortPage() {
+    NumberPages pages = new NumberPages(25);
+    List<Integer> items = numbers(pages).stream().collect(Collectors.toList());
+    assertThat(items.size(), equalTo(25));
+    assertThat(pages.requests, equalTo(Arrays.asList("/numbers?offset=0&limit=10",
+        "/numbers?offset=10&limit=10", "/numbers?offset=20&limit=10")));
+  }
+
+  @Test
+  public void testOffsetPagingStopsAtTotal() {
+    NumberPages pages = new NumberPages(20);
+    Paginator<List<Integer>, Integer> paginator = new Paginator<>(
+        new OffsetPagingStrategy<>("/numbers", 0, 10, page -> 20), pages, page -> page);
+    assertThat(paginator.stream().count(), equalTo(20L));
+    assertThat(pages.requests.size(), equalTo(2));
+  }
+
+  @Test
+  public void testEarlyStopFetchesNoFurtherPages() {
+    NumberPages pages = new NumberPages(100);
+    try (Stream<Integer> stream = numbers(pages).stream()) {
+      assertThat(stream.filter(i -> i == 12).findFirst().get(), equalTo(12));
+    }
+    assertThat(pages.requests.size(), equalTo(2));
+  }
+
+  @Test
+  public void testPrefetch() {
+    NumberPages pages = new NumberPages(95);
+    List<Integer> items = new ArrayList<>();
+    for (Integer i : numbers(pages).prefetch(Executors.newSingleThreadExecutor(
+        new DaemonThreadFactory("paginator-test")))) {
+      items.add(i);
+    }
+    assertThat(items.size(), equalTo(95));
+    assertThat(items.get(94), equalTo(94));
+    assertThat(pages.requests.size(), equalTo(10));
+  }
+
+  @Test
+  public void testParallelCollect() {
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+    NumberPages pages = new NumberPages(95) {
+      @Override
+      public RestResponse<List<Integer>> fetch(String uri) throws IOException {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(20);
+          return super.fetch(uri);
+        } catch (InterruptedException x) {
+          throw new IOException(x);
+        } finally {
+          active.decrementAndGet();
+        }
+      }
+    };
+    List<Integer> items = Paginator.collect(
+        new OffsetPagingStrategy<>("/numbers", 0, 10, page -> 95), pages, page -> page,
+        Executors.newCachedThreadPool(new DaemonThreadFactory("paginator-test")), 3);
+    assertThat(items.size(), equalTo(95));
+    for (int i = 0; i < items.size(); i++) {
+      assertThat(items.get(i), equalTo(i));
+    }
+    assertThat(pages.requests.size(), equalTo(10));
+    assertThat(maxActive.get(), equalTo(3));
+  }
+
+  /**
+   * Serves pages, timing out any request for maxLimit or more items.
+   */
+  private static NumberPages timingOut(int total, int maxLimit) {
+    return new NumberPages(total) {
+      @Override
+      public RestResponse<List<Integer>> fetch(String uri) throws IOException {
+        if (Integer.parseInt(uri.replaceAll(".*limit=(\\d+).*", "$1")) >= maxLimit) {
+          throw new SocketTimeoutException("Read timed out");
+        }
+        return super.fetch(uri);
+      }
+    };
+  }
+
+  private static void assertNumbers(List<Integer> items, int total) {
+    assertThat(items.size(), equalTo(total));
+    for (int i = 0; i < items.size(); i++) {
+      assertThat(items.get(i), equalTo(i));
+    }
+  }
+
+  @Test
+  public void testAdaptivePageSize() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(20, 1, 100, 60000);
+    NumberPages pages = timingOut(200, 80);
+    List<Integer> items = new Paginator<>(
+        new OffsetPagingStrategy<>("/numbers", 0, pageSize, page -> 200),
+        pageSize.measure(pages), page -> page).stream().collect(Collectors.toList());
+    assertNumbers(items, 200);
+    assertThat(pages.requests.get(1), equalTo("/numbers?offset=20&limit=40"));
+    assertThat(pages.requests.get(2), equalTo("/numbers?offset=60&limit=40"));
+  }
+
+  @Test
+  public void testAdaptivePageSizeParallel() {
+    AdaptivePageSize pageSize = new AdaptivePageSize(20, 1, 100, 60000);
+    NumberPages pages = timingOut(200, 40);
+    List<Integer> items = Paginator.collect(
+        new OffsetPagingStrategy<>("/numbers", 0, pageSize, page -> 200),
+        pageSize.measure(pages), page -> page,
+        Executors.newCachedThreadPool(new DaemonThreadFactory("paginator-test")), 3);
+    assertNumbers(items, 200);
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void testFixedPageSizeDoesNotRetry() {
+    numbers(timingOut(100, 10)).iterator().hasNext();
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void testFetchFailure() {
+    new Paginator<List<Integer>, Integer>(new LinkPagingStrategy<>("/numbers"), uri -> {
+      throw new IOException("failed");
+    }, page -> page).iterator().hasNext();
+  }
+
+  @Test
+  public void testLinkPaging() {
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("Link", Collections.singletonList(
+        "<https://api.newrelic.com/v2/alerts_policies.json?page=3>; rel=\"next\", "
+            + "<https://api.newrelic.com/v2/alerts_policies.json?page=5>; rel=\"last\""));
+    Map<String, List<Integer>> bodies = new HashMap<>();
+    bodies.put("/first", Arrays.asList(1, 2));
+    bodies.put("https://api.newrelic.com/v2/alerts_policies.json?page=3", Arrays.asList(3));
+    List<Integer> items = new Paginator<List<Integer>, Integer>(
+        new LinkPagingStrategy<>("/first"),
+        uri -> new RestResponse<>(200, uri.equals("/first") ? headers
+            : Collections.<String, List<String>>emptyMap(), bodies.get(uri)),
+        page -> page).stream().collect(Collectors.toList());
+    assertThat(items, equalTo(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void testLinkHeaderParsing() {
+    assertThat(LinkPagingStrategy.getNext("<https://x/a?page=2>; rel=\"next\""),
+        equalTo("https://x/a?page=2"));
+    assertThat(LinkPagingStrategy.getNext(
+        "<https://x/a?page=1>; rel=\"first\", <https://x/a?page=2>; rel=next"),
+        equalTo("https://x/a?page=2"));
+    assertThat(LinkPagingStrategy.getNext("<https://x/a?page=1>; rel=\"last\""), nullValue());
+    assertThat(LinkPagingStrategy.getNext(null), nullValue());
+  }
+}
@@ -4,6 +4,10 @@ import lombok.Data;
 import lombok.experimental.Accessors;
 import org.junit.Test;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 
@@ -21,6 +25,15 @@ public class QueryStringBuilderTest {
     private String test2;
   }
 
+  @Data
+  @Accessors(chain = true)
+  public static class PagedObject {
+    private int page;
+    private boolean exactMatch;
+    private Long offset;
+    private String[] ids;
+  }
+
   @Test
   public void testToQueryString() {
     QueryStringBuilder qb = new QueryStringBuilder();
@@ -44,4 +57,39 @@ public class QueryStringBuilderTest {
     String queryString = qb.toQueryString();
     assertThat(queryString, equalTo("test1=m%26m&test2=x%3Dy"));
   }
+
+  @Test
+  public void testEncodeLikeURLEncoder() throws UnsupportedEncodingException {
+    for (String value : Arrays.asList("", "plain", "a b+c", "~!@#$%^&()={}[]|\\:;\"'<>,?/`",
+        "caf\u00e9 \u00fcber", "\u20ac \u4e2d\u6587", "emoji \ud83d\ude00", "lone \ud83d end",
+        "lone \ude00", "\u0000\u007f\u0080\u07ff\u0800\uffff")) {
+      StringBuilder sb = new StringBuilder();
+      QueryStringBuilder.encode(value, sb);
+      assertThat(value, sb.toString(), equalTo(URLEncoder.encode(value, "UTF-8")));
+    }
+  }
+
+  @Test
+  public void testValueTypes() {
+    QueryStringBuilder qb = new QueryStringBuilder();
+    qb.add(new PagedObject().setPage(2).setExactMatch(true).setIds(new String[] {"a b", "c"}));
+    qb.add("filter", Arrays.asList(1L, "x&y"));
+    assertThat(qb.toQueryString(),
+        equalTo("exactMatch=true&filter=1&filter=x%26y&ids=a+b&ids=c&page=2"));
+    assertThat(qb.toQueryString(),
+        equalTo("exactMatch=true&filter=1&filter=x%26y&ids=a+b&ids=c&page=2"));
+  }
+
+  @Test
+  public void testNestedQueryString() {
+    Object nested = new Object() {
+      @Override
+      public String toString() {
+        return new QueryStringBuilder().add("inner", "a b").toQueryString();
+      }
+    };
+    QueryStringBuilder qb = new QueryStringBuilder();
+    qb.add("outer", nested).add("z", "last");
+    assertThat(qb.toQueryString(), equalTo("outer=inner%3Da%2Bb&z=last"));
+  }
 }
@@ -0,0 +1,150 @@
+package io.truemark.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for RateLimiter.
+ *
+ * @author Abhijeet Kale
+ */
+public class RateLimiterTest {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * A limiter on a clock which only moves when told to.
+   */
+  private static class ManualRateLimiter extends RateLimiter {
+    private static final long serialVersionUID = 7518290336420981764L;
+    long now;
+
+    ManualRateLimiter() {
+    }
+
+    ManualRateLimiter(double requestsPerSecond, int burst) {
+      super(requestsPerSecond, burst);
+    }
+
+    @Override
+    protected long nanoTime() {
+      return now;
+    }
+  }
+
+  private static Map<String, List<String>> headers(String... nameValues) {
+    Map<String, List<String>> headers = new HashMap<>();
+    for (int i = 0; i < nameValues.length; i += 2) {
+      headers.put(nameValues[i], Collections.singletonList(nameValues[i + 1]));
+    }
+    return headers;
+  }
+
+  @Test
+  public void testBurstThenRate() {
+    ManualRateLimiter limiter = new ManualRateLimiter(10, 2);
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(100 * MS));
+    assertThat(limiter.reserve(), equalTo(200 * MS));
+    limiter.now = 1000 * MS; // idle long enough to refill the burst
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(0L));
+    assertThat(limiter.reserve(), equalTo(100 * MS));
+  }
+
+  @Test
+  public void testUnlimited() {
+    ManualRateLimiter limiter = new ManualRateLimiter();
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.reserve(), equalTo(0L));
+    }
+  }
+
+  @Test
+  public void testThrottledPausesAndSlowsDown() {
+    ManualRateLimiter limiter = new ManualRateLimiter(10, 1);
+    limiter.reserve();
+    limiter.onThrottled(2000);
+    assertThat(limiter.getRate(), equalTo(5.0));
+    assertThat(limiter.reserve(), equalTo(2000 * MS));
+    assertThat(limiter.reserve(), equalTo(2200 * MS));
+    for (int i = 0; i < 100; i++) {
+      limiter.onResponse(headers());
+    }
+    assertThat(limiter.getRate(), equalTo(10.0));
+  }
+
+  @Test
+  public void testThrottledWithoutRate() {
+    ManualRateLimiter limiter = new ManualRateLimiter();
+    limiter.onThrottled(-1);
+    assertThat(limiter.reserve(),
+        equalTo(TimeUnit.MILLISECONDS.toNanos(RateLimiter.DEFAULT_RETRY_AFTER_MILLIS)));
+    limiter.now = 5000 * MS;
+    assertThat(limiter.reserve(), equalTo(0L));
+  }
+
+  @Test
+  public void testThrottledLearnsMeasuredRate() {
+    ManualRateLimiter limiter = new ManualRateLimiter();
+    for (int i = 0; i < 50; i++) {
+      assertThat(limiter.reserve(), equalTo(0L));
+      limiter.now += 20 * MS;
+    }
+    limiter.onThrottled(1000);
+    assertThat(limiter.getMaxRate(), equalTo(50.0));
+    assertThat(limiter.getRate(), equalTo(25.0));
+    assertThat(limiter.reserve(), equalTo(1000 * MS));
+    assertThat(limiter.reserve(), equalTo(1040 * MS));
+    for (int i = 0; i < 100; i++) {
+      limiter.onResponse(headers());
+    }
+    assertThat(limiter.getRate(), equalTo(50.0));
+    limiter.onThrottled(1000);
+    assertThat(limiter.getMaxRate(), equalTo(50.0));
+    assertThat(limiter.getRate(), equalTo(25.0));
+  }
+
+  @Test
+  public void testThrottledWithoutMeasuredRate() {
+    ManualRateLimiter limiter = new ManualRateLimiter();
+    limiter.reserve();
+    limiter.onThrottled(1000);
+    assertThat(limiter.getMaxRate(), equalTo(RateLimiter.DEFAULT_THROTTLED_RATE));
+    assertThat(limiter.getRate(), equalTo(RateLimiter.DEFAULT_THROTTLED_RATE / 2));
+  }
+
+  @Test
+  public void testQuotaExhausted() {
+    ManualRateLimiter limiter = new ManualRateLimiter();
+    limiter.onResponse(headers("x-ratelimit-remaining", "3", "x-ratelimit-reset", "30"));
+    assertThat(limiter.reserve(), equalTo(0L));
+    limiter.onResponse(headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "30"));
+    assertThat(limiter.reserve(), equalTo(30000 * MS));
+  }
+
+  @Test
+  public void testRetryAfter() {
+    assertThat(RateLimiter.getRetryAfterMillis(headers("Retry-After", "7")), equalTo(7000L));
+    assertThat(RateLimiter.getRetryAfterMillis(
+        headers("retry-after", "Wed, 21 Oct 2015 07:28:00 GMT")), equalTo(0L));
+    assertThat(RateLimiter.getRetryAfterMillis(
+        headers("X-RateLimit-Remaining", "0", "X-RateLimit-Reset", "4")), equalTo(4000L));
+    assertThat(RateLimiter.getRetryAfterMillis(headers()), equalTo(-1L));
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put(null, Arrays.asList("HTTP/1.1 429 Too Many Requests"));
+    assertThat(RateLimiter.getRetryAfterMillis(headers), equalTo(-1L));
+  }
+}
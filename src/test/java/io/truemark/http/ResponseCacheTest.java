@@ -0,0 +1,97 @@
+package io.truemark.http;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for ResponseCache.
+ *
+ * @author Abhijeet Kale
+ */
+public class ResponseCacheTest {
+
+  private static final Map<String, List<String>> NO_HEADERS = Collections.emptyMap();
+
+  @Test
+  public void testFreshAndStale() {
+    ResponseCache cache = new ResponseCache(60000, 1024);
+    cache.put("http://host/a", new byte[10], Collections.singletonMap("ETag",
+        Collections.singletonList("\"v1\"")));
+    assertThat(cache.getFresh("http://host/a"), notNullValue());
+    assertThat(cache.get("http://host/a").getConditions().get("If-None-Match"),
+        equalTo("\"v1\""));
+
+    ResponseCache stale = new ResponseCache(0, 1024);
+    stale.put("http://host/a", new byte[10], NO_HEADERS);
+    assertThat(stale.get("http://host/a"), notNullValue());
+    assertThat(stale.get("http://host/a").getConditions().size(), equalTo(0));
+  }
+
+  @Test
+  public void testEviction() {
+    ResponseCache cache = new ResponseCache(60000, 100);
+    cache.put("a", new byte[40], NO_HEADERS);
+    cache.put("b", new byte[40], NO_HEADERS);
+    cache.get("a"); // b is now the least recently used
+    cache.put("c", new byte[40], NO_HEADERS);
+    assertThat(cache.get("a"), notNullValue());
+    assertThat(cache.get("b"), nullValue());
+    assertThat(cache.get("c"), notNullValue());
+    assertThat(cache.getBytes(), equalTo(80L));
+    cache.put("d", new byte[101], NO_HEADERS);
+    assertThat(cache.get("d"), nullValue());
+  }
+
+  @Test
+  public void testNoStore() {
+    ResponseCache cache = new ResponseCache(60000, 100);
+    cache.put("a", new byte[10], Collections.singletonMap("cache-control",
+        Collections.singletonList("private, no-store")));
+    assertThat(cache.size(), equalTo(0));
+  }
+
+  @Test
+  public void testInvalidate() {
+    ResponseCache cache = new ResponseCache(60000, 1024);
+    cache.put("https://api/v2/alerts_conditions.json?policy_id=1", new byte[1], NO_HEADERS);
+    cache.put("https://api/v2/alerts_nrql_conditions.json?policy_id=1", new byte[1], NO_HEADERS);
+    cache.invalidate(ResponseCache.getCollection("https://api/v2/alerts_conditions/123.json"));
+    assertThat(cache.size(), equalTo(1));
+    assertThat(cache.getBytes(), equalTo(1L));
+  }
+
+  @Test
+  public void testKeyedByApiKey() {
+    ResponseCache cache = new ResponseCache(60000, 1024);
+    String url = "https://api/v2/alerts_conditions.json?policy_id=1";
+    cache.put(ResponseCache.key("key-a", url), new byte[1], NO_HEADERS);
+    assertThat(cache.getFresh(ResponseCache.key("key-a", url)), notNullValue());
+    assertThat(cache.getFresh(ResponseCache.key("key-b", url)), nullValue());
+
+    // a write with either key invalidates what both read
+    cache.put(ResponseCache.key("key-b", url), new byte[1], NO_HEADERS);
+    cache.invalidate(ResponseCache.getCollection("https://api/v2/alerts_conditions/123.json"));
+    assertThat(cache.size(), equalTo(0));
+  }
+
+  @Test
+  public void testGetCollection() {
+    assertThat(ResponseCache.getCollection("https://api/v2/alerts_conditions/123.json"),
+        equalTo("https://api/v2/alerts_conditions"));
+    assertThat(ResponseCache.getCollection(
+        "https://synthetics/v3/monitors/6a4a1c8e-0a3b-4b8f-9c1d-2f2f2f2f2f2f"),
+        equalTo("https://synthetics/v3/monitors"));
+    assertThat(ResponseCache.getCollection("https://api/v2/alerts_policies.json"),
+        equalTo("https://api/v2/alerts_policies"));
+    assertThat(ResponseCache.getCollection("https://api/v2/alerts_policies.json?x=1"),
+        equalTo("https://api/v2/alerts_policies"));
+  }
+}
@@ -0,0 +1,109 @@
+package io.truemark.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.truemark.data.Synthetics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for the default methods of RestClient.
+ *
+ * @author Abhijeet Kale
+ */
+public class RestClientTest {
+
+  private static final String MONITORS = "{\"monitors\":[{\"name\":\"a\",\"status\":\"ENABLED\"},"
+      + "{\"name\":\"b\",\"status\":\"DISABLED\"}],\"count\":2}";
+
+  /**
+   * An implementation written before the getResponse methods were added, reading every GET from
+   * a fixed body.
+   */
+  private static class LegacyRestClient implements RestClient {
+    private static final long serialVersionUID = -6102853421794716315L;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public <T> T get(String uri, T instance) throws IOException {
+      return objectMapper.readerForUpdating(instance).readValue(MONITORS);
+    }
+
+    @Override
+    public <T> T get(String uri, Class<T> clazz) throws IOException {
+      return objectMapper.readValue(MONITORS, clazz);
+    }
+
+    @Override
+    public <T, S> T get(String uri, Class<T> clazz, Class<S> parameterClass) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T update(String uri, T o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T, U> T patch(String uri, Class<T> clazz, U u) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <V, T> V create(String uri, T o, Class<V> clazz) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T create(String uri, T o) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(String uri) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void execute(String uri) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T postForObject(String uri, Object data, Class<T> clazz) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  public void testDefaultGetResponse() throws IOException {
+    RestResponse<Synthetics> response = new LegacyRestClient().getResponse("monitors",
+        Synthetics.class);
+    assertThat(response.getStatus(), equalTo(200));
+    assertThat(response.getBody().getCount(), equalTo(2));
+    assertThat(response.getHeader("Link"), equalTo(null));
+  }
+
+  @Test
+  public void testDefaultParsedResponse() throws IOException {
+    ResponseParser<List<String>> names = parser -> {
+      List<String> result = new ArrayList<>();
+      while (parser.nextToken() != null) {
+        if ("name".equals(parser.getCurrentName()) && parser.nextToken() != null) {
+          result.add(parser.getText());
+        }
+      }
+      return result;
+    };
+    RestResponse<List<String>> response = new LegacyRestClient().getResponse("monitors", names);
+    assertThat(response.getStatus(), equalTo(200));
+    assertThat(response.getBody().size(), equalTo(2));
+    assertThat(response.getBody().get(0), equalTo("a"));
+    assertThat(response.getBody().get(1), equalTo("b"));
+  }
+}
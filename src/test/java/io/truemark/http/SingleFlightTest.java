@@ -0,0 +1,144 @@
+package io.truemark.http;
+
+import io.truemark.NewRelicClient;
+import io.truemark.stub.NewRelicStub;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for SingleFlight and the coalescing of reads in URLConnectionRestClient.
+ *
+ * @author Abhijeet Kale
+ */
+public class SingleFlightTest {
+
+  @Test
+  public void testShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight();
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+          calls.incrementAndGet();
+          await(release);
+          return "result";
+        })));
+      }
+      while (singleFlight.getSharedCount() < 3) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      for (Future<String> result : results) {
+        assertThat(result.get(5, TimeUnit.SECONDS), equalTo("result"));
+      }
+      assertThat(calls.get(), equalTo(1));
+      assertThat(singleFlight.getCallCount(), equalTo(1L));
+
+      // nothing is kept once the call completed
+      assertThat(singleFlight.execute("key", () -> "again"), equalTo("again"));
+      assertThat(singleFlight.getCallCount(), equalTo(2L));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailureShared() throws Exception {
+    SingleFlight singleFlight = new SingleFlight();
+    CountDownLatch release = new CountDownLatch(1);
+    IOException error = new IOException("failed");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Callable<String> call = () -> singleFlight.execute("key", () -> {
+        await(release);
+        throw error;
+      });
+      Future<String> leader = executor.submit(call);
+      while (singleFlight.getCallCount() < 1) {
+        Thread.sleep(1);
+      }
+      Future<String> follower = executor.submit(call);
+      while (singleFlight.getSharedCount() < 1) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      List<Future<String>> results = Arrays.asList(leader, follower);
+      for (Future<String> result : results) {
+        try {
+          result.get(5, TimeUnit.SECONDS);
+          fail("Expected the call to fail");
+        } catch (ExecutionException x) {
+          assertThat(x.getCause(), sameInstance((Throwable) error));
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCoalescedReads() throws Exception {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      NewRelicClient client = stub.client();
+      client.setPageSize(20);
+      client.setRequestCoalescing(true);
+      stub.setLatency(100, 0);
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+        List<Future<Map<String, Boolean>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+          results.add(executor.submit(() -> {
+            await(start);
+            return client.getSyntheticStates();
+          }));
+        }
+        start.countDown();
+        Map<String, Boolean> first = results.get(0).get(10, TimeUnit.SECONDS);
+        assertThat(first.size(), equalTo(30));
+        for (Future<Map<String, Boolean>> result : results) {
+          Map<String, Boolean> states = result.get(10, TimeUnit.SECONDS);
+          assertThat(states, equalTo(first));
+          if (result != results.get(0)) {
+            assertThat(states, not(sameInstance(first)));
+          }
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      // two pages for each of the eight readers without coalescing
+      assertTrue(stub.getRequestCount() < 16);
+    }
+  }
+
+  private static void await(CountDownLatch latch) throws IOException {
+    try {
+      latch.await();
+    } catch (InterruptedException x) {
+      throw new IOException(x);
+    }
+  }
+}
@@ -0,0 +1,640 @@
+package io.truemark.stub;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.truemark.NewRelicClient;
+import io.truemark.data.Condition;
+import io.truemark.data.ConditionType;
+import io.truemark.data.Nrql;
+import io.truemark.data.Policies;
+import io.truemark.data.Policy;
+import io.truemark.data.Synthetic;
+import io.truemark.data.Synthetics;
+import io.truemark.data.Term;
+import io.truemark.http.RestClientFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process stand in for the New Relic REST API v2 and Synthetics API v3, serving a generated
+ * account on a local port. Used by tests and benchmarks which must not depend on the network.
+ *
+ * <p>The stub serves the policies, the five kinds of alert conditions and the monitors the way
+ * the client uses them: policies and conditions are paged through Link headers, 50 to a page,
+ * and monitors through offset and limit. Updates change the state served afterwards. Latency,
+ * jitter, server errors and 429 throttling can be injected to exercise the client under the
+ * conditions of a busy account.</p>
+ *
+ * @author Abhijeet Kale
+ */
+public class NewRelicStub implements AutoCloseable {
+
+  public static final String MONITORS = "/v3/monitors";
+  public static final String POLICIES = "/v2/alerts_policies";
+  static final int PAGE_SIZE = 50;
+  private static final String API_KEY = "X-Api-Key";
+  private static final String[] LOCATIONS = {"AWS_US_EAST_1", "AWS_US_WEST_1", "AWS_EU_WEST_1",
+      "AWS_AP_SOUTHEAST_1"};
+  private static final Map<ConditionType, Endpoint> ENDPOINTS = new EnumMap<>(ConditionType.class);
+  private final ObjectMapper objectMapper = new ObjectMapper()
+      .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final List<Policy> policies = new ArrayList<>();
+  private final Map<ConditionType, Map<Integer, Condition>> conditions =
+      new EnumMap<>(ConditionType.class);
+  // the condition ids of every policy and type, in listing order
+  private final Map<Integer, Map<ConditionType, List<Integer>>> policyConditions = new HashMap<>();
+  private final List<Synthetic> monitors;
+  private final Map<UUID, Synthetic> monitorsById = new HashMap<>();
+  private volatile long latencyMillis;
+  private volatile long jitterMillis;
+  private volatile double errorRate;
+  private volatile double writeErrorRate;
+  private volatile int rateLimit;
+  private final Set<String> failing = ConcurrentHashMap.newKeySet();
+  private final Map<String, long[]> rateWindows = new HashMap<>();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong throttled = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  static {
+    // without it small responses wait for the delayed acknowledgement of the client
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    ENDPOINTS.put(ConditionType.ALERT,
+        new Endpoint("/v2/alerts_conditions", "conditions", "condition"));
+    ENDPOINTS.put(ConditionType.SYNTHETIC, new Endpoint("/v2/alerts_synthetics_conditions",
+        "synthetics_conditions", "synthetics_condition"));
+    ENDPOINTS.put(ConditionType.NRQL,
+        new Endpoint("/v2/alerts_nrql_conditions", "nrql_conditions", "nrql_condition"));
+    ENDPOINTS.put(ConditionType.EXTERNAL_SERVICE, new Endpoint(
+        "/v2/alerts_external_service_conditions", "external_service_conditions",
+        "external_service_condition"));
+    ENDPOINTS.put(ConditionType.PLUGIN,
+        new Endpoint("/v2/alerts_plugins_conditions", "plugins_condition", "plugins_condition"));
+  }
+
+  /**
+   * The paths and body properties of a condition endpoint.
+   */
+  private static class Endpoint {
+    private final String path;
+    private final String listProperty;
+    private final String itemProperty;
+
+    Endpoint(String path, String listProperty, String itemProperty) {
+      this.path = path;
+      this.listProperty = listProperty;
+      this.itemProperty = itemProperty;
+    }
+  }
+
+  /**
+   * Starts a stub serving an account with monitors only.
+   *
+   * @param monitorCount the number of monitors in the account
+   * @throws IOException if the server cannot be started
+   */
+  public NewRelicStub(int monitorCount) throws IOException {
+    this(0, 0, monitorCount);
+  }
+
+  /**
+   * Starts a stub serving a generated account. The policies are named by
+   * {@link #getPolicyName(int)}, each with the given number of conditions of every type.
+   *
+   * @param policyCount       the number of policies
+   * @param conditionsPerType the number of conditions of each type on every policy
+   * @param monitorCount      the number of monitors
+   * @throws IOException if the server cannot be started
+   */
+  public NewRelicStub(int policyCount, int conditionsPerType, int monitorCount)
+      throws IOException {
+    int conditionId = 1000;
+    for (ConditionType type : ConditionType.values()) {
+      conditions.put(type, new ConcurrentHashMap<>());
+    }
+    for (int p = 1; p <= policyCount; p++) {
+      Policy policy = new Policy();
+      policy.setId(p);
+      policy.setName(getPolicyName(p));
+      policy.setIncidentPreference("PER_POLICY");
+      policies.add(policy);
+      Map<ConditionType, List<Integer>> ids = new EnumMap<>(ConditionType.class);
+      for (ConditionType type : ConditionType.values()) {
+        List<Integer> typeIds = new ArrayList<>();
+        for (int i = 0; i < conditionsPerType; i++) {
+          Condition condition = condition(type, conditionId++);
+          condition.setName(type.getLabel() + " condition " + p + "-" + i);
+          conditions.get(type).put(condition.getId(), condition);
+          typeIds.add(condition.getId());
+        }
+        ids.put(type, typeIds);
+      }
+      policyConditions.put(p, ids);
+    }
+    List<Synthetic> monitors = new ArrayList<>();
+    for (int i = 0; i < monitorCount; i++) {
+      Synthetic synthetic = monitor(i);
+      monitors.add(synthetic);
+      monitorsById.put(synthetic.getId(), synthetic);
+    }
+    this.monitors = Collections.unmodifiableList(monitors);
+    // a deep accept queue, as bursts of new connections overflowing it stall for a second
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * Returns the name of a generated policy.
+   *
+   * @param i the number of the policy, starting at 1
+   * @return the policy name
+   */
+  public static String getPolicyName(int i) {
+    return "Policy " + i;
+  }
+
+  /**
+   * Returns a generated monitor resembling those of a production account.
+   *
+   * @param i the index of the monitor
+   * @return the monitor
+   */
+  public static Synthetic monitor(int i) {
+    Synthetic synthetic = new Synthetic();
+    synthetic.setId(new UUID(0x6a4a1c8e0a3b4b8fL, i));
+    synthetic.setName(String.format("monitor-%05d checkout api health", i));
+    synthetic.setType(i % 3 == 0 ? "SCRIPT_API" : "SIMPLE");
+    synthetic.setStatus("ENABLED");
+    synthetic.setFrequency(String.valueOf(i % 2 == 0 ? 5 : 15));
+    synthetic.setUri("https://shop" + i % 10 + ".example.com/api/health?check=" + i);
+    synthetic.setSlaThreshold(7.0);
+    synthetic.setLocations(Arrays.asList(LOCATIONS));
+    return synthetic;
+  }
+
+  /**
+   * Returns a generated NRQL condition resembling those of a production account.
+   *
+   * @param id the id of the condition
+   * @return the condition
+   */
+  public static Condition nrqlCondition(int id) {
+    Nrql nrql = new Nrql();
+    nrql.setQuery("SELECT count(*) FROM Transaction WHERE appName = 'service-" + id
+        + "' AND error IS true FACET host");
+    nrql.setSinceValue("3");
+    Condition condition = condition(id, "static");
+    condition.setName("service-" + id + " error count");
+    condition.setValueFunction("single_value");
+    condition.setNrql(nrql);
+    return condition;
+  }
+
+  private static Condition condition(ConditionType type, int id) {
+    switch (type) {
+      case NRQL:
+        return nrqlCondition(id);
+      case SYNTHETIC:
+        Condition synthetic = condition(id, null);
+        synthetic.setMonitorId(new UUID(0x6a4a1c8e0a3b4b8fL, id).toString());
+        return synthetic;
+      case EXTERNAL_SERVICE:
+        Condition external = condition(id, "apm_external_service");
+        external.setExternalServiceUrl("api.payments.example.com");
+        external.setMetric("response_time_average");
+        return external;
+      default:
+        Condition condition = condition(id, "apm_app_metric");
+        condition.setMetric("error_percentage");
+        condition.setConditionScope("application");
+        condition.setEntities(new String[] {String.valueOf(100000 + id)});
+        return condition;
+    }
+  }
+
+  private static Condition condition(int id, String type) {
+    Term term = new Term();
+    term.setDuration("5");
+    term.setOperator("above");
+    term.setPriority("critical");
+    term.setThreshold("1");
+    term.setTimeFunction("all");
+    Condition condition = new Condition();
+    condition.setId(id);
+    condition.setType(type);
+    condition.setEnabled(true);
+    condition.setViolationCloseTimer("24");
+    condition.setRunbookUrl("https://wiki.example.com/runbooks/condition-" + id);
+    condition.setTerms(Collections.singletonList(term));
+    return condition;
+  }
+
+  /**
+   * Delays every response.
+   *
+   * @param latencyMillis the mean delay
+   * @param jitterMillis  the maximum random deviation from the mean delay
+   */
+  public void setLatency(long latencyMillis, long jitterMillis) {
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+  }
+
+  /**
+   * Answers a share of the requests with a 500 Internal Server Error.
+   *
+   * @param errorRate the share of failed requests, between 0 and 1
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Answers a share of the updates with a 500 Internal Server Error, leaving the listings alone.
+   *
+   * @param writeErrorRate the share of failed updates, between 0 and 1
+   */
+  public void setWriteErrorRate(double writeErrorRate) {
+    this.writeErrorRate = writeErrorRate;
+  }
+
+  /**
+   * Answers every request whose URI, including the query, contains the given text with a 500
+   * Internal Server Error, such as {@code alerts_nrql_conditions} to fail the NRQL conditions.
+   *
+   * @param uriPart the text to look for in the URIs
+   */
+  public void failRequests(String uriPart) {
+    failing.add(uriPart);
+  }
+
+  /**
+   * Limits the number of requests per second and API key. Requests beyond the limit are answered
+   * with 429 Too Many Requests and a Retry-After header.
+   *
+   * @param requestsPerSecond the maximum number of requests per second, 0 for no limit
+   */
+  public void setRateLimit(int requestsPerSecond) {
+    this.rateLimit = requestsPerSecond;
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getWriteCount() {
+    return writes.get();
+  }
+
+  public long getThrottledCount() {
+    return throttled.get();
+  }
+
+  public long getErrorCount() {
+    return errors.get();
+  }
+
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public String getSyntheticsUrl() {
+    return getUrl() + MONITORS;
+  }
+
+  public ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  /**
+   * Returns the current state of the conditions of a policy.
+   *
+   * @param policyName the name of the policy
+   * @return whether each condition is enabled keyed by condition name
+   */
+  public Map<String, Boolean> getConditionStates(String policyName) {
+    Map<String, Boolean> states = new LinkedHashMap<>();
+    for (Policy policy : policies) {
+      if (policy.getName().equals(policyName)) {
+        for (Map.Entry<ConditionType, List<Integer>> ids
+            : policyConditions.get(policy.getId()).entrySet()) {
+          for (Integer id : ids.getValue()) {
+            Condition condition = conditions.get(ids.getKey()).get(id);
+            states.put(condition.getName(), condition.getEnabled());
+          }
+        }
+      }
+    }
+    return states;
+  }
+
+  /**
+   * Returns the current status of the monitors.
+   *
+   * @return the status of each monitor keyed by monitor name
+   */
+  public Map<String, String> getMonitorStatuses() {
+    Map<String, String> statuses = new LinkedHashMap<>();
+    for (Synthetic monitor : monitors) {
+      statuses.put(monitor.getName(), monitor.getStatus());
+    }
+    return statuses;
+  }
+
+  /**
+   * Creates a client whose endpoints are all served by this stub.
+   *
+   * @return the client
+   */
+  public NewRelicClient client() {
+    return client(RestClientFactory.urlConnection());
+  }
+
+  /**
+   * Creates a client whose endpoints are all served by this stub, sending requests with the
+   * given transport.
+   *
+   * @param restClientFactory creates the client used for each endpoint
+   * @return the client
+   */
+  public NewRelicClient client(RestClientFactory restClientFactory) {
+    String url = getUrl();
+    return new NewRelicClient(url + ENDPOINTS.get(ConditionType.SYNTHETIC).path,
+        url + ENDPOINTS.get(ConditionType.ALERT).path + "/", url + POLICIES + ".json",
+        getSyntheticsUrl(), url + ENDPOINTS.get(ConditionType.NRQL).path,
+        url + ENDPOINTS.get(ConditionType.EXTERNAL_SERVICE).path,
+        url + ENDPOINTS.get(ConditionType.PLUGIN).path, "rest-key", "admin-key",
+        restClientFactory);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requests.incrementAndGet();
+      byte[] body = readAll(exchange.getRequestBody());
+      delay();
+      String apiKey = exchange.getRequestHeaders().getFirst(API_KEY);
+      if (apiKey == null) {
+        respond(exchange, 401, error("Invalid API key"));
+      } else if (isThrottled(apiKey)) {
+        throttled.incrementAndGet();
+        exchange.getResponseHeaders().add("Retry-After", "1");
+        respond(exchange, 429, error("Too many requests"));
+      } else if (isFailed(!"GET".equals(exchange.getRequestMethod()))
+          || isFailed(exchange.getRequestURI().toString())) {
+        errors.incrementAndGet();
+        respond(exchange, 500, error("Internal server error"));
+      } else {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+          writes.incrementAndGet();
+        }
+        route(exchange, body);
+      }
+    } catch (RuntimeException x) {
+      respond(exchange, 400, error(String.valueOf(x.getMessage())));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void route(HttpExchange exchange, byte[] body) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    boolean get = "GET".equals(exchange.getRequestMethod());
+    if (path.startsWith(MONITORS)) {
+      if (get && path.length() <= MONITORS.length() + 1) {
+        listMonitors(exchange, query);
+      } else if ("PUT".equals(exchange.getRequestMethod())) {
+        updateMonitor(exchange, path.substring(MONITORS.length() + 1), body);
+      } else {
+        respond(exchange, 405, error("Method not allowed"));
+      }
+      return;
+    }
+    if (path.startsWith(POLICIES) && get) {
+      listPolicies(exchange, query);
+      return;
+    }
+    for (Map.Entry<ConditionType, Endpoint> endpoint : ENDPOINTS.entrySet()) {
+      String base = endpoint.getValue().path;
+      if (path.startsWith(base) && (path.length() == base.length()
+          || path.charAt(base.length()) == '/' || path.charAt(base.length()) == '.')) {
+        String rest = path.substring(base.length()).replace(".json", "");
+        if (get && (rest.isEmpty() || rest.equals("/"))) {
+          listConditions(exchange, endpoint.getKey(), query);
+        } else if ("PUT".equals(exchange.getRequestMethod()) && rest.startsWith("/")) {
+          updateCondition(exchange, endpoint.getKey(), Integer.parseInt(rest.substring(1)),
+              body);
+        } else {
+          respond(exchange, 405, error("Method not allowed"));
+        }
+        return;
+      }
+    }
+    respond(exchange, 404, error("Not found"));
+  }
+
+  private void listMonitors(HttpExchange exchange, Map<String, String> query)
+      throws IOException {
+    int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+    int limit = Math.min(100, Integer.parseInt(query.getOrDefault("limit", "20")));
+    Synthetics page = new Synthetics();
+    int from = Math.min(offset, monitors.size());
+    page.setMonitors(monitors.subList(from, Math.min(monitors.size(), from + limit)));
+    page.setCount(monitors.size());
+    respond(exchange, 200, objectMapper.writeValueAsBytes(page));
+  }
+
+  private void updateMonitor(HttpExchange exchange, String id, byte[] body) throws IOException {
+    Synthetic monitor = monitorsById.get(UUID.fromString(id));
+    if (monitor == null) {
+      respond(exchange, 404, error("Monitor not found"));
+      return;
+    }
+    Synthetic update = objectMapper.readValue(body, Synthetic.class);
+    if (update.getStatus() != null) {
+      monitor.setStatus(update.getStatus());
+    }
+    respond(exchange, 204, null);
+  }
+
+  private void listPolicies(HttpExchange exchange, Map<String, String> query)
+      throws IOException {
+    String name = query.get("filter[name]");
+    boolean exact = Boolean.parseBoolean(query.get("filter[exact_match]"));
+    List<Policy> matching = new ArrayList<>();
+    for (Policy policy : policies) {
+      if (name == null || (exact ? policy.getName().equals(name)
+          : policy.getName().toLowerCase().contains(name.toLowerCase()))) {
+        matching.add(policy);
+      }
+    }
+    Policies page = new Policies();
+    page.setPolicies(page(exchange, query, matching).toArray(new Policy[0]));
+    respond(exchange, 200, objectMapper.writeValueAsBytes(page));
+  }
+
+  private void listConditions(HttpExchange exchange, ConditionType type,
+                              Map<String, String> query) throws IOException {
+    Map<ConditionType, List<Integer>> ids =
+        policyConditions.get(Integer.parseInt(query.get("policy_id")));
+    List<Condition> listed = new ArrayList<>();
+    if (ids != null) {
+      for (Integer id : ids.get(type)) {
+        listed.add(conditions.get(type).get(id));
+      }
+    }
+    respond(exchange, 200, objectMapper.writeValueAsBytes(Collections.singletonMap(
+        ENDPOINTS.get(type).listProperty, page(exchange, query, listed))));
+  }
+
+  private void updateCondition(HttpExchange exchange, ConditionType type, int id, byte[] body)
+      throws IOException {
+    Condition condition = conditions.get(type).get(id);
+    JsonNode update = objectMapper.readTree(body).get(ENDPOINTS.get(type).itemProperty);
+    if (condition == null || update == null) {
+      respond(exchange, 404, error("Condition not found"));
+      return;
+    }
+    if (update.has("enabled")) {
+      condition.setEnabled(update.get("enabled").asBoolean());
+    }
+    respond(exchange, 200, objectMapper.writeValueAsBytes(Collections.singletonMap(
+        ENDPOINTS.get(type).itemProperty, condition)));
+  }
+
+  /**
+   * Returns the requested page of a listing, adding a Link header to the next page if there is
+   * one.
+   */
+  private <T> List<T> page(HttpExchange exchange, Map<String, String> query, List<T> items) {
+    int page = Integer.parseInt(query.getOrDefault("page", "1"));
+    int from = Math.min(items.size(), (page - 1) * PAGE_SIZE);
+    int to = Math.min(items.size(), from + PAGE_SIZE);
+    if (to < items.size()) {
+      String uri = exchange.getRequestURI().toString().replaceAll("[?&]page=\\d+", "");
+      exchange.getResponseHeaders().add("Link", "<" + getUrl() + uri
+          + (uri.contains("?") ? "&" : "?") + "page=" + (page + 1) + ">; rel=\"next\"");
+    }
+    return items.subList(from, to);
+  }
+
+  private void delay() {
+    long delay = latencyMillis;
+    if (jitterMillis > 0) {
+      delay += ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1);
+    }
+    if (delay > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (InterruptedException x) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private boolean isFailed(boolean write) {
+    double rate = write ? Math.max(errorRate, writeErrorRate) : errorRate;
+    return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+  }
+
+  private boolean isFailed(String uri) {
+    for (String uriPart : failing) {
+      if (uri.contains(uriPart)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isThrottled(String apiKey) {
+    int limit = rateLimit;
+    if (limit <= 0) {
+      return false;
+    }
+    long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    synchronized (rateWindows) {
+      long[] window = rateWindows.computeIfAbsent(apiKey, key -> new long[2]);
+      if (window[0] != second) {
+        window[0] = second;
+        window[1] = 0;
+      }
+      return ++window[1] > limit;
+    }
+  }
+
+  private static Map<String, String> parseQuery(String query) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    if (query != null) {
+      for (String param : query.split("&")) {
+        int eq = param.indexOf('=');
+        if (eq > 0) {
+          params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+              URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+        }
+      }
+    }
+    return params;
+  }
+
+  private byte[] error(String title) throws IOException {
+    return objectMapper.writeValueAsBytes(Collections.singletonMap("error",
+        Collections.singletonMap("title", title)));
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
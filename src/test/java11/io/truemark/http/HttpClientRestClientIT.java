@@ -0,0 +1,159 @@
+package io.truemark.http;
+
+import io.truemark.NewRelicClient;
+import io.truemark.data.Synthetic;
+import io.truemark.data.Synthetics;
+import io.truemark.exception.NewRelicRateLimitException;
+import io.truemark.stub.NewRelicStub;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.everyItem;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the Java 11 HttpClientRestClient against the local New Relic API stub. Run from the
+ * multi-release jar by the java11 profile, as the base classes only hold the Java 8 version.
+ *
+ * @author Abhijeet Kale
+ */
+public class HttpClientRestClientIT {
+
+  private static final String PAGE = "?offset=0&limit=20";
+
+  @Test
+  public void testSend() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      HttpClientRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key");
+      assertThat(client.get(PAGE, Synthetics.class).getMonitors().size(), equalTo(20));
+      RestResponse<Synthetics> response = client.getResponse(PAGE, Synthetics.class);
+      assertThat(response.getStatus(), equalTo(200));
+      assertThat(response.getBody().getCount(), equalTo(30));
+
+      Synthetic monitor = response.getBody().getMonitors().get(0);
+      monitor.setStatus(NewRelicClient.DISABLED);
+      client.update("/" + monitor.getId(), monitor);
+      assertThat(stub.getMonitorStatuses().get(monitor.getName()),
+          equalTo(NewRelicClient.DISABLED));
+    }
+  }
+
+  @Test
+  public void testThrottledRetry() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      HttpClientRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key");
+      client.setRateLimiter(new RateLimiter());
+      stub.setRateLimit(2);
+      for (int i = 0; i < 5; i++) {
+        assertThat(client.get(PAGE, Synthetics.class).getCount(), equalTo(30));
+      }
+      assertTrue(stub.getThrottledCount() > 0);
+    }
+  }
+
+  @Test
+  public void testThrottledRetryAsync() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      HttpClientRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key");
+      client.setRateLimiter(new RateLimiter());
+      stub.setRateLimit(2);
+      List<CompletableFuture<Synthetics>> pages = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        pages.add(client.async().get(PAGE, Synthetics.class));
+      }
+      for (CompletableFuture<Synthetics> page : pages) {
+        assertThat(page.join().getCount(), equalTo(30));
+      }
+      assertTrue(stub.getThrottledCount() > 0);
+    }
+  }
+
+  @Test
+  public void testThrottledWithoutRetries() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      HttpClientRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key");
+      RateLimiter rateLimiter = new RateLimiter();
+      rateLimiter.setMaxRetries(0);
+      client.setRateLimiter(rateLimiter);
+      stub.setRateLimit(1);
+      client.get(PAGE, Synthetics.class);
+      try {
+        client.get(PAGE, Synthetics.class);
+        fail("Expected the request to be rejected");
+      } catch (NewRelicRateLimitException x) {
+        assertThat(x.getRetryAfterMillis(), equalTo(1000L));
+      }
+      try {
+        client.async().get(PAGE, Synthetics.class).join();
+        fail("Expected the request to be rejected");
+      } catch (CompletionException x) {
+        assertThat(x.getCause(), instanceOf(NewRelicRateLimitException.class));
+      }
+    }
+  }
+
+  @Test
+  public void testTimeout() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      HttpClientRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key");
+      client.setTimeout(Duration.ofMillis(100));
+      stub.setLatency(1000, 0);
+      try {
+        client.get(PAGE, Synthetics.class);
+        fail("Expected the request to time out");
+      } catch (SocketTimeoutException x) {
+        // reported like the URLConnection based client
+      }
+      try {
+        client.async().get(PAGE, Synthetics.class).join();
+        fail("Expected the request to time out");
+      } catch (CompletionException x) {
+        assertThat(x.getCause(), instanceOf(SocketTimeoutException.class));
+      }
+    }
+  }
+
+  @Test
+  public void testAsync() throws IOException {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      AsyncRestClient client = new HttpClientRestClient(stub.getSyntheticsUrl(), "rest-key")
+          .async();
+      RestResponse<Synthetics> response = client.getResponse(PAGE, Synthetics.class).join();
+      assertThat(response.getStatus(), equalTo(200));
+      assertThat(response.getBody().getMonitors().size(), equalTo(20));
+
+      Synthetic monitor = response.getBody().getMonitors().get(0);
+      monitor.setStatus(NewRelicClient.DISABLED);
+      client.update("/" + monitor.getId(), monitor).join();
+      assertThat(stub.getMonitorStatuses().get(monitor.getName()),
+          equalTo(NewRelicClient.DISABLED));
+    }
+  }
+
+  @Test
+  public void testNewRelicClient() throws Exception {
+    try (NewRelicStub stub = new NewRelicStub(30)) {
+      NewRelicClient client = stub.client(RestClientFactory.http2());
+      Map<String, Boolean> states = client.getSyntheticStates();
+      assertThat(states.size(), equalTo(30));
+      WriteReport disabled = client.disableSynthetics(states.keySet());
+      assertTrue(disabled.toString(), disabled.isSuccessful());
+      assertThat(stub.getMonitorStatuses().values(), everyItem(equalTo(NewRelicClient.DISABLED)));
+      WriteReport restored = client.restoreSyntheticStates(states);
+      assertTrue(restored.toString(), restored.isSuccessful());
+      assertThat(client.getSyntheticStates(), equalTo(states));
+    }
+  }
+}